@@ -0,0 +1,252 @@
+package wenjalan.groupify.fake;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+// the synthetic catalog and users a FakeSpotifyServer serves, generated deterministically from the settings
+public class FakeCatalog {
+
+    // the base of the fake external urls
+    private static final String OPEN_URL = "https://open.spotify.com/";
+
+    // the settings the catalog is generated from
+    private final FakeSpotifySettings settings;
+
+    // constructor
+    public FakeCatalog(FakeSpotifySettings settings) {
+        this.settings = settings;
+    }
+
+    // returns the id of track i
+    public static String trackId(int i) {
+        return "faketrack" + i;
+    }
+
+    // returns the id of artist i
+    public static String artistId(int i) {
+        return "fakeartist" + i;
+    }
+
+    // returns the index in an id, or -1 if it isn't one of ours
+    public static int indexOf(String id, String prefix) {
+        if (id == null || !id.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(id.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // returns the full Track JSON of a track id, or JSON null if it doesn't exist
+    public JsonObject track(int i) {
+        JsonObject t = trackSimplified(i);
+        JsonObject album = new JsonObject();
+        album.addProperty("id", "fakealbum" + (i / 10));
+        album.addProperty("name", "Album " + (i / 10));
+        album.addProperty("type", "album");
+        album.addProperty("album_type", "album");
+        album.addProperty("uri", "spotify:album:fakealbum" + (i / 10));
+        album.add("artists", t.get("artists"));
+        t.add("album", album);
+        t.addProperty("popularity", Math.max(0, 100 - i * 100 / Math.max(1, settings.catalogTracks)));
+        return t;
+    }
+
+    // returns the TrackSimplified JSON of a track
+    public JsonObject trackSimplified(int i) {
+        JsonObject t = new JsonObject();
+        String id = trackId(i);
+        t.addProperty("id", id);
+        t.addProperty("name", "Track " + i);
+        t.addProperty("type", "track");
+        t.addProperty("uri", "spotify:track:" + id);
+        t.addProperty("duration_ms", 150000 + (i % 120) * 1000);
+        t.addProperty("explicit", false);
+        t.addProperty("track_number", i % 12 + 1);
+        t.addProperty("disc_number", 1);
+        t.add("external_urls", externalUrls("track/" + id));
+        JsonArray artists = new JsonArray();
+        for (int a : artistsOf(i)) {
+            artists.add(artistSimplified(a));
+        }
+        t.add("artists", artists);
+        return t;
+    }
+
+    // returns the artists of a track, its main artist and sometimes a featured one
+    private int[] artistsOf(int track) {
+        int main = track % settings.catalogArtists;
+        if (track % 7 == 0) {
+            return new int[] { main, (track * 31 + 7) % settings.catalogArtists };
+        }
+        return new int[] { main };
+    }
+
+    // returns the ArtistSimplified JSON of an artist
+    public JsonObject artistSimplified(int i) {
+        JsonObject a = new JsonObject();
+        String id = artistId(i);
+        a.addProperty("id", id);
+        a.addProperty("name", "Artist " + i);
+        a.addProperty("type", "artist");
+        a.addProperty("uri", "spotify:artist:" + id);
+        a.add("external_urls", externalUrls("artist/" + id));
+        return a;
+    }
+
+    // returns the full Artist JSON of an artist, with one to three genres
+    public JsonObject artist(int i) {
+        JsonObject a = artistSimplified(i);
+        JsonArray genres = new JsonArray();
+        Random r = new Random(i * 7919L);
+        int count = 1 + r.nextInt(3);
+        for (int g = 0; g < count; g++) {
+            genres.add("genre " + skewed(r, settings.genres));
+        }
+        a.add("genres", genres);
+        a.addProperty("popularity", Math.max(0, 100 - i * 100 / Math.max(1, settings.catalogArtists)));
+        return a;
+    }
+
+    // returns the Track JSON for each id given, null for unknown ids
+    public JsonArray tracks(String[] ids) {
+        JsonArray array = new JsonArray();
+        for (String id : ids) {
+            int i = indexOf(id, "faketrack");
+            array.add(i >= 0 && i < settings.catalogTracks ? track(i) : JsonNull.INSTANCE);
+        }
+        return array;
+    }
+
+    // returns the Artist JSON for each id given, null for unknown ids
+    public JsonArray artists(String[] ids) {
+        JsonArray array = new JsonArray();
+        for (String id : ids) {
+            int i = indexOf(id, "fakeartist");
+            array.add(i >= 0 && i < settings.catalogArtists ? artist(i) : JsonNull.INSTANCE);
+        }
+        return array;
+    }
+
+    // returns the User JSON of a user
+    public JsonObject user(String userId) {
+        JsonObject u = new JsonObject();
+        u.addProperty("id", userId);
+        u.addProperty("display_name", "Fake " + userId);
+        u.addProperty("type", "user");
+        u.addProperty("uri", "spotify:user:" + userId);
+        u.add("external_urls", externalUrls("user/" + userId));
+        return u;
+    }
+
+    // returns a user's top track indexes, most popular tracks being the most likely
+    public Set<Integer> topTracks(String userId, int limit) {
+        return sample(userId.hashCode() * 31L + 1, settings.catalogTracks, limit);
+    }
+
+    // returns a user's top artist indexes
+    public Set<Integer> topArtists(String userId, int limit) {
+        return sample(userId.hashCode() * 31L + 2, settings.catalogArtists, limit);
+    }
+
+    // returns a user's saved track indexes
+    public Set<Integer> savedTracks(String userId, int limit) {
+        return sample(userId.hashCode() * 31L + 3, settings.catalogTracks, Math.min(limit, settings.savedTracks));
+    }
+
+    // returns the tracks of one of a user's playlists
+    public Set<Integer> playlistTracks(String playlistId) {
+        return sample(playlistId.hashCode() * 31L + 4, settings.catalogTracks, settings.playlistTracks);
+    }
+
+    // returns the ids of a user's playlists
+    public String[] playlistIds(String userId) {
+        String[] ids = new String[settings.playlists];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = "fakeplaylist-" + userId + "-" + i;
+        }
+        return ids;
+    }
+
+    // returns recommended track indexes for a set of seeds
+    public Set<Integer> recommendations(String seeds, int limit) {
+        return sample(seeds.hashCode() * 31L + 5, settings.catalogTracks, limit);
+    }
+
+    // returns the Playlist JSON of a playlist
+    // full: whether to include the playlist's tracks, rather than just their count
+    public JsonObject playlist(String playlistId, String ownerId, String name, Iterable<Integer> tracks, boolean full) {
+        JsonObject p = new JsonObject();
+        p.addProperty("id", playlistId);
+        p.addProperty("name", name);
+        p.addProperty("type", "playlist");
+        p.addProperty("uri", "spotify:playlist:" + playlistId);
+        p.addProperty("collaborative", false);
+        p.addProperty("public", true);
+        p.addProperty("snapshot_id", "snapshot");
+        p.add("owner", user(ownerId));
+        p.add("external_urls", externalUrls("playlist/" + playlistId));
+        JsonArray items = new JsonArray();
+        int total = 0;
+        for (int t : tracks) {
+            if (full) {
+                JsonObject item = new JsonObject();
+                item.addProperty("added_at", "2020-01-01T00:00:00Z");
+                item.addProperty("is_local", false);
+                item.add("track", track(t));
+                items.add(item);
+            }
+            total++;
+        }
+        if (full) {
+            p.add("tracks", paging(items));
+        }
+        else {
+            JsonObject info = new JsonObject();
+            info.addProperty("total", total);
+            p.add("tracks", info);
+        }
+        return p;
+    }
+
+    // wraps items in a Paging object
+    public static JsonObject paging(JsonArray items) {
+        JsonObject page = new JsonObject();
+        page.add("items", items);
+        page.addProperty("total", items.size());
+        page.addProperty("limit", items.size());
+        page.addProperty("offset", 0);
+        return page;
+    }
+
+    // returns the external urls object of a path on open.spotify.com
+    private static JsonObject externalUrls(String path) {
+        JsonObject urls = new JsonObject();
+        urls.addProperty("spotify", OPEN_URL + path);
+        return urls;
+    }
+
+    // returns <count> distinct indexes below <size>, skewed towards low (popular) indexes
+    private Set<Integer> sample(long seed, int size, int count) {
+        Random r = new Random(seed);
+        Set<Integer> picked = new LinkedHashSet<>();
+        count = Math.min(count, size);
+        while (picked.size() < count) {
+            picked.add(skewed(r, size));
+        }
+        return picked;
+    }
+
+    // returns an index below <size>, skewed towards low indexes by the popularity skew
+    private int skewed(Random r, int size) {
+        return (int) (size * Math.pow(r.nextDouble(), settings.popularitySkew));
+    }
+
+}
@@ -0,0 +1,418 @@
+package wenjalan.groupify.fake;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// a local stand-in for the parts of the Spotify Web API and accounts service Groupify uses
+// users are synthetic: the authorization code a user signs in with decides who they are,
+// and their tastes are drawn from a shared catalog so that users in a party overlap
+// point Groupify at it with spotify-base-uri=http://localhost:<port>
+public class FakeSpotifyServer {
+
+    // the settings of this server
+    private final FakeSpotifySettings settings;
+
+    // the catalog and users served
+    private final FakeCatalog catalog;
+
+    // the number of tokens issued between sweeps of the expired ones
+    private static final int SWEEP_EVERY = 1024;
+
+    // an access token issued to a user
+    private static class IssuedToken {
+
+        // the user the token belongs to
+        final String userId;
+
+        // when the token expires, in System.currentTimeMillis() time
+        final long expiresAt;
+
+        // constructor
+        IssuedToken(String userId, long expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+    // access tokens to the users they belong to, expired ones are swept out as new ones are issued
+    private final Map<String, IssuedToken> tokens = new ConcurrentHashMap<>();
+
+    // the number of tokens issued
+    private final AtomicLong issued = new AtomicLong(0);
+
+    // the playlists created through the API, by id
+    private final Map<String, JsonObject> createdPlaylists = new ConcurrentHashMap<>();
+
+    // the playlists created by each user
+    private final Map<String, List<String>> createdByUser = new ConcurrentHashMap<>();
+
+    // the number of calls served, and faults injected
+    private final AtomicLong calls = new AtomicLong(0);
+    private final AtomicLong injected429s = new AtomicLong(0);
+    private final AtomicLong injectedErrors = new AtomicLong(0);
+
+    // the underlying server
+    private HttpServer server;
+
+    // constructor
+    public FakeSpotifyServer(FakeSpotifySettings settings) {
+        this.settings = settings;
+        this.catalog = new FakeCatalog(settings);
+    }
+
+    // program entrypoint
+    // args: key=value settings, see FakeSpotifySettings
+    public static void main(String[] args) throws IOException {
+        FakeSpotifySettings settings = FakeSpotifySettings.parse(args);
+        new FakeSpotifyServer(settings).start();
+        System.out.println("> Fake Spotify listening on port " + settings.port + " with " + settings);
+    }
+
+    // starts serving
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(settings.port), 256);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    // stops serving
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    // returns the port being served on
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // handles every call, injecting latency and faults before routing it
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+
+            // the stats are about the calls being served, so they aren't one of them, nor slowed down or failed
+            if (path.equals("/fake/stats")) {
+                stats(exchange);
+                return;
+            }
+            calls.incrementAndGet();
+
+            // the browser-facing authorize page is never slowed down or failed
+            if (path.equals("/authorize")) {
+                authorize(exchange);
+                return;
+            }
+
+            // latency
+            long delay = settings.latency + (settings.jitter > 0 ? ThreadLocalRandom.current().nextLong(settings.jitter + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            // faults
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < settings.rate429) {
+                injected429s.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", String.valueOf(settings.retryAfter));
+                sendError(exchange, 429, "API rate limit exceeded");
+                return;
+            }
+            if (roll < settings.rate429 + settings.errorRate) {
+                injectedErrors.incrementAndGet();
+                int[] codes = { 500, 502, 503 };
+                sendError(exchange, codes[ThreadLocalRandom.current().nextInt(codes.length)], "injected failure");
+                return;
+            }
+
+            route(exchange, exchange.getRequestMethod(), path);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendError(exchange, 503, "interrupted");
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, e.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // sends a call to the handler of its endpoint
+    private void route(HttpExchange exchange, String method, String path) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        // accounts service
+        if (path.equals("/api/token") && method.equals("POST")) {
+            token(exchange);
+            return;
+        }
+
+        // everything else needs a user
+        String userId = userOf(exchange);
+        if (userId == null) {
+            sendError(exchange, 401, "Invalid access token");
+            return;
+        }
+        String[] segments = path.replaceFirst("^/v1/", "").split("/");
+        int limit = Integer.parseInt(query.getOrDefault("limit", "20"));
+
+        if (method.equals("GET") && path.equals("/v1/me")) {
+            sendJson(exchange, 200, catalog.user(userId));
+        }
+        else if (method.equals("GET") && path.equals("/v1/me/top/tracks")) {
+            JsonArray items = new JsonArray();
+            catalog.topTracks(userId, limit).forEach((t) -> items.add(catalog.track(t)));
+            sendJson(exchange, 200, FakeCatalog.paging(items));
+        }
+        else if (method.equals("GET") && path.equals("/v1/me/top/artists")) {
+            JsonArray items = new JsonArray();
+            catalog.topArtists(userId, limit).forEach((a) -> items.add(catalog.artist(a)));
+            sendJson(exchange, 200, FakeCatalog.paging(items));
+        }
+        else if (method.equals("GET") && path.equals("/v1/me/tracks")) {
+            JsonArray items = new JsonArray();
+            for (int t : catalog.savedTracks(userId, limit)) {
+                JsonObject saved = new JsonObject();
+                saved.addProperty("added_at", "2020-01-01T00:00:00Z");
+                saved.add("track", catalog.track(t));
+                items.add(saved);
+            }
+            sendJson(exchange, 200, FakeCatalog.paging(items));
+        }
+        else if (method.equals("GET") && path.equals("/v1/me/playlists")) {
+            JsonArray items = new JsonArray();
+            for (String id : catalog.playlistIds(userId)) {
+                items.add(catalog.playlist(id, userId, "Playlist " + id, catalog.playlistTracks(id), false));
+            }
+            for (String id : createdByUser.getOrDefault(userId, Collections.emptyList())) {
+                items.add(createdPlaylists.get(id));
+            }
+            sendJson(exchange, 200, FakeCatalog.paging(items));
+        }
+        else if (method.equals("GET") && path.equals("/v1/tracks")) {
+            JsonObject body = new JsonObject();
+            body.add("tracks", catalog.tracks(query.getOrDefault("ids", "").split(",")));
+            sendJson(exchange, 200, body);
+        }
+        else if (method.equals("GET") && path.equals("/v1/artists")) {
+            JsonObject body = new JsonObject();
+            body.add("artists", catalog.artists(query.getOrDefault("ids", "").split(",")));
+            sendJson(exchange, 200, body);
+        }
+        else if (method.equals("GET") && path.equals("/v1/recommendations")) {
+            JsonArray tracks = new JsonArray();
+            catalog.recommendations(query.getOrDefault("seed_tracks", ""), limit).forEach((t) -> tracks.add(catalog.trackSimplified(t)));
+            JsonObject body = new JsonObject();
+            body.add("seeds", new JsonArray());
+            body.add("tracks", tracks);
+            sendJson(exchange, 200, body);
+        }
+        else if (segments[0].equals("users") && segments.length == 3 && segments[2].equals("playlists") && method.equals("POST")) {
+            createPlaylist(exchange, userId);
+        }
+        else if (segments[0].equals("playlists") && segments.length == 2 && method.equals("GET")) {
+            JsonObject created = createdPlaylists.get(segments[1]);
+            if (created != null) {
+                sendJson(exchange, 200, created);
+            }
+            else {
+                sendJson(exchange, 200, catalog.playlist(segments[1], userId, "Playlist " + segments[1], catalog.playlistTracks(segments[1]), true));
+            }
+        }
+        else if (segments[0].equals("playlists") && segments.length == 3 && segments[2].equals("tracks") && method.equals("POST")) {
+            JsonObject body = new JsonObject();
+            body.addProperty("snapshot_id", UUID.randomUUID().toString());
+            sendJson(exchange, 201, body);
+        }
+        else if (segments[0].equals("playlists") && segments.length == 3 && segments[2].equals("followers") && method.equals("DELETE")) {
+            createdPlaylists.remove(segments[1]);
+            createdByUser.getOrDefault(userId, new ArrayList<>()).remove(segments[1]);
+            send(exchange, 200, new byte[0], null);
+        }
+        else {
+            sendError(exchange, 404, "Service not found");
+        }
+    }
+
+    // redirects the browser straight back to the redirect uri with a fresh code, as if the user signed in
+    // the code is the user's id, so codes can also be made up by a load generator
+    private void authorize(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String redirect = query.get("redirect_uri");
+        if (redirect == null) {
+            sendError(exchange, 400, "missing redirect_uri");
+            return;
+        }
+        String code = "fakeuser-" + UUID.randomUUID().toString().substring(0, 8);
+        String location = redirect + (redirect.contains("?") ? "&" : "?") + "code=" + code + "&state=" + encode(query.getOrDefault("state", ""));
+        exchange.getResponseHeaders().add("Location", location);
+        send(exchange, 302, new byte[0], null);
+    }
+
+    // exchanges an authorization code, refresh token or client credentials for an access token
+    private void token(HttpExchange exchange) throws IOException {
+        Map<String, String> form = parseQuery(new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8));
+        String grant = form.getOrDefault("grant_type", "");
+        String userId;
+        if (grant.equals("authorization_code")) {
+            userId = form.getOrDefault("code", "fakeuser");
+        }
+        else if (grant.equals("refresh_token")) {
+            userId = form.getOrDefault("refresh_token", "").replaceFirst("^refresh-", "");
+        }
+        else if (grant.equals("client_credentials")) {
+            userId = "app";
+        }
+        else {
+            sendError(exchange, 400, "unsupported_grant_type");
+            return;
+        }
+
+        String accessToken = "access-" + userId + "-" + UUID.randomUUID();
+        long now = System.currentTimeMillis();
+        tokens.put(accessToken, new IssuedToken(userId, now + settings.tokenLifetime * 1000L));
+        if (issued.incrementAndGet() % SWEEP_EVERY == 0) {
+            tokens.values().removeIf((t) -> t.expiresAt <= now);
+        }
+        JsonObject body = new JsonObject();
+        body.addProperty("access_token", accessToken);
+        body.addProperty("token_type", "Bearer");
+        body.addProperty("expires_in", settings.tokenLifetime);
+        if (!grant.equals("client_credentials")) {
+            body.addProperty("refresh_token", "refresh-" + userId);
+            body.addProperty("scope", form.getOrDefault("scope", ""));
+        }
+        sendJson(exchange, 200, body);
+    }
+
+    // creates an empty playlist for a user
+    private void createPlaylist(HttpExchange exchange, String userId) throws IOException {
+        JsonElement request = new JsonParser().parse(new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8));
+        String name = request.isJsonObject() && request.getAsJsonObject().has("name") ? request.getAsJsonObject().get("name").getAsString() : "New Playlist";
+        String id = "fakecreated-" + UUID.randomUUID().toString().replace("-", "");
+        JsonObject playlist = catalog.playlist(id, userId, name, Collections.emptyList(), true);
+        createdPlaylists.put(id, playlist);
+        createdByUser.computeIfAbsent(userId, (u) -> Collections.synchronizedList(new ArrayList<>())).add(id);
+        sendJson(exchange, 201, playlist);
+    }
+
+    // reports what this server has served
+    private void stats(HttpExchange exchange) throws IOException {
+        JsonObject body = new JsonObject();
+        body.addProperty("calls", calls.get());
+        body.addProperty("injected429s", injected429s.get());
+        body.addProperty("injectedErrors", injectedErrors.get());
+        body.addProperty("tokens", tokens.size());
+        body.addProperty("users", new HashMap<>(tokens).values().stream().map((t) -> t.userId).distinct().count());
+        body.addProperty("createdPlaylists", createdPlaylists.size());
+        sendJson(exchange, 200, body);
+    }
+
+    // returns the user a call's bearer token belongs to, or null if it has none we issued that's still good
+    private String userOf(HttpExchange exchange) {
+        String auth = exchange.getRequestHeaders().getFirst("Authorization");
+        if (auth == null || !auth.startsWith("Bearer ")) {
+            return null;
+        }
+        IssuedToken token = tokens.get(auth.substring("Bearer ".length()));
+        return token == null || token.expiresAt <= System.currentTimeMillis() ? null : token.userId;
+    }
+
+    // sends a Spotify-style error
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("status", status);
+        error.addProperty("message", message);
+        JsonObject body = new JsonObject();
+        body.add("error", error);
+        sendJson(exchange, status, body);
+    }
+
+    // sends a JSON body
+    private static void sendJson(HttpExchange exchange, int status, JsonElement body) throws IOException {
+        send(exchange, status, body.toString().getBytes(StandardCharsets.UTF_8), "application/json; charset=utf-8");
+    }
+
+    // sends a response
+    private static void send(HttpExchange exchange, int status, byte[] body, String contentType) throws IOException {
+        if (contentType != null) {
+            exchange.getResponseHeaders().add("Content-Type", contentType);
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    // parses a query string or form body
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        return params;
+    }
+
+    // url-decodes a String
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // url-encodes a String
+    private static String encode(String s) {
+        try {
+            return URLEncoder.encode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // reads a whole stream
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n; (n = in.read(buffer)) > 0;) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,92 @@
+package wenjalan.groupify.fake;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// the settings of a FakeSpotifyServer: catalog and user sizes, and the faults to inject
+// given as key=value arguments, e.g. port=9090 latency=80 rate-429=0.02
+public class FakeSpotifySettings {
+
+    // the port to listen on
+    public final int port;
+
+    // the number of tracks, artists and genres in the synthetic catalog
+    public final int catalogTracks;
+    public final int catalogArtists;
+    public final int genres;
+
+    // how strongly users' tastes lean towards the same popular tracks and artists
+    // 1 is uniform, higher means more overlap between users
+    public final double popularitySkew;
+
+    // the sizes of each synthetic user's library
+    public final int playlists;
+    public final int playlistTracks;
+    public final int savedTracks;
+
+    // the latency added to every call, and the random jitter on top of it, in millis
+    public final long latency;
+    public final long jitter;
+
+    // the share of calls answered with 429, and the Retry-After sent with them, in seconds
+    public final double rate429;
+    public final int retryAfter;
+
+    // the share of calls answered with 500/502/503
+    public final double errorRate;
+
+    // how long an access token is good for, in seconds
+    public final int tokenLifetime;
+
+    // constructor
+    private FakeSpotifySettings(Map<String, String> args) {
+        this.port = Integer.parseInt(args.getOrDefault("port", "9090"));
+        this.catalogTracks = Integer.parseInt(args.getOrDefault("catalog-tracks", "5000"));
+        this.catalogArtists = Integer.parseInt(args.getOrDefault("catalog-artists", "1000"));
+        this.genres = Integer.parseInt(args.getOrDefault("genres", "150"));
+        this.popularitySkew = Double.parseDouble(args.getOrDefault("popularity-skew", "2.0"));
+        this.playlists = Integer.parseInt(args.getOrDefault("playlists", "10"));
+        this.playlistTracks = Integer.parseInt(args.getOrDefault("playlist-tracks", "50"));
+        this.savedTracks = Integer.parseInt(args.getOrDefault("saved-tracks", "50"));
+        this.latency = Long.parseLong(args.getOrDefault("latency", "0"));
+        this.jitter = Long.parseLong(args.getOrDefault("jitter", "0"));
+        this.rate429 = Double.parseDouble(args.getOrDefault("rate-429", "0"));
+        this.retryAfter = Integer.parseInt(args.getOrDefault("retry-after", "1"));
+        this.errorRate = Double.parseDouble(args.getOrDefault("error-rate", "0"));
+        this.tokenLifetime = Integer.parseInt(args.getOrDefault("token-lifetime", "3600"));
+    }
+
+    // returns settings parsed from key=value arguments, using defaults for anything missing
+    public static FakeSpotifySettings parse(String... args) {
+        Map<String, String> map = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("expected key=value, got " + arg);
+            }
+            map.put(arg.substring(0, eq).replaceFirst("^--", ""), arg.substring(eq + 1));
+        }
+        return new FakeSpotifySettings(map);
+    }
+
+    @Override
+    public String toString() {
+        return "FakeSpotifySettings{" +
+                "port=" + port +
+                ", catalogTracks=" + catalogTracks +
+                ", catalogArtists=" + catalogArtists +
+                ", genres=" + genres +
+                ", popularitySkew=" + popularitySkew +
+                ", playlists=" + playlists +
+                ", playlistTracks=" + playlistTracks +
+                ", savedTracks=" + savedTracks +
+                ", latency=" + latency +
+                ", jitter=" + jitter +
+                ", rate429=" + rate429 +
+                ", retryAfter=" + retryAfter +
+                ", errorRate=" + errorRate +
+                ", tokenLifetime=" + tokenLifetime +
+                '}';
+    }
+
+}
@@ -0,0 +1,78 @@
+package wenjalan.groupify.service;
+
+import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.model_objects.specification.Artist;
+import com.wrapper.spotify.model_objects.specification.Track;
+import wenjalan.groupify.fake.FakeCatalog;
+import wenjalan.groupify.fake.FakeSpotifySettings;
+import wenjalan.groupify.service.model.GroupifyUser;
+import wenjalan.groupify.service.model.Party;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// a party of synthetic users for benchmarks, drawn from the same catalog the FakeSpotifyServer serves
+// the popularity skew sets how much the users' tastes overlap: 1 is uniform, higher means more shared tracks and artists
+public class BenchmarkParty {
+
+    // the catalog the users are drawn from
+    public final FakeCatalog catalog;
+
+    // the party, its host being the first user
+    public final Party party;
+
+    // constructor
+    // size: the number of users in the party, including the host
+    // popularitySkew: how strongly the users lean towards the same popular tracks and artists
+    public BenchmarkParty(int size, double popularitySkew) {
+        this.catalog = new FakeCatalog(FakeSpotifySettings.parse("popularity-skew=" + popularitySkew));
+        Party.Builder builder = new Party.Builder();
+        this.party = builder.build(user(catalog, "benchuser-0", true));
+        for (int i = 1; i < size; i++) {
+            party.addUser(user(catalog, "benchuser-" + i, false));
+        }
+    }
+
+    // creates a synthetic user with the top tracks and artists the catalog gives them, as the user factory would
+    public static GroupifyUser user(FakeCatalog catalog, String userId, boolean isHost) {
+        SpotifyApi api = new SpotifyApi.Builder()
+                .setHttpManager(new InMemoryHttpManager(catalog, userId))
+                .setAccessToken("benchmark")
+                .build();
+        return GroupifyUser.Factory.createUser(
+                api,
+                isHost,
+                "Bench " + userId,
+                userId,
+                topTracks(catalog, userId),
+                topArtists(catalog, userId),
+                Collections.emptyList(),
+                Collections.emptyList()
+        );
+    }
+
+    // returns a user's top tracks
+    public static List<Track> topTracks(FakeCatalog catalog, String userId) {
+        List<Track> tracks = new ArrayList<>();
+        for (int t : catalog.topTracks(userId, GroupifyUser.TOP_TRACKS_TO_RETRIEVE)) {
+            tracks.add(new Track.JsonUtil().createModelObject(catalog.track(t).toString()));
+        }
+        return tracks;
+    }
+
+    // returns a user's top artists
+    public static List<Artist> topArtists(FakeCatalog catalog, String userId) {
+        List<Artist> artists = new ArrayList<>();
+        for (int a : catalog.topArtists(userId, GroupifyUser.TOP_ARTISTS_TO_RETRIEVE)) {
+            artists.add(new Artist.JsonUtil().createModelObject(catalog.artist(a).toString()));
+        }
+        return artists;
+    }
+
+    // unregisters the party
+    public void close() {
+        PartyManager.getInstance().unregister(party);
+    }
+
+}
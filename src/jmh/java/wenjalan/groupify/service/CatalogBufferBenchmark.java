@@ -0,0 +1,119 @@
+package wenjalan.groupify.service;
+
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.model_objects.specification.Artist;
+import org.openjdk.jmh.annotations.*;
+import wenjalan.groupify.fake.FakeCatalog;
+import wenjalan.groupify.fake.FakeSpotifySettings;
+import wenjalan.groupify.service.util.CallerContext;
+import wenjalan.groupify.service.util.CatalogBuffer;
+import wenjalan.groupify.service.util.CatalogCache;
+import wenjalan.groupify.service.util.CatalogLoader;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// measures the buffers' batching: cache lookups, chunking, the parallel chunk workers or the shared loader, and reordering
+// fetches are answered from artists parsed up front, so only the batching itself is measured
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogBufferBenchmark {
+
+    // a buffer over the prepared artists, with its own cache and optionally its own loader
+    private static class PreparedArtistBuffer extends CatalogBuffer<Artist> {
+
+        // the artists fetches are answered with
+        private final Map<String, Artist> artists;
+
+        // the loader misses go through, null to fetch chunks directly
+        private final CatalogLoader<Artist> loader;
+
+        // constructor
+        PreparedArtistBuffer(CatalogCache<Artist> cache, Map<String, Artist> artists, CatalogLoader<Artist> loader) {
+            super(null, cache);
+            this.artists = artists;
+            this.loader = loader;
+        }
+
+        @Override
+        protected Artist[] fetch(String idsQuery) {
+            return lookup(artists, idsQuery);
+        }
+
+        @Override
+        protected CatalogLoader<Artist> loader() {
+            return loader;
+        }
+
+        @Override
+        protected String caller() {
+            return CallerContext.ARTIST_BUFFER;
+        }
+
+    }
+
+    // the number of ids flushed at once
+    @Param({ "50", "200", "1000" })
+    public int ids;
+
+    // direct: chunks fetched by the buffer's own workers, loader: misses batched through a CatalogLoader
+    @Param({ "direct", "loader" })
+    public String batching;
+
+    // cold: every id misses the cache, warm: every id hits it
+    @Param({ "cold", "warm" })
+    public String cache;
+
+    // the buffer, filled once
+    private CatalogCache<Artist> artistCache;
+    private PreparedArtistBuffer buffer;
+
+    @Setup
+    public void setup() throws SpotifyWebApiException, IOException {
+        FakeCatalog catalog = new FakeCatalog(FakeSpotifySettings.parse("catalog-artists=" + ids));
+        Map<String, Artist> artists = new HashMap<>();
+        for (int i = 0; i < ids; i++) {
+            artists.put(FakeCatalog.artistId(i), new Artist.JsonUtil().createModelObject(catalog.artist(i).toString()));
+        }
+
+        // a loader with no batch window, so a partial batch is sent as soon as the timer gets to it
+        CatalogLoader<Artist> loader = batching.equals("loader")
+                ? new CatalogLoader<>("benchmark", (idsQuery) -> lookup(artists, idsQuery), 0)
+                : null;
+        artistCache = new CatalogCache<>("benchmark", ids * 2, TimeUnit.HOURS.toMillis(1), 1024);
+        buffer = new PreparedArtistBuffer(artistCache, artists, loader);
+        for (int i = 0; i < ids; i++) {
+            buffer.add(FakeCatalog.artistId(i));
+        }
+        if (cache.equals("warm")) {
+            buffer.flush();
+        }
+    }
+
+    // flushes the buffer, clearing the cache first when measuring misses
+    @Benchmark
+    public List<Artist> flush() throws SpotifyWebApiException, IOException {
+        if (cache.equals("cold")) {
+            artistCache.clear();
+        }
+        return buffer.flush();
+    }
+
+    // answers a comma-separated list of ids from the prepared artists
+    private static Artist[] lookup(Map<String, Artist> artists, String idsQuery) {
+        String[] split = idsQuery.split(",");
+        Artist[] found = new Artist[split.length];
+        for (int i = 0; i < split.length; i++) {
+            found[i] = artists.get(split[i]);
+        }
+        return found;
+    }
+
+}
@@ -0,0 +1,102 @@
+package wenjalan.groupify.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.wrapper.spotify.IHttpManager;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import wenjalan.groupify.fake.FakeCatalog;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// answers the Spotify calls a playlist generation makes straight from a FakeCatalog, without a network
+// so benchmarks measure Groupify's own work rather than the transport
+public class InMemoryHttpManager implements IHttpManager {
+
+    // the catalog to answer from
+    private final FakeCatalog catalog;
+
+    // the user every call is made as
+    private final String userId;
+
+    // constructor
+    public InMemoryHttpManager(FakeCatalog catalog, String userId) {
+        this.catalog = catalog;
+        this.userId = userId;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException {
+        String path = uri.getPath();
+        Map<String, String> query = parseQuery(uri.getRawQuery());
+        if (path.equals("/v1/me")) {
+            return catalog.user(userId).toString();
+        }
+        if (path.equals("/v1/tracks")) {
+            JsonObject body = new JsonObject();
+            body.add("tracks", catalog.tracks(query.getOrDefault("ids", "").split(",")));
+            return body.toString();
+        }
+        if (path.equals("/v1/artists")) {
+            JsonObject body = new JsonObject();
+            body.add("artists", catalog.artists(query.getOrDefault("ids", "").split(",")));
+            return body.toString();
+        }
+        if (path.equals("/v1/recommendations")) {
+            int limit = Integer.parseInt(query.getOrDefault("limit", "20"));
+            JsonArray tracks = new JsonArray();
+            catalog.recommendations(query.getOrDefault("seed_tracks", ""), limit).forEach((t) -> tracks.add(catalog.trackSimplified(t)));
+            JsonObject body = new JsonObject();
+            body.add("seeds", new JsonArray());
+            body.add("tracks", tracks);
+            return body.toString();
+        }
+        throw new IOException("not served in memory: GET " + path);
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException {
+        String[] segments = uri.getPath().replaceFirst("^/v1/", "").split("/");
+        if (segments[0].equals("users") && segments.length == 3 && segments[2].equals("playlists")) {
+            return catalog.playlist("benchplaylist", userId, "Groupify Playlist", Collections.emptyList(), true).toString();
+        }
+        if (segments[0].equals("playlists") && segments.length == 3 && segments[2].equals("tracks")) {
+            JsonObject snapshot = new JsonObject();
+            snapshot.addProperty("snapshot_id", "snapshot");
+            return snapshot.toString();
+        }
+        throw new IOException("not served in memory: POST " + uri.getPath());
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException {
+        throw new IOException("not served in memory: PUT " + uri.getPath());
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException {
+        throw new IOException("not served in memory: DELETE " + uri.getPath());
+    }
+
+    // parses a raw query string into its decoded parameters
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+}
@@ -0,0 +1,48 @@
+package wenjalan.groupify.service;
+
+import org.openjdk.jmh.annotations.*;
+import wenjalan.groupify.service.model.PartySnapshot;
+import wenjalan.groupify.service.model.webmodel.PartyWebModel;
+
+import java.util.concurrent.TimeUnit;
+
+// measures serializing a party for api/party, from scratch and from its snapshot
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PartyWebModelBenchmark {
+
+    // the number of users in the party
+    @Param({ "2", "10", "50" })
+    public int partySize;
+
+    // the party
+    private BenchmarkParty fixture;
+
+    @Setup
+    public void setup() {
+        fixture = new BenchmarkParty(partySize, 2.0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    // builds and serializes a new PartyWebModel, as every api/party request did before snapshots
+    @Benchmark
+    public byte[] serialize() {
+        return new PartyWebModel(fixture.party).toJsonBytes();
+    }
+
+    // returns the JSON of the party's current snapshot, as api/party does while the party is unchanged
+    @Benchmark
+    public byte[] snapshot() {
+        PartySnapshot snapshot = fixture.party.getSnapshot();
+        return snapshot.getJson();
+    }
+
+}
@@ -0,0 +1,97 @@
+package wenjalan.groupify.service;
+
+import com.wrapper.spotify.model_objects.specification.Playlist;
+import com.wrapper.spotify.model_objects.specification.Track;
+import org.openjdk.jmh.annotations.*;
+import wenjalan.groupify.service.model.GroupifyUser;
+import wenjalan.groupify.service.util.PlaylistConfiguration;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// measures each of the generator's selection rules, and a whole generation against an in-memory Spotify
+// run with gradle jmh, see build.gradle
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlaylistGeneratorBenchmark {
+
+    // the number of users in the party
+    @Param({ "2", "5", "10" })
+    public int partySize;
+
+    // how much the users' tastes overlap, see BenchmarkParty
+    @Param({ "1.0", "2.0", "4.0" })
+    public double popularitySkew;
+
+    // the number of users that must share something for it to be picked
+    @Param({ "2" })
+    public int strictness;
+
+    // the party and its generator
+    private BenchmarkParty fixture;
+    private List<GroupifyUser> users;
+    private PlaylistGenerator generator;
+
+    // the configurations of a whole generation, with and without recommendations
+    private PlaylistConfiguration withoutRecommendations;
+    private PlaylistConfiguration withRecommendations;
+
+    @Setup
+    public void setup() {
+        fixture = new BenchmarkParty(partySize, popularitySkew);
+        users = fixture.party.getUsers();
+        generator = new PlaylistGenerator(fixture.party, false);
+        withoutRecommendations = config(false);
+        withRecommendations = config(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    // returns a configuration with no time budget, so every stage runs on the benchmark thread
+    private PlaylistConfiguration config(boolean doRecommendations) {
+        PlaylistConfiguration.Builder builder = new PlaylistConfiguration.Builder();
+        builder.doRecommendations(doRecommendations);
+        builder.playlistMaxSize(80);
+        builder.strictness(strictness);
+        builder.timeBudget(0);
+        return builder.build();
+    }
+
+    // 1. top songs shared by <strictness> users
+    @Benchmark
+    public List<Track> sharedTopSongs() {
+        return generator.getSharedTopSongs(users, strictness);
+    }
+
+    // 2. top songs by an artist shared by <strictness> users
+    @Benchmark
+    public List<Track> sharedTopArtists() {
+        return generator.getSharedTopArtistsSongs(users, strictness);
+    }
+
+    // 3. top songs in a genre shared by <strictness> users, artists coming from the catalog cache once warm
+    @Benchmark
+    public List<Track> sharedTopGenres() {
+        return generator.getSharedTopGenresSongs(users, strictness);
+    }
+
+    // every stage of a generation, from host lookup to adding the tracks
+    @Benchmark
+    public Playlist createPlaylist() {
+        return generator.createPlaylist(withoutRecommendations);
+    }
+
+    // every stage of a generation, including topping it up with recommendations
+    @Benchmark
+    public Playlist createPlaylistWithRecommendations() {
+        return generator.createPlaylist(withRecommendations);
+    }
+
+}
@@ -0,0 +1,77 @@
+package wenjalan.groupify.service;
+
+import com.wrapper.spotify.model_objects.specification.Artist;
+import com.wrapper.spotify.model_objects.specification.Track;
+import org.openjdk.jmh.annotations.*;
+import wenjalan.groupify.fake.FakeCatalog;
+import wenjalan.groupify.fake.FakeSpotifySettings;
+import wenjalan.groupify.service.model.GroupifyUser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// measures the work done on a user's taste once it's been retrieved: parsing it and ranking their genres
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserIngestionBenchmark {
+
+    // how strongly the user leans towards popular artists, which decides how many genres repeat
+    @Param({ "1.0", "2.0", "4.0" })
+    public double popularitySkew;
+
+    // a user's top tracks and artists as Spotify sends them
+    private List<String> trackJson;
+    private List<String> artistJson;
+
+    // the same, already parsed
+    private List<Track> topTracks;
+    private List<Artist> topArtists;
+
+    @Setup
+    public void setup() {
+        FakeCatalog catalog = new FakeCatalog(FakeSpotifySettings.parse("popularity-skew=" + popularitySkew));
+        trackJson = new ArrayList<>();
+        for (int t : catalog.topTracks("benchuser-0", GroupifyUser.TOP_TRACKS_TO_RETRIEVE)) {
+            trackJson.add(catalog.track(t).toString());
+        }
+        artistJson = new ArrayList<>();
+        for (int a : catalog.topArtists("benchuser-0", GroupifyUser.TOP_ARTISTS_TO_RETRIEVE)) {
+            artistJson.add(catalog.artist(a).toString());
+        }
+        topTracks = BenchmarkParty.topTracks(catalog, "benchuser-0");
+        topArtists = BenchmarkParty.topArtists(catalog, "benchuser-0");
+    }
+
+    // ranks a user's genres by how many of their top artists have them
+    @Benchmark
+    public List<String> generateTopGenres() {
+        return GroupifyUser.Factory.generateTopGenres(topArtists);
+    }
+
+    // parses a user's top tracks and artists and builds the user from them, as the user factory does
+    @Benchmark
+    public GroupifyUser createUser() {
+        List<Track> tracks = new ArrayList<>(trackJson.size());
+        for (String json : trackJson) {
+            tracks.add(new Track.JsonUtil().createModelObject(json));
+        }
+        List<Artist> artists = new ArrayList<>(artistJson.size());
+        for (String json : artistJson) {
+            artists.add(new Artist.JsonUtil().createModelObject(json));
+        }
+        return GroupifyUser.Factory.createUser(null, false, "Bench", "benchuser-0", tracks, artists, Collections.emptyList(), Collections.emptyList());
+    }
+
+    // builds the user from taste that's already parsed, leaving out the JSON
+    @Benchmark
+    public GroupifyUser createUserParsed() {
+        return GroupifyUser.Factory.createUser(null, false, "Bench", "benchuser-0", topTracks, topArtists, Collections.emptyList(), Collections.emptyList());
+    }
+
+}
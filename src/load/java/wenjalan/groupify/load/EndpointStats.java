@@ -0,0 +1,92 @@
+package wenjalan.groupify.load;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// the latencies and outcomes of every request a LoadGenerator made to one endpoint
+// every latency is kept, so quantiles are exact rather than bucketed
+public class EndpointStats {
+
+    // the name of the endpoint
+    private final String name;
+
+    // the latencies recorded so far in millis, guarded by this
+    private long[] latencies = new long[1024];
+    private int count = 0;
+
+    // requests answered with 429 by admission control
+    private final AtomicLong rejected = new AtomicLong();
+
+    // requests that failed any other way: other non-2xx statuses, bad bodies, timeouts and connection errors
+    private final AtomicLong errors = new AtomicLong();
+
+    // constructor
+    public EndpointStats(String name) {
+        this.name = name;
+    }
+
+    // records the latency of a request, whatever its outcome
+    public synchronized void record(long millis) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = millis;
+    }
+
+    // counts a request turned away by admission control
+    public void rejected() {
+        rejected.incrementAndGet();
+    }
+
+    // counts a failed request
+    public void error() {
+        errors.incrementAndGet();
+    }
+
+    // returns the name of the endpoint
+    public String getName() {
+        return name;
+    }
+
+    // returns the number of requests made
+    public synchronized int getCount() {
+        return count;
+    }
+
+    // returns the number of requests turned away by admission control
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    // returns the number of requests that failed
+    public long getErrors() {
+        return errors.get();
+    }
+
+    // returns the share of requests that failed, not counting rejections
+    public synchronized double getErrorRate() {
+        return count == 0 ? 0 : (double) errors.get() / count;
+    }
+
+    // returns the latency at a quantile in millis, by nearest rank
+    // quantile: between 0 and 1, e.g. 0.999
+    public synchronized long getQuantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(quantile * count);
+        return sorted[Math.max(0, Math.min(rank, count) - 1)];
+    }
+
+    // returns the largest latency recorded, in millis
+    public synchronized long getMax() {
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, latencies[i]);
+        }
+        return max;
+    }
+
+}
@@ -0,0 +1,254 @@
+package wenjalan.groupify.load;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import wenjalan.groupify.service.spotify.OkHttpManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// drives the service's REST API the way the web client does, with many parties at once, and reports what it saw
+// each flow is a whole party: api/create, its callback, api/add and a callback for each guest, api/make, api/remove
+// flows arrive at random at the configured rate whether or not earlier ones have finished, so a slow service can't hide it
+// run the service against a FakeSpotifyServer, whose codes are made up here rather than signed in for
+// codes are numbered by flow, so the nth flow of every run signs in the same users and a recorded run replays the same
+// the service's admission control applies to this as to anyone else, turn it off to measure raw capacity
+public class LoadGenerator {
+
+    // the endpoints measured, in the order of a flow
+    public static final String CREATE = "create";
+    public static final String HOST_CALLBACK = "callback (host)";
+    public static final String ADD = "add";
+    public static final String GUEST_CALLBACK = "callback (guest)";
+    public static final String MAKE = "make";
+    public static final String REMOVE = "remove";
+
+    // the settings of this run
+    private final LoadSettings settings;
+
+    // the client every request is sent with
+    private final OkHttpClient client;
+
+    // the stats of each endpoint, by name
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+
+    // flow outcomes
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+
+    // the flows running right now
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // a failed step, ending its flow
+    private static class StepFailedException extends Exception {
+
+        // serialVersionUID
+        private static final long serialVersionUID = 1L;
+
+        // constructor
+        StepFailedException(String message) {
+            super(message);
+        }
+
+    }
+
+    // constructor
+    public LoadGenerator(LoadSettings settings) {
+        this.settings = settings;
+        this.client = OkHttpManager.createClient(settings.maxInFlight * (settings.guests + 1), 60, 5000, TimeUnit.SECONDS.toMillis(settings.timeout), false);
+        for (String endpoint : new String[] { CREATE, HOST_CALLBACK, ADD, GUEST_CALLBACK, MAKE, REMOVE }) {
+            stats.put(endpoint, new EndpointStats(endpoint));
+        }
+    }
+
+    // program entrypoint
+    // args: key=value settings, see LoadSettings
+    public static void main(String[] args) throws InterruptedException {
+        LoadSettings settings = LoadSettings.parse(args);
+        System.out.println("> Load test with " + settings);
+        LoadGenerator generator = new LoadGenerator(settings);
+        long elapsed = generator.run();
+        generator.printReport(elapsed);
+    }
+
+    // starts flows for the configured duration, then waits for the ones still running
+    // returns the time the whole run took, in millis
+    public long run() throws InterruptedException {
+        ExecutorService flows = Executors.newCachedThreadPool();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(settings.duration);
+        long next = start;
+        while (true) {
+            // wait for the next arrival, spaced exponentially for a Poisson process
+            next += (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) / settings.rate * TimeUnit.SECONDS.toNanos(1));
+            if (next >= end) {
+                break;
+            }
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+
+            // shed the arrival if too many are running, rather than queueing it and hiding the backlog
+            if (inFlight.incrementAndGet() > settings.maxInFlight) {
+                inFlight.decrementAndGet();
+                shed.incrementAndGet();
+                continue;
+            }
+            long flow = started.incrementAndGet();
+            flows.execute(() -> {
+                try {
+                    runFlow(flow);
+                    completed.incrementAndGet();
+                } catch (StepFailedException e) {
+                    failed.incrementAndGet();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+
+        // let the last flows finish, each step of which times out on its own
+        flows.shutdown();
+        flows.awaitTermination((long) settings.timeout * (2 * settings.guests + 4), TimeUnit.SECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        return elapsed;
+    }
+
+    // runs one party from creation to removal
+    // flow: the number of the flow, which decides who its users are
+    // throws StepFailedException at the first step that fails, after removing the party if it was made
+    private void runFlow(long flow) throws StepFailedException {
+        // create the party and sign its host in
+        String state = stateOf(call(CREATE, endpoint("api/create").build()));
+        String partyId = state.split(":")[0];
+        callback(HOST_CALLBACK, state, "loaduser-" + flow + "-host");
+        try {
+            // ask for every guest's sign in before any of them finishes, as a room full of people would
+            List<String> guestStates = new ArrayList<>();
+            for (int i = 0; i < settings.guests; i++) {
+                guestStates.add(stateOf(call(ADD, endpoint("api/add").addQueryParameter("party", partyId).build())));
+            }
+            // and let them finish signing in in any order, as people do
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < guestStates.size(); i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order, ThreadLocalRandom.current());
+            for (int i : order) {
+                callback(GUEST_CALLBACK, guestStates.get(i), "loaduser-" + flow + "-guest" + i);
+            }
+
+            // make the playlist
+            call(MAKE, endpoint("api/make")
+                    .addQueryParameter("party", partyId)
+                    .addQueryParameter("addRecommendations", String.valueOf(settings.recommendations))
+                    .addQueryParameter("maxSize", String.valueOf(settings.maxSize))
+                    .addQueryParameter("strictness", String.valueOf(settings.strictness))
+                    .build());
+        } finally {
+            call(REMOVE, endpoint("api/remove").addQueryParameter("party", partyId).build());
+        }
+    }
+
+    // signs a made up user in, as if Spotify had redirected their browser back to the service
+    private void callback(String endpoint, String state, String code) throws StepFailedException {
+        String body = call(endpoint, endpoint("api/callback").addQueryParameter("code", code).addQueryParameter("state", state).build());
+        // the callback answers 200 either way, only its message says whether it worked
+        if (!body.startsWith("thanks")) {
+            stats.get(endpoint).error();
+            throw new StepFailedException(endpoint + ": " + body);
+        }
+    }
+
+    // makes a request, recording its latency and outcome under an endpoint
+    // returns the body of a successful response
+    private String call(String endpoint, HttpUrl url) throws StepFailedException {
+        EndpointStats endpointStats = stats.get(endpoint);
+        long start = System.nanoTime();
+        try (Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+            ResponseBody responseBody = response.body();
+            String body = responseBody == null ? "" : responseBody.string();
+            endpointStats.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            if (response.code() == 429) {
+                endpointStats.rejected();
+                throw new StepFailedException(endpoint + ": rejected");
+            }
+            if (!response.isSuccessful()) {
+                endpointStats.error();
+                throw new StepFailedException(endpoint + ": " + response.code());
+            }
+            return body;
+        } catch (IOException e) {
+            endpointStats.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            endpointStats.error();
+            throw new StepFailedException(endpoint + ": " + e);
+        }
+    }
+
+    // returns a url builder for a path on the service
+    private HttpUrl.Builder endpoint(String path) {
+        HttpUrl url = HttpUrl.parse(settings.service + "/" + path);
+        if (url == null) {
+            throw new IllegalArgumentException("not a valid service url: " + settings.service);
+        }
+        return url.newBuilder();
+    }
+
+    // returns the state of the Spotify sign in url in an api/create or api/add response
+    private static String stateOf(String body) throws StepFailedException {
+        try {
+            JsonElement json = new JsonParser().parse(body);
+            HttpUrl authUrl = HttpUrl.parse(json.getAsJsonObject().get("authUrl").getAsString());
+            String state = authUrl == null ? null : authUrl.queryParameter("state");
+            if (state == null) {
+                throw new StepFailedException("no state in " + body);
+            }
+            return state;
+        } catch (RuntimeException e) {
+            throw new StepFailedException("unexpected response " + body);
+        }
+    }
+
+    // returns the stats of each endpoint, in the order of a flow
+    public List<EndpointStats> getStats() {
+        return new ArrayList<>(stats.values());
+    }
+
+    // prints the latency quantiles and error rates of each endpoint, and how the flows went
+    public void printReport(long elapsedMillis) {
+        System.out.println();
+        System.out.println(String.format("%-18s %8s %8s %8s %8s %8s %8s %8s %8s",
+                "endpoint", "count", "429s", "errors", "error %", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        for (EndpointStats s : stats.values()) {
+            System.out.println(String.format("%-18s %8d %8d %8d %8.2f %8d %8d %8d %8d",
+                    s.getName(), s.getCount(), s.getRejected(), s.getErrors(), s.getErrorRate() * 100,
+                    s.getQuantile(0.5), s.getQuantile(0.99), s.getQuantile(0.999), s.getMax()));
+        }
+        double seconds = elapsedMillis / 1000.0;
+        System.out.println();
+        System.out.println(String.format("flows: %d started, %d completed, %d failed, %d shed over %.1fs (%.2f completed/s, %.2f offered/s)",
+                started.get(), completed.get(), failed.get(), shed.get(), seconds,
+                completed.get() / seconds, (started.get() + shed.get()) / seconds));
+    }
+
+}
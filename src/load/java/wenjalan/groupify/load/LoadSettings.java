@@ -0,0 +1,77 @@
+package wenjalan.groupify.load;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// the settings of a LoadGenerator run: where the service is, how fast parties arrive and what each party does
+// given as key=value arguments, e.g. service=http://localhost:8080 rate=2 duration=120 guests=4
+public class LoadSettings {
+
+    // the base url of the service under test
+    public final String service;
+
+    // the average number of party flows started per second, arrivals being random (Poisson)
+    public final double rate;
+
+    // how long to keep starting flows, in seconds
+    public final int duration;
+
+    // the number of guests added to each party
+    public final int guests;
+
+    // the most flows running at once, arrivals beyond it are shed and counted rather than queued
+    public final int maxInFlight;
+
+    // the parameters each party's playlist is made with
+    public final boolean recommendations;
+    public final int maxSize;
+    public final int strictness;
+
+    // how long a single request may take before it counts as an error, in seconds
+    public final int timeout;
+
+    // constructor
+    private LoadSettings(Map<String, String> args) {
+        this.service = args.getOrDefault("service", "http://localhost:8080").replaceFirst("/+$", "");
+        this.rate = Double.parseDouble(args.getOrDefault("rate", "1"));
+        this.duration = Integer.parseInt(args.getOrDefault("duration", "60"));
+        this.guests = Integer.parseInt(args.getOrDefault("guests", "3"));
+        this.maxInFlight = Integer.parseInt(args.getOrDefault("max-in-flight", "64"));
+        this.recommendations = Boolean.parseBoolean(args.getOrDefault("recommendations", "true"));
+        this.maxSize = Integer.parseInt(args.getOrDefault("max-size", "80"));
+        this.strictness = Integer.parseInt(args.getOrDefault("strictness", "2"));
+        this.timeout = Integer.parseInt(args.getOrDefault("timeout", "60"));
+        if (rate <= 0) {
+            throw new IllegalArgumentException("rate must be more than 0");
+        }
+    }
+
+    // returns settings parsed from key=value arguments, using defaults for anything missing
+    public static LoadSettings parse(String... args) {
+        Map<String, String> map = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("expected key=value, got " + arg);
+            }
+            map.put(arg.substring(0, eq).replaceFirst("^--", ""), arg.substring(eq + 1));
+        }
+        return new LoadSettings(map);
+    }
+
+    @Override
+    public String toString() {
+        return "LoadSettings{" +
+                "service=" + service +
+                ", rate=" + rate +
+                ", duration=" + duration +
+                ", guests=" + guests +
+                ", maxInFlight=" + maxInFlight +
+                ", recommendations=" + recommendations +
+                ", maxSize=" + maxSize +
+                ", strictness=" + strictness +
+                ", timeout=" + timeout +
+                '}';
+    }
+
+}
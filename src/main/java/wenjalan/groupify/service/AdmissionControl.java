@@ -0,0 +1,187 @@
+package wenjalan.groupify.service;
+
+import org.springframework.http.HttpStatus;
+import wenjalan.groupify.service.util.TokenBucket;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+// decides whether the expensive endpoints take on a request, before it costs any Spotify quota
+// each client address has its own token bucket, each party another for its generations, and only so many playlists are generated at once
+// rejections are immediate, so well-behaved parties never queue behind a noisy one
+public class AdmissionControl {
+
+    // the defaults, in requests per minute and requests in a burst
+    public static final double DEFAULT_CLIENT_RATE = 30;
+    public static final int DEFAULT_CLIENT_BURST = 10;
+    public static final double DEFAULT_PARTY_RATE = 6;
+    public static final int DEFAULT_PARTY_BURST = 3;
+
+    // the default number of playlists generated at once
+    public static final int DEFAULT_MAX_GENERATIONS = 8;
+
+    // how many buckets may pile up before full ones are swept out
+    private static final int SWEEP_THRESHOLD = 4096;
+
+    // the buckets of each client address and each party
+    private static final Map<String, TokenBucket> CLIENTS = new ConcurrentHashMap<>();
+    private static final Map<String, TokenBucket> PARTIES = new ConcurrentHashMap<>();
+
+    // the settings buckets are created with, a rate of 0 or less turns that limit off
+    private static volatile double clientRate = DEFAULT_CLIENT_RATE;
+    private static volatile int clientBurst = DEFAULT_CLIENT_BURST;
+    private static volatile double partyRate = DEFAULT_PARTY_RATE;
+    private static volatile int partyBurst = DEFAULT_PARTY_BURST;
+
+    // the generation slots, resized in place so generations running across a reload give their slot back to it
+    private static final GenerationSlots generations = new GenerationSlots(DEFAULT_MAX_GENERATIONS);
+
+    // the number of generation slots, guarded by the AdmissionControl class
+    private static int maxGenerations = DEFAULT_MAX_GENERATIONS;
+
+    // a moving average of how long a generation takes, in millis, to tell rejected clients when to come back
+    private static final AtomicLong averageGenerationMillis = new AtomicLong(5000);
+
+    // statistics
+    private static final AtomicLong rejectedClients = new AtomicLong();
+    private static final AtomicLong rejectedParties = new AtomicLong();
+    private static final AtomicLong rejectedGenerations = new AtomicLong();
+
+    // a held generation slot, given back when closed
+    public static class Permit implements AutoCloseable {
+
+        // when the generation started
+        private final long start = System.currentTimeMillis();
+
+        // whether the slot has been given back
+        private boolean closed = false;
+
+        // constructor
+        private Permit() {
+
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            generations.release();
+            // weight the newest generation by an eighth
+            long took = System.currentTimeMillis() - start;
+            averageGenerationMillis.updateAndGet((avg) -> avg + (took - avg) / 8);
+        }
+
+    }
+
+    // the generation slots, which can be resized while generations hold some of them
+    private static class GenerationSlots extends Semaphore {
+
+        // serialVersionUID
+        private static final long serialVersionUID = 1L;
+
+        // constructor
+        GenerationSlots(int permits) {
+            super(permits);
+        }
+
+        // adds or takes away slots, shrunk slots run down as the generations over the new size finish
+        void resize(int from, int to) {
+            if (to > from) {
+                release(to - from);
+            }
+            else if (to < from) {
+                reducePermits(from - to);
+            }
+        }
+
+    }
+
+    // sets the limits requests are admitted with, rates are in requests per minute
+    public static synchronized void configure(double clientPerMinute, int clientMaxBurst, double partyPerMinute, int partyMaxBurst, int maxConcurrentGenerations) {
+        if (clientMaxBurst < 1 || partyMaxBurst < 1 || maxConcurrentGenerations < 1) {
+            throw new IllegalArgumentException("bursts and generations must be at least 1");
+        }
+        clientRate = clientPerMinute;
+        clientBurst = clientMaxBurst;
+        partyRate = partyPerMinute;
+        partyBurst = partyMaxBurst;
+        generations.resize(maxGenerations, maxConcurrentGenerations);
+        maxGenerations = maxConcurrentGenerations;
+        CLIENTS.clear();
+        PARTIES.clear();
+    }
+
+    // admits a request from a client address, or throws AdmissionRejectedException with 429
+    public static void admitClient(String address) {
+        if (clientRate > 0) {
+            admit(CLIENTS, address, clientRate, clientBurst, rejectedClients, "too many requests from " + address);
+        }
+    }
+
+    // admits a playlist generation for a party, or throws AdmissionRejectedException with 429
+    // guests joining aren't charged, so a whole party can join at once
+    public static void admitParty(String partyId) {
+        if (partyRate > 0) {
+            admit(PARTIES, partyId, partyRate, partyBurst, rejectedParties, "too many requests for party " + partyId);
+        }
+    }
+
+    // takes a generation slot, or throws AdmissionRejectedException with 503 if they're all busy
+    // the slot must be closed once the generation is over
+    public static Permit startGeneration() {
+        if (!generations.tryAcquire()) {
+            rejectedGenerations.incrementAndGet();
+            throw new AdmissionRejectedException("too many playlists being generated, try again shortly",
+                    HttpStatus.SERVICE_UNAVAILABLE, toRetryAfter(averageGenerationMillis.get()));
+        }
+        return new Permit();
+    }
+
+    // returns the number of generation slots free right now, 0 while a shrink is still running down
+    public static int getAvailableGenerations() {
+        return Math.max(0, generations.availablePermits());
+    }
+
+    // returns the number of requests turned away by client buckets
+    public static long getRejectedClients() {
+        return rejectedClients.get();
+    }
+
+    // returns the number of requests turned away by party buckets
+    public static long getRejectedParties() {
+        return rejectedParties.get();
+    }
+
+    // returns the number of generations turned away because every slot was busy
+    public static long getRejectedGenerations() {
+        return rejectedGenerations.get();
+    }
+
+    // takes a token from the bucket of a key, or throws
+    private static void admit(Map<String, TokenBucket> buckets, String key, double perMinute, int burst, AtomicLong rejected, String message) {
+        if (buckets.size() > SWEEP_THRESHOLD) {
+            // a full bucket is the same as a missing one, so dropping them forgets nothing
+            buckets.values().removeIf(TokenBucket::isFull);
+        }
+        long wait = buckets.computeIfAbsent(key, (k) -> new TokenBucket(perMinute / 60, burst)).tryTake();
+        if (wait > 0) {
+            rejected.incrementAndGet();
+            throw new AdmissionRejectedException(message, HttpStatus.TOO_MANY_REQUESTS, toRetryAfter(wait));
+        }
+    }
+
+    // returns a Retry-After in whole seconds for a wait in millis
+    private static long toRetryAfter(long millis) {
+        return Math.max(1, (millis + 999) / 1000);
+    }
+
+    // no instances
+    private AdmissionControl() {
+
+    }
+
+}
@@ -0,0 +1,34 @@
+package wenjalan.groupify.service;
+
+import org.springframework.http.HttpStatus;
+
+// thrown when AdmissionControl turns a request away
+public class AdmissionRejectedException extends RuntimeException {
+
+    // serialVersionUID
+    private static final long serialVersionUID = 1L;
+
+    // the status to answer with
+    private final HttpStatus status;
+
+    // how long the client should wait before trying again, in seconds
+    private final long retryAfter;
+
+    // constructor
+    public AdmissionRejectedException(String message, HttpStatus status, long retryAfter) {
+        super(message);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+
+    // returns the status to answer with
+    public HttpStatus getStatus() {
+        return this.status;
+    }
+
+    // returns how long the client should wait before trying again, in seconds
+    public long getRetryAfter() {
+        return this.retryAfter;
+    }
+
+}
@@ -9,4 +9,7 @@ public interface AuthenticationListener {
 
     String partyId();
 
+    // the state the sign in was started with, which its callback brings back
+    String state();
+
 }
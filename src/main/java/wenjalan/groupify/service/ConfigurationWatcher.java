@@ -0,0 +1,89 @@
+package wenjalan.groupify.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+// watches the properties file the service was started with, and reloads the configuration when it changes
+// a file that can't be read or is out of range is logged and ignored, the running configuration stays as it was
+public class ConfigurationWatcher implements Runnable {
+
+    // the logger
+    private static final Logger LOG = LoggerFactory.getLogger(ConfigurationWatcher.class);
+
+    // how long to wait after a change before reading, so an editor's several writes are read once
+    private static final long SETTLE_TIME = 200;
+
+    // the properties file path, as given on the command line
+    private final String filepath;
+
+    // the file it resolved to
+    private final Path file;
+
+    // constructor
+    private ConfigurationWatcher(String filepath, Path file) {
+        this.filepath = filepath;
+        this.file = file;
+    }
+
+    // starts watching a properties file path, if it resolves to a plain file
+    public static void watch(String filepath) {
+        Path file = GroupifyConfiguration.locate(filepath);
+        if (file == null) {
+            LOG.warn("properties file isn't a plain file, changes to it need a restart path={}", filepath);
+            return;
+        }
+        Thread watcher = new Thread(new ConfigurationWatcher(filepath, file), "groupify-config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        LOG.info("watching properties file file={}", file);
+    }
+
+    @Override
+    public void run() {
+        // watch the directory, since editors often replace a file rather than write to it
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            for (;;) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (file.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    Thread.sleep(SETTLE_TIME);
+                    key.pollEvents();
+                    reload();
+                }
+                if (!key.reset()) {
+                    LOG.warn("properties directory is gone, no longer watching file={}", file);
+                    return;
+                }
+            }
+        } catch (IOException | ClosedWatchServiceException e) {
+            LOG.warn("can't watch properties file file={}", file, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // reads the file and swaps it in, if it's complete
+    private void reload() {
+        try {
+            GroupifyService.reconfigure(GroupifyConfiguration.read(filepath));
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("properties file not reloaded, keeping the running configuration file={} reason={}", file, e.toString());
+        }
+    }
+
+}
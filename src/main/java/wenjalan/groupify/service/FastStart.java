@@ -0,0 +1,101 @@
+package wenjalan.groupify.service;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.Banner;
+import org.springframework.boot.SpringApplication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// the fast-start mode: beans created on first use and only the auto-configuration Groupify needs,
+// plus the training run an AppCDS archive is dumped from, see the cdsArchive task in build.gradle
+public class FastStart {
+
+    // the logger
+    private static final Logger LOG = LoggerFactory.getLogger(FastStart.class);
+
+    // the system property that makes start() warm up the request path and exit, for dumping an AppCDS archive
+    public static final String TRAINING_RUN_PROPERTY = "groupify.training-run";
+
+    // auto-configuration that matches on Groupify's classpath but that it never uses
+    public static final List<String> EXCLUDED_AUTO_CONFIGURATION = Arrays.asList(
+            "org.springframework.boot.autoconfigure.jmx.JmxAutoConfiguration",
+            "org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration",
+            "org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration",
+            "org.springframework.boot.autoconfigure.web.servlet.MultipartAutoConfiguration",
+            "org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration",
+            "org.springframework.boot.autoconfigure.gson.GsonAutoConfiguration",
+            "org.springframework.boot.autoconfigure.http.codec.CodecsAutoConfiguration"
+    );
+
+    // the requests a training run makes, so the classes behind them end up in the archive
+    private static final List<String> TRAINING_REQUESTS = Arrays.asList(
+            "api/limits",
+            "api/create",
+            "api/metrics/prometheus",
+            "api/startup"
+    );
+
+    // makes every bean lazy, the Spring Boot 2.0 equivalent of spring.main.lazy-initialization
+    // the first request pays for the MVC infrastructure instead of startup, which time to first request shows
+    static class LazyInitBeanFactoryPostProcessor implements BeanFactoryPostProcessor {
+
+        @Override
+        public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                definition.setLazyInit(true);
+            }
+        }
+
+    }
+
+    // sets a SpringApplication up to start fast
+    // explicitly given properties still win over the defaults set here
+    public static void apply(SpringApplication application) {
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put("spring.autoconfigure.exclude", String.join(",", EXCLUDED_AUTO_CONFIGURATION));
+        defaults.put("spring.jmx.enabled", "false");
+        defaults.put("spring.mvc.favicon.enabled", "false");
+        application.setDefaultProperties(defaults);
+        application.setBannerMode(Banner.Mode.OFF);
+        application.addInitializers((context) -> context.addBeanFactoryPostProcessor(new LazyInitBeanFactoryPostProcessor()));
+    }
+
+    // returns whether this is a training run
+    public static boolean isTrainingRun() {
+        return Boolean.getBoolean(TRAINING_RUN_PROPERTY);
+    }
+
+    // makes the training requests against the service listening on a port
+    // failures are only logged, a training run is best effort
+    static void train(int port) {
+        for (String path : TRAINING_REQUESTS) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/" + path).openConnection();
+                int status = connection.getResponseCode();
+                InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+                if (body != null) {
+                    while (body.read() >= 0) {
+                        // drain it
+                    }
+                    body.close();
+                }
+                LOG.info("training request path={} status={}", path, status);
+            } catch (IOException e) {
+                LOG.warn("training request failed path={}", path, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package wenjalan.groupify.service;
+
+import wenjalan.groupify.service.model.GenerationReport;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// keeps the reports of the most recent playlist generations, so slow ones can be looked at after the fact
+public class GenerationHistory {
+
+    // the number of reports kept, older ones are dropped
+    public static final int CAPACITY = 50;
+
+    // the reports, newest first, guarded by itself
+    private static final Deque<GenerationReport> REPORTS = new ArrayDeque<>(CAPACITY);
+
+    // adds a report, dropping the oldest if full
+    public static void record(GenerationReport report) {
+        synchronized (REPORTS) {
+            if (REPORTS.size() == CAPACITY) {
+                REPORTS.removeLast();
+            }
+            REPORTS.addFirst(report);
+        }
+    }
+
+    // returns the kept reports, newest first
+    public static List<GenerationReport> recent() {
+        synchronized (REPORTS) {
+            return new ArrayList<>(REPORTS);
+        }
+    }
+
+    // no instances
+    private GenerationHistory() {
+
+    }
+
+}
@@ -1,14 +1,35 @@
 package wenjalan.groupify.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wenjalan.groupify.service.cluster.Cluster;
+import wenjalan.groupify.service.spotify.CircuitBreaker;
+import wenjalan.groupify.service.spotify.RateLimiter;
+import wenjalan.groupify.service.util.CatalogBuffer;
+import wenjalan.groupify.service.util.CatalogCache;
+import wenjalan.groupify.service.util.CatalogLoader;
+import wenjalan.groupify.service.util.PlaylistConfiguration;
+
 import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 // represents a configuration for the Groupify app
 public class GroupifyConfiguration {
 
+    // the logger
+    private static final Logger LOG = LoggerFactory.getLogger(GroupifyConfiguration.class);
+
     // the scopes we're using for host users
     public static final String[] HOST_SCOPES = {
             "playlist-modify-public",
@@ -33,13 +54,78 @@ public class GroupifyConfiguration {
     public final String GUEST_ID;
     public final String GUEST_SECRET;
     public final boolean VERBOSE;
+    public final double RATE_LIMIT;
+    public final int RATE_BURST;
+    public final int HTTP_MAX_IDLE_CONNECTIONS;
+    public final long HTTP_KEEP_ALIVE;
+    public final long HTTP_CONNECT_TIMEOUT;
+    public final long HTTP_READ_TIMEOUT;
+    public final boolean HTTP2;
+    public final int FLUSH_PARALLELISM;
+    public final boolean CATALOG_BATCHING;
+    public final long CATALOG_BATCH_WINDOW;
+    public final int BREAKER_FAILURES;
+    public final long BREAKER_OPEN_TIME;
+    public final int BULKHEAD_MAX_CONCURRENT;
+    public final URI SPOTIFY_BASE_URI;
+    public final String SPOTIFY_RECORD;
+    public final String SPOTIFY_REPLAY;
+    public final double REPLAY_TIME_SCALE;
+    public final boolean VIRTUAL_THREADS;
+    public final double ADMISSION_CLIENT_RATE;
+    public final int ADMISSION_CLIENT_BURST;
+    public final double ADMISSION_PARTY_RATE;
+    public final int ADMISSION_PARTY_BURST;
+    public final int MAX_CONCURRENT_GENERATIONS;
+    public final long MAX_TIME_BUDGET;
+    public final boolean FAST_START;
+    public final long PARTY_MAX_AGE;
+    public final long REAPER_POLL;
+    public final int TRACK_CACHE_SIZE;
+    public final int ARTIST_CACHE_SIZE;
+    public final long CATALOG_CACHE_TTL;
+    public final String PARTY_JOURNAL;
+    public final long JOURNAL_SYNC_INTERVAL;
+    public final long JOURNAL_SNAPSHOT_INTERVAL;
+    public final String CLUSTER_NODE;
+    public final String CLUSTER_NODES;
+    public final int CLUSTER_VIRTUAL_NODES;
 
     // returns a GroupifyConfiguration given a properties file path
+    // exits if the file can't be parsed, since the service can't run without one
     public static GroupifyConfiguration from(String filepath) {
+        try {
+            return read(filepath);
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException("properties file not found: " + filepath);
+        } catch (IOException e) {
+            LOG.error("error reading properties file path={}", filepath, e);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    // returns the file a properties file path resolves to on the classpath, or null if it isn't a plain file
+    // only a plain file can be watched for changes, one inside a jar can't be edited anyway
+    public static Path locate(String filepath) {
+        URL url = ClassLoader.getSystemResource(filepath);
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    // returns a GroupifyConfiguration given a properties file path
+    // throws IOException if the file is missing or incomplete, leaving what to do about it to the caller
+    public static GroupifyConfiguration read(String filepath) throws IOException {
         // find and read the file
         InputStream properties = ClassLoader.getSystemResourceAsStream(filepath);
         if (properties == null) {
-            throw new IllegalArgumentException("properties file not found: " + filepath);
+            throw new FileNotFoundException(filepath);
         }
         String clientId = null;
         String clientSecret = null;
@@ -47,6 +133,42 @@ public class GroupifyConfiguration {
         String guestSecret = null;
         String redirectUri = null;
         boolean verbose = false;
+        double rateLimit = RateLimiter.DEFAULT_RATE;
+        int rateBurst = RateLimiter.DEFAULT_BURST;
+        int httpMaxIdleConnections = 32;
+        long httpKeepAlive = 300;
+        long httpConnectTimeout = 5000;
+        long httpReadTimeout = 15000;
+        boolean http2 = true;
+        int flushParallelism = CatalogBuffer.DEFAULT_PARALLELISM;
+        boolean catalogBatching = true;
+        long catalogBatchWindow = CatalogLoader.DEFAULT_WINDOW;
+        int breakerFailures = CircuitBreaker.DEFAULT_FAILURE_THRESHOLD;
+        long breakerOpenTime = CircuitBreaker.DEFAULT_OPEN_TIME;
+        int bulkheadMaxConcurrent = CircuitBreaker.DEFAULT_MAX_CONCURRENT;
+        String spotifyBaseUri = null;
+        String spotifyRecord = null;
+        String spotifyReplay = null;
+        double replayTimeScale = 1.0;
+        boolean virtualThreads = false;
+        double admissionClientRate = AdmissionControl.DEFAULT_CLIENT_RATE;
+        int admissionClientBurst = AdmissionControl.DEFAULT_CLIENT_BURST;
+        double admissionPartyRate = AdmissionControl.DEFAULT_PARTY_RATE;
+        int admissionPartyBurst = AdmissionControl.DEFAULT_PARTY_BURST;
+        int maxConcurrentGenerations = AdmissionControl.DEFAULT_MAX_GENERATIONS;
+        long maxTimeBudget = PlaylistConfiguration.DEFAULT_MAX_TIME_BUDGET;
+        boolean fastStart = false;
+        long partyMaxAge = PartyManager.PARTY_MAX_AGE;
+        long reaperPoll = PartyManager.REAPER_POLL;
+        int trackCacheSize = CatalogCache.DEFAULT_TRACK_CAPACITY;
+        int artistCacheSize = CatalogCache.DEFAULT_ARTIST_CAPACITY;
+        long catalogCacheTtl = CatalogCache.DEFAULT_TTL;
+        String partyJournal = null;
+        long journalSyncInterval = PartyJournal.DEFAULT_SYNC_INTERVAL;
+        long journalSnapshotInterval = PartyJournal.DEFAULT_SNAPSHOT_INTERVAL;
+        String clusterNode = null;
+        String clusterNodes = null;
+        int clusterVirtualNodes = Cluster.DEFAULT_VIRTUAL_NODES;
         try (BufferedReader br = new BufferedReader(new InputStreamReader(properties))) {
             for (String line; (line = br.readLine()) != null;) {
                 // client id property
@@ -73,25 +195,262 @@ public class GroupifyConfiguration {
                 else if (line.startsWith("verbose-logging=")) {
                     verbose = Boolean.parseBoolean(line.replace("verbose-logging=", "").toLowerCase());
                 }
+                // calls per second allowed per client id
+                else if (line.startsWith("spotify-rate-limit=")) {
+                    rateLimit = Double.parseDouble(line.replace("spotify-rate-limit=", ""));
+                }
+                // calls allowed in a burst per client id
+                else if (line.startsWith("spotify-rate-burst=")) {
+                    rateBurst = Integer.parseInt(line.replace("spotify-rate-burst=", ""));
+                }
+                // idle connections kept in the shared http pool
+                else if (line.startsWith("http-max-idle-connections=")) {
+                    httpMaxIdleConnections = Integer.parseInt(line.replace("http-max-idle-connections=", ""));
+                }
+                // seconds an idle connection is kept alive
+                else if (line.startsWith("http-keep-alive=")) {
+                    httpKeepAlive = Long.parseLong(line.replace("http-keep-alive=", ""));
+                }
+                // connect timeout in millis
+                else if (line.startsWith("http-connect-timeout=")) {
+                    httpConnectTimeout = Long.parseLong(line.replace("http-connect-timeout=", ""));
+                }
+                // read/write timeout in millis
+                else if (line.startsWith("http-read-timeout=")) {
+                    httpReadTimeout = Long.parseLong(line.replace("http-read-timeout=", ""));
+                }
+                // whether to negotiate HTTP/2
+                else if (line.startsWith("http2=")) {
+                    http2 = Boolean.parseBoolean(line.replace("http2=", "").toLowerCase());
+                }
+                // chunks a track/artist buffer fetches at once, or batches a loader has in flight when batching is on
+                else if (line.startsWith("buffer-flush-parallelism=")) {
+                    flushParallelism = Integer.parseInt(line.replace("buffer-flush-parallelism=", ""));
+                }
+                // whether track/artist lookups are batched across the whole node
+                else if (line.startsWith("catalog-batching=")) {
+                    catalogBatching = Boolean.parseBoolean(line.replace("catalog-batching=", "").toLowerCase());
+                }
+                // millis a shared batch waits to fill up
+                else if (line.startsWith("catalog-batch-window=")) {
+                    catalogBatchWindow = Long.parseLong(line.replace("catalog-batch-window=", ""));
+                }
+                // failures in a row that open an endpoint's circuit
+                else if (line.startsWith("breaker-failure-threshold=")) {
+                    breakerFailures = Integer.parseInt(line.replace("breaker-failure-threshold=", ""));
+                }
+                // millis an open circuit waits before a trial call
+                else if (line.startsWith("breaker-open-time=")) {
+                    breakerOpenTime = Long.parseLong(line.replace("breaker-open-time=", ""));
+                }
+                // calls allowed on one endpoint at once
+                else if (line.startsWith("bulkhead-max-concurrent=")) {
+                    bulkheadMaxConcurrent = Integer.parseInt(line.replace("bulkhead-max-concurrent=", ""));
+                }
+                // where to send Spotify calls instead of Spotify, e.g. a local FakeSpotifyServer
+                else if (line.startsWith("spotify-base-uri=")) {
+                    spotifyBaseUri = line.replace("spotify-base-uri=", "");
+                }
+                // archive to record Spotify traffic to
+                else if (line.startsWith("spotify-record=")) {
+                    spotifyRecord = line.replace("spotify-record=", "");
+                }
+                // archive to answer Spotify calls from instead of the network
+                else if (line.startsWith("spotify-replay=")) {
+                    spotifyReplay = line.replace("spotify-replay=", "");
+                }
+                // what recorded timings are multiplied by during replay, 0 for no delay
+                else if (line.startsWith("replay-time-scale=")) {
+                    replayTimeScale = Double.parseDouble(line.replace("replay-time-scale=", ""));
+                }
+                // whether to run requests and Spotify calls on virtual threads, needs Java 21+
+                else if (line.startsWith("virtual-threads=")) {
+                    virtualThreads = Boolean.parseBoolean(line.replace("virtual-threads=", "").toLowerCase());
+                }
+                // create/add/make requests allowed per minute from one client address, 0 for no limit
+                else if (line.startsWith("admission-client-rate=")) {
+                    admissionClientRate = Double.parseDouble(line.replace("admission-client-rate=", ""));
+                }
+                // create/add/make requests allowed in a burst from one client address
+                else if (line.startsWith("admission-client-burst=")) {
+                    admissionClientBurst = Integer.parseInt(line.replace("admission-client-burst=", ""));
+                }
+                // make requests allowed per minute for one party, 0 for no limit
+                else if (line.startsWith("admission-party-rate=")) {
+                    admissionPartyRate = Double.parseDouble(line.replace("admission-party-rate=", ""));
+                }
+                // make requests allowed in a burst for one party
+                else if (line.startsWith("admission-party-burst=")) {
+                    admissionPartyBurst = Integer.parseInt(line.replace("admission-party-burst=", ""));
+                }
+                // playlists generated at once across the node
+                else if (line.startsWith("max-concurrent-generations=")) {
+                    maxConcurrentGenerations = Integer.parseInt(line.replace("max-concurrent-generations=", ""));
+                }
+                // the most time a client may give a playlist generation, in millis
+                else if (line.startsWith("max-time-budget=")) {
+                    maxTimeBudget = Long.parseLong(line.replace("max-time-budget=", ""));
+                }
+                // whether to start with lazy beans and only the auto-configuration Groupify uses
+                else if (line.startsWith("fast-start=")) {
+                    fastStart = Boolean.parseBoolean(line.replace("fast-start=", "").toLowerCase());
+                }
+                // how long a party lives, in millis
+                else if (line.startsWith("party-max-age=")) {
+                    partyMaxAge = Long.parseLong(line.replace("party-max-age=", ""));
+                }
+                // how often expired parties are looked for, in millis
+                else if (line.startsWith("reaper-poll=")) {
+                    reaperPoll = Long.parseLong(line.replace("reaper-poll=", ""));
+                }
+                // the most tracks the catalog cache holds
+                else if (line.startsWith("track-cache-size=")) {
+                    trackCacheSize = Integer.parseInt(line.replace("track-cache-size=", ""));
+                }
+                // the most artists the catalog cache holds
+                else if (line.startsWith("artist-cache-size=")) {
+                    artistCacheSize = Integer.parseInt(line.replace("artist-cache-size=", ""));
+                }
+                // how long a cached track or artist lives, in millis
+                else if (line.startsWith("catalog-cache-ttl=")) {
+                    catalogCacheTtl = Long.parseLong(line.replace("catalog-cache-ttl=", ""));
+                }
+                // where parties are journaled so they survive a restart, none if empty
+                else if (line.startsWith("party-journal=")) {
+                    partyJournal = line.replace("party-journal=", "");
+                }
+                // the most time a journaled change waits to be fsynced, in millis
+                else if (line.startsWith("journal-sync-interval=")) {
+                    journalSyncInterval = Long.parseLong(line.replace("journal-sync-interval=", ""));
+                }
+                // how often the journal is compacted into a snapshot, in millis
+                else if (line.startsWith("journal-snapshot-interval=")) {
+                    journalSnapshotInterval = Long.parseLong(line.replace("journal-snapshot-interval=", ""));
+                }
+                // the name of this node in the cluster
+                else if (line.startsWith("cluster-node=")) {
+                    clusterNode = line.replace("cluster-node=", "");
+                }
+                // every node of the cluster as name=url pairs, this one included, none if empty
+                else if (line.startsWith("cluster-nodes=")) {
+                    clusterNodes = line.replace("cluster-nodes=", "");
+                }
+                // points each node is placed at on the cluster's hash ring
+                else if (line.startsWith("cluster-virtual-nodes=")) {
+                    clusterVirtualNodes = Integer.parseInt(line.replace("cluster-virtual-nodes=", ""));
+                }
             }
             if (clientId == null || clientSecret == null || guestId == null || guestSecret == null || redirectUri == null) {
                 throw new IOException("error parsing properties");
             }
-        } catch (IOException e) {
-            System.err.println("! error reading properties file: " + e.getMessage());
-            e.printStackTrace();
-            System.exit(1);
+            // caught here rather than where they're applied, so a reload never applies half a file
+            // every setting applyTuning() hands on is checked, as are the ones only read at startup
+            // rates are checked with !(x > 0) rather than x <= 0 so NaN is caught too
+            if (!(rateLimit > 0) || Double.isInfinite(rateLimit) || rateBurst < 1
+                    || httpMaxIdleConnections < 0 || httpKeepAlive < 0 || httpConnectTimeout < 0 || httpReadTimeout < 0
+                    || flushParallelism < 1 || catalogBatchWindow < 0
+                    || breakerFailures < 1 || breakerOpenTime < 0 || bulkheadMaxConcurrent < 1
+                    || !(replayTimeScale >= 0) || Double.isInfinite(replayTimeScale)
+                    || Double.isNaN(admissionClientRate) || Double.isInfinite(admissionClientRate) || admissionClientBurst < 1
+                    || Double.isNaN(admissionPartyRate) || Double.isInfinite(admissionPartyRate) || admissionPartyBurst < 1
+                    || maxConcurrentGenerations < 1 || maxTimeBudget <= 0
+                    || partyMaxAge <= 0 || reaperPoll <= 0 || trackCacheSize < 2 || artistCacheSize < 2 || catalogCacheTtl < 0
+                    || journalSyncInterval <= 0 || journalSnapshotInterval <= 0 || clusterVirtualNodes < 1) {
+                throw new IOException("properties out of range");
+            }
+            if (clusterNodes != null && !clusterNodes.isEmpty() && (clusterNode == null || clusterNode.isEmpty())) {
+                throw new IOException("cluster-nodes needs cluster-node to name this node");
+            }
         }
-        return new GroupifyConfiguration(clientId, clientSecret, clientId, clientSecret, URI.create(redirectUri), verbose);
+        return new GroupifyConfiguration(clientId, clientSecret, clientId, clientSecret, URI.create(redirectUri), verbose, rateLimit, rateBurst,
+                httpMaxIdleConnections, httpKeepAlive, httpConnectTimeout, httpReadTimeout, http2, flushParallelism,
+                catalogBatching, catalogBatchWindow, breakerFailures, breakerOpenTime, bulkheadMaxConcurrent,
+                spotifyBaseUri == null || spotifyBaseUri.isEmpty() ? null : URI.create(spotifyBaseUri),
+                spotifyRecord == null || spotifyRecord.isEmpty() ? null : spotifyRecord,
+                spotifyReplay == null || spotifyReplay.isEmpty() ? null : spotifyReplay, replayTimeScale, virtualThreads,
+                admissionClientRate, admissionClientBurst, admissionPartyRate, admissionPartyBurst, maxConcurrentGenerations, maxTimeBudget,
+                fastStart, partyMaxAge, reaperPoll, trackCacheSize, artistCacheSize, catalogCacheTtl,
+                partyJournal == null || partyJournal.isEmpty() ? null : partyJournal, journalSyncInterval, journalSnapshotInterval,
+                clusterNode, clusterNodes == null || clusterNodes.isEmpty() ? null : clusterNodes, clusterVirtualNodes);
     }
 
-    private GroupifyConfiguration(String clientId, String clientSecret, String guestId, String guestSecret, URI redirectUri, boolean verbose) {
+    private GroupifyConfiguration(String clientId, String clientSecret, String guestId, String guestSecret, URI redirectUri, boolean verbose, double rateLimit, int rateBurst,
+                                  int httpMaxIdleConnections, long httpKeepAlive, long httpConnectTimeout, long httpReadTimeout, boolean http2,
+                                  int flushParallelism, boolean catalogBatching, long catalogBatchWindow,
+                                  int breakerFailures, long breakerOpenTime, int bulkheadMaxConcurrent, URI spotifyBaseUri,
+                                  String spotifyRecord, String spotifyReplay, double replayTimeScale, boolean virtualThreads,
+                                  double admissionClientRate, int admissionClientBurst, double admissionPartyRate, int admissionPartyBurst,
+                                  int maxConcurrentGenerations, long maxTimeBudget, boolean fastStart, long partyMaxAge, long reaperPoll,
+                                  int trackCacheSize, int artistCacheSize, long catalogCacheTtl,
+                                  String partyJournal, long journalSyncInterval, long journalSnapshotInterval,
+                                  String clusterNode, String clusterNodes, int clusterVirtualNodes) {
         CLIENT_ID = clientId;
         CLIENT_SECRET = clientSecret;
         GUEST_ID = guestId;
         GUEST_SECRET = guestSecret;
         REDIRECT_URI = redirectUri;
         VERBOSE = verbose;
+        RATE_LIMIT = rateLimit;
+        RATE_BURST = rateBurst;
+        HTTP_MAX_IDLE_CONNECTIONS = httpMaxIdleConnections;
+        HTTP_KEEP_ALIVE = httpKeepAlive;
+        HTTP_CONNECT_TIMEOUT = httpConnectTimeout;
+        HTTP_READ_TIMEOUT = httpReadTimeout;
+        HTTP2 = http2;
+        FLUSH_PARALLELISM = flushParallelism;
+        CATALOG_BATCHING = catalogBatching;
+        CATALOG_BATCH_WINDOW = catalogBatchWindow;
+        BREAKER_FAILURES = breakerFailures;
+        BREAKER_OPEN_TIME = breakerOpenTime;
+        BULKHEAD_MAX_CONCURRENT = bulkheadMaxConcurrent;
+        SPOTIFY_BASE_URI = spotifyBaseUri;
+        SPOTIFY_RECORD = spotifyRecord;
+        SPOTIFY_REPLAY = spotifyReplay;
+        REPLAY_TIME_SCALE = replayTimeScale;
+        VIRTUAL_THREADS = virtualThreads;
+        ADMISSION_CLIENT_RATE = admissionClientRate;
+        ADMISSION_CLIENT_BURST = admissionClientBurst;
+        ADMISSION_PARTY_RATE = admissionPartyRate;
+        ADMISSION_PARTY_BURST = admissionPartyBurst;
+        MAX_CONCURRENT_GENERATIONS = maxConcurrentGenerations;
+        MAX_TIME_BUDGET = maxTimeBudget;
+        FAST_START = fastStart;
+        PARTY_MAX_AGE = partyMaxAge;
+        REAPER_POLL = reaperPoll;
+        TRACK_CACHE_SIZE = trackCacheSize;
+        ARTIST_CACHE_SIZE = artistCacheSize;
+        CATALOG_CACHE_TTL = catalogCacheTtl;
+        PARTY_JOURNAL = partyJournal;
+        JOURNAL_SYNC_INTERVAL = journalSyncInterval;
+        JOURNAL_SNAPSHOT_INTERVAL = journalSnapshotInterval;
+        CLUSTER_NODE = clusterNode;
+        CLUSTER_NODES = clusterNodes;
+        CLUSTER_VIRTUAL_NODES = clusterVirtualNodes;
+    }
+
+    // returns the names of the settings that differ from a previous configuration but only take effect on a restart
+    // these shape the shared transport, the thread model or Spring itself, which are built once at startup
+    public List<String> restartRequiredChanges(GroupifyConfiguration previous) {
+        List<String> changed = new ArrayList<>();
+        if (HTTP_MAX_IDLE_CONNECTIONS != previous.HTTP_MAX_IDLE_CONNECTIONS) changed.add("HTTP_MAX_IDLE_CONNECTIONS");
+        if (HTTP_KEEP_ALIVE != previous.HTTP_KEEP_ALIVE) changed.add("HTTP_KEEP_ALIVE");
+        if (HTTP_CONNECT_TIMEOUT != previous.HTTP_CONNECT_TIMEOUT) changed.add("HTTP_CONNECT_TIMEOUT");
+        if (HTTP_READ_TIMEOUT != previous.HTTP_READ_TIMEOUT) changed.add("HTTP_READ_TIMEOUT");
+        if (HTTP2 != previous.HTTP2) changed.add("HTTP2");
+        if (CATALOG_BATCHING != previous.CATALOG_BATCHING) changed.add("CATALOG_BATCHING");
+        if (!Objects.equals(SPOTIFY_BASE_URI, previous.SPOTIFY_BASE_URI)) changed.add("SPOTIFY_BASE_URI");
+        if (!Objects.equals(SPOTIFY_RECORD, previous.SPOTIFY_RECORD)) changed.add("SPOTIFY_RECORD");
+        if (!Objects.equals(SPOTIFY_REPLAY, previous.SPOTIFY_REPLAY)) changed.add("SPOTIFY_REPLAY");
+        if (REPLAY_TIME_SCALE != previous.REPLAY_TIME_SCALE) changed.add("REPLAY_TIME_SCALE");
+        if (VIRTUAL_THREADS != previous.VIRTUAL_THREADS) changed.add("VIRTUAL_THREADS");
+        if (FAST_START != previous.FAST_START) changed.add("FAST_START");
+        if (!Objects.equals(PARTY_JOURNAL, previous.PARTY_JOURNAL)) changed.add("PARTY_JOURNAL");
+        if (JOURNAL_SYNC_INTERVAL != previous.JOURNAL_SYNC_INTERVAL) changed.add("JOURNAL_SYNC_INTERVAL");
+        if (JOURNAL_SNAPSHOT_INTERVAL != previous.JOURNAL_SNAPSHOT_INTERVAL) changed.add("JOURNAL_SNAPSHOT_INTERVAL");
+        if (!Objects.equals(CLUSTER_NODE, previous.CLUSTER_NODE)) changed.add("CLUSTER_NODE");
+        if (!Objects.equals(CLUSTER_NODES, previous.CLUSTER_NODES)) changed.add("CLUSTER_NODES");
+        if (CLUSTER_VIRTUAL_NODES != previous.CLUSTER_VIRTUAL_NODES) changed.add("CLUSTER_VIRTUAL_NODES");
+        return changed;
     }
 
     @Override
@@ -103,6 +462,42 @@ public class GroupifyConfiguration {
                 ", GUEST_ID='" + GUEST_ID + '\'' +
                 ", GUEST_SECRET='" + GUEST_SECRET + '\'' +
                 ", VERBOSE=" + VERBOSE +
+                ", RATE_LIMIT=" + RATE_LIMIT +
+                ", RATE_BURST=" + RATE_BURST +
+                ", HTTP_MAX_IDLE_CONNECTIONS=" + HTTP_MAX_IDLE_CONNECTIONS +
+                ", HTTP_KEEP_ALIVE=" + HTTP_KEEP_ALIVE +
+                ", HTTP_CONNECT_TIMEOUT=" + HTTP_CONNECT_TIMEOUT +
+                ", HTTP_READ_TIMEOUT=" + HTTP_READ_TIMEOUT +
+                ", HTTP2=" + HTTP2 +
+                ", FLUSH_PARALLELISM=" + FLUSH_PARALLELISM +
+                ", CATALOG_BATCHING=" + CATALOG_BATCHING +
+                ", CATALOG_BATCH_WINDOW=" + CATALOG_BATCH_WINDOW +
+                ", BREAKER_FAILURES=" + BREAKER_FAILURES +
+                ", BREAKER_OPEN_TIME=" + BREAKER_OPEN_TIME +
+                ", BULKHEAD_MAX_CONCURRENT=" + BULKHEAD_MAX_CONCURRENT +
+                ", SPOTIFY_BASE_URI=" + SPOTIFY_BASE_URI +
+                ", SPOTIFY_RECORD=" + SPOTIFY_RECORD +
+                ", SPOTIFY_REPLAY=" + SPOTIFY_REPLAY +
+                ", REPLAY_TIME_SCALE=" + REPLAY_TIME_SCALE +
+                ", VIRTUAL_THREADS=" + VIRTUAL_THREADS +
+                ", ADMISSION_CLIENT_RATE=" + ADMISSION_CLIENT_RATE +
+                ", ADMISSION_CLIENT_BURST=" + ADMISSION_CLIENT_BURST +
+                ", ADMISSION_PARTY_RATE=" + ADMISSION_PARTY_RATE +
+                ", ADMISSION_PARTY_BURST=" + ADMISSION_PARTY_BURST +
+                ", MAX_CONCURRENT_GENERATIONS=" + MAX_CONCURRENT_GENERATIONS +
+                ", MAX_TIME_BUDGET=" + MAX_TIME_BUDGET +
+                ", FAST_START=" + FAST_START +
+                ", PARTY_MAX_AGE=" + PARTY_MAX_AGE +
+                ", REAPER_POLL=" + REAPER_POLL +
+                ", TRACK_CACHE_SIZE=" + TRACK_CACHE_SIZE +
+                ", ARTIST_CACHE_SIZE=" + ARTIST_CACHE_SIZE +
+                ", CATALOG_CACHE_TTL=" + CATALOG_CACHE_TTL +
+                ", PARTY_JOURNAL=" + PARTY_JOURNAL +
+                ", JOURNAL_SYNC_INTERVAL=" + JOURNAL_SYNC_INTERVAL +
+                ", JOURNAL_SNAPSHOT_INTERVAL=" + JOURNAL_SNAPSHOT_INTERVAL +
+                ", CLUSTER_NODE=" + CLUSTER_NODE +
+                ", CLUSTER_NODES=" + CLUSTER_NODES +
+                ", CLUSTER_VIRTUAL_NODES=" + CLUSTER_VIRTUAL_NODES +
                 '}';
     }
     
@@ -1,15 +1,35 @@
 package wenjalan.groupify.service;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import wenjalan.groupify.service.model.GenerationReport;
 import wenjalan.groupify.service.model.Party;
 import wenjalan.groupify.service.model.GroupifyUser;
+import wenjalan.groupify.service.model.PartySnapshot;
 import wenjalan.groupify.service.model.webmodel.*;
+import wenjalan.groupify.service.spotify.CircuitBreaker;
+import wenjalan.groupify.service.spotify.RateLimiter;
+import wenjalan.groupify.service.spotify.SpotifyMetrics;
+import wenjalan.groupify.service.util.CatalogCache;
+import wenjalan.groupify.service.util.GetArtistBuffer;
+import wenjalan.groupify.service.util.GetTrackBuffer;
 import wenjalan.groupify.service.util.PlaylistConfiguration;
 
+import javax.servlet.http.HttpServletRequest;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 // GroupifyController handles the HTTP interfacing of the GroupifyService, including authentication callback
 @RestController
@@ -28,11 +48,12 @@ public class GroupifyController {
             return "error retrieving state";
         }
 
-        // find the party id and execute the corresponding listener
+        // find the listener of this sign in and execute it
+        // a party has a listener per guest signing in, so the whole state has to match, not just the party id
         String partyId = state.split(":")[0];
         for (AuthenticationListener listener : GroupifyService.AUTHENTICATION_LISTENERS) {
-            // if the ids match
-            if (listener.partyId().equals(partyId)) {
+            // if the states match
+            if (listener.state().equals(state)) {
                 // execute that listener
                 listener.onAuthenticationSuccess(code, state);
                 // return happy message
@@ -45,24 +66,36 @@ public class GroupifyController {
     }
 
     // returns a PartyWebModel JSON given an id
-    @CrossOrigin
+    // answers 304 Not Modified if the client's If-None-Match still matches the party's snapshot
+    @CrossOrigin(exposedHeaders = HttpHeaders.ETAG)
     @RequestMapping(value = "api/party")
-    public PartyWebModel party(
-            @RequestParam(value = "id", defaultValue = "") String id) {
+    public ResponseEntity<byte[]> party(
+            @RequestParam(value = "id", defaultValue = "") String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         // get the party with that id
         Party p = getParty(id);
         if (p == null) {
             throw new IllegalArgumentException("no party with id " + id + " found");
         }
 
-        // return the JSON representation of that party
-        return new PartyWebModel(p);
+        // return the already serialized JSON of the party, unless the client has it
+        PartySnapshot snapshot = p.getSnapshot();
+        if (snapshot.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.getEtag()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(snapshot.getJson());
     }
 
     // creates a new party
     @CrossOrigin
     @RequestMapping(value = "api/create")
-    public CreatePartyResponseModel create() {
+    public CreatePartyResponseModel create(HttpServletRequest request) {
+        // turn away clients creating parties too fast
+        AdmissionControl.admitClient(request.getRemoteAddr());
+
         // get an auth uri for a new party
         GroupifyService g = GroupifyService.getInstance();
         URI uri = g.createParty();
@@ -72,7 +105,12 @@ public class GroupifyController {
     // adds a user to a party
     @CrossOrigin
     @RequestMapping(value = "api/add")
-    public AddUserResponseModel add(@RequestParam(value = "party", defaultValue = "") String partyId) {
+    public AddUserResponseModel add(
+            @RequestParam(value = "party", defaultValue = "") String partyId,
+            HttpServletRequest request) {
+        // turn away clients adding users too fast
+        AdmissionControl.admitClient(request.getRemoteAddr());
+
         // get party
         Party p = getParty(partyId);
         if (p == null) {
@@ -94,12 +132,19 @@ public class GroupifyController {
             @RequestParam(value = "party", defaultValue = "") String partyId,
             @RequestParam(value = "addRecommendations", defaultValue = "") String doRecommendations,
             @RequestParam(value = "maxSize", defaultValue = "80") String maxSize,
-            @RequestParam(value = "strictness", defaultValue = "2") String strictness) {
+            @RequestParam(value = "strictness", defaultValue = "2") String strictness,
+            @RequestParam(value = "timeBudget", defaultValue = "20000") String timeBudget,
+            @RequestParam(value = "timings", defaultValue = "false") String timings,
+            HttpServletRequest request) {
+        // turn away clients making playlists too fast
+        AdmissionControl.admitClient(request.getRemoteAddr());
+
         // get party
         Party p = getParty(partyId);
         if (p == null) {
             throw new IllegalArgumentException("no party with id " + partyId + " found");
         }
+        AdmissionControl.admitParty(partyId);
 
         // create a configuration
         PlaylistConfiguration.Builder builder = new PlaylistConfiguration.Builder();
@@ -109,14 +154,21 @@ public class GroupifyController {
         builder.doRecommendations(doRecs);
         builder.playlistMaxSize(maxPlaylistSize);
         builder.strictness(strictness_);
+        builder.timeBudget(PlaylistConfiguration.clientTimeBudget(Long.parseLong(timeBudget)));
         PlaylistConfiguration config = builder.build();
 
-        // make the playlist
+        // make the playlist, if there's a free generation slot
         GroupifyService g = GroupifyService.getInstance();
-        String url = g.makePlaylist(p, config);
+        GenerationReport report;
+        AdmissionControl.Permit permit = AdmissionControl.startGeneration();
+        try {
+            report = g.makePlaylist(p, config);
+        } finally {
+            permit.close();
+        }
 
         // return JSON response
-        return new PlaylistCreatedResponseModel(url);
+        return new PlaylistCreatedResponseModel(report, Boolean.parseBoolean(timings));
     }
 
     // delists the party from the service
@@ -133,7 +185,77 @@ public class GroupifyController {
         // remove the party from the manager
         PartyManager pm = PartyManager.getInstance();
         pm.unregister(p);
-        return new PartyRemoveResponseModel("success");
+        return PartyRemoveResponseModel.SUCCESS;
+    }
+
+    // returns the state of the Spotify rate limiters, including how many calls are queued on each
+    @CrossOrigin
+    @RequestMapping(value = "api/limits")
+    public List<RateLimiterWebModel> limits() {
+        return RateLimiter.all().stream().map(RateLimiterWebModel::new).collect(Collectors.toList());
+    }
+
+    // returns the state of each Spotify endpoint's circuit breaker and bulkhead
+    @CrossOrigin
+    @RequestMapping(value = "api/circuits")
+    public List<CircuitBreakerWebModel> circuits() {
+        return CircuitBreaker.all().stream().map(CircuitBreakerWebModel::new).collect(Collectors.toList());
+    }
+
+    // returns the most recent playlist generations with the time each of their stages took, newest first
+    // anyone can read this, so it says nothing about which party a generation was for
+    @CrossOrigin
+    @RequestMapping(value = "api/generations")
+    public List<GenerationWebModel> generations() {
+        return GenerationHistory.recent().stream().map(GenerationWebModel::new).collect(Collectors.toList());
+    }
+
+    // returns the count, errors and latency of outbound Spotify calls per endpoint and caller
+    @CrossOrigin
+    @RequestMapping(value = "api/metrics")
+    public List<SpotifyMetricsWebModel> metrics() {
+        return SpotifyMetrics.all().stream().map(SpotifyMetricsWebModel::new).collect(Collectors.toList());
+    }
+
+    // returns the same as api/metrics and api/startup in the Prometheus text format, for scraping
+    @RequestMapping(value = "api/metrics/prometheus", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public String prometheus() {
+        return SpotifyMetrics.toPrometheus() + StartupMetrics.toPrometheus();
+    }
+
+    // returns how long this node took to be ready and to answer its first request
+    @CrossOrigin
+    @RequestMapping(value = "api/startup")
+    public StartupWebModel startup() {
+        return new StartupWebModel();
+    }
+
+    // returns the statistics of the track and artist catalog caches
+    @CrossOrigin
+    @RequestMapping(value = "api/cache")
+    public List<CatalogCacheWebModel> cache() {
+        return Arrays.asList(
+                new CatalogCacheWebModel(CatalogCache.TRACKS),
+                new CatalogCacheWebModel(CatalogCache.ARTISTS)
+        );
+    }
+
+    // returns the statistics of the node-wide track and artist loaders, empty if batching is off
+    @CrossOrigin
+    @RequestMapping(value = "api/loaders")
+    public List<CatalogLoaderWebModel> loaders() {
+        return Stream.of(GetTrackBuffer.getLoader(), GetArtistBuffer.getLoader())
+                .filter(Objects::nonNull)
+                .map(CatalogLoaderWebModel::new)
+                .collect(Collectors.toList());
+    }
+
+    // answers a request turned away by AdmissionControl with its status and a Retry-After
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<AdmissionRejectedResponseModel> rejected(AdmissionRejectedException e) {
+        return ResponseEntity.status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()))
+                .body(new AdmissionRejectedResponseModel(e));
     }
 
     // returns a party given a String id
@@ -5,19 +5,45 @@ import com.wrapper.spotify.exceptions.SpotifyWebApiException;
 import com.wrapper.spotify.model_objects.specification.Playlist;
 import com.wrapper.spotify.requests.authorization.authorization_code.AuthorizationCodeUriRequest;
 import org.springframework.boot.SpringApplication;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.web.filter.OncePerRequestFilter;
+import wenjalan.groupify.service.cluster.Cluster;
+import wenjalan.groupify.service.cluster.ForwardingFilter;
+import wenjalan.groupify.service.events.GroupifyEvents;
+import wenjalan.groupify.service.model.GenerationReport;
 import wenjalan.groupify.service.model.Party;
 import wenjalan.groupify.service.model.GroupifyUser;
+import wenjalan.groupify.service.spotify.SpotifyClients;
+import wenjalan.groupify.service.util.CallerContext;
+import wenjalan.groupify.service.util.CatalogBuffer;
+import wenjalan.groupify.service.util.CatalogCache;
+import wenjalan.groupify.service.util.CatalogLoader;
+import wenjalan.groupify.service.util.GetArtistBuffer;
+import wenjalan.groupify.service.util.GetTrackBuffer;
+import wenjalan.groupify.service.util.GroupifyExecutors;
 import wenjalan.groupify.service.util.PlaylistConfiguration;
 
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URI;
-import java.util.LinkedList;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static wenjalan.groupify.service.GroupifyConfiguration.GUEST_SCOPES;
 import static wenjalan.groupify.service.GroupifyConfiguration.HOST_SCOPES;
@@ -27,11 +53,14 @@ import static wenjalan.groupify.service.GroupifyConfiguration.HOST_SCOPES;
 // @PropertySource("ssl-application.yml")
 public class GroupifyService {
 
+    // the logger
+    private static final Logger LOG = LoggerFactory.getLogger(GroupifyService.class);
+
     // the GroupifyService instance
     public static GroupifyService instance = null;
 
-    // the list of Authentication Listeners
-    public static final List<AuthenticationListener> AUTHENTICATION_LISTENERS = new LinkedList<>();
+    // the list of Authentication Listeners, added to and removed from by concurrent requests
+    public static final List<AuthenticationListener> AUTHENTICATION_LISTENERS = new CopyOnWriteArrayList<>();
 
     // the actual Spring Application
     private static SpringApplication springApplication;
@@ -39,14 +68,14 @@ public class GroupifyService {
     // the Spring ApplicationContext
     private static ApplicationContext applicationContext;
 
-    // the configuration
-    private static GroupifyConfiguration configuration;
+    // the configuration, swapped whole when the properties file is reloaded
+    private static volatile GroupifyConfiguration configuration;
 
     // program entrypoint
     public static void main(String[] args) {
         // get the config file path from args
         if (args.length == 0) {
-            System.err.println("please specify a properties filepath");
+            LOG.error("please specify a properties filepath");
             return;
         }
 
@@ -55,31 +84,131 @@ public class GroupifyService {
 
         // start Groupify service
         GroupifyService.start(config, args);
+
+        // pick up edits to the properties file without a restart
+        ConfigurationWatcher.watch(args[0]);
     }
 
     // starts the Groupify Service
     public static void start(GroupifyConfiguration config, String[] pArgs) {
         // announce
-        System.out.println("Starting GroupifyService Prototype 5 (2/22/2020) ...");
+        LOG.info("Starting GroupifyService Prototype 5 (2/22/2020) ...");
         configuration = config;
 
-        // see if we're in verbose mode
+        // see if we're in verbose mode, which logs Groupify's debug messages
+        // set before Spring starts, which is when it reads logging levels
         if (config.VERBOSE) {
-            System.out.println("[V] Started in VERBOSE mode...");
+            System.setProperty("logging.level.wenjalan.groupify", "DEBUG");
+            LOG.info("Started in VERBOSE mode...");
         }
 
         // create singleton instance
         instance = new GroupifyService();
 
+        // move blocking work onto virtual threads if asked to and the JVM can
+        if (config.VIRTUAL_THREADS) {
+            if (GroupifyExecutors.useVirtualThreads()) {
+                LOG.info("Running requests and Spotify calls on virtual threads...");
+            }
+            else {
+                LOG.warn("virtual-threads needs Java 21 or newer, running on {} with platform threads instead", System.getProperty("java.version"));
+            }
+        }
+
         // set the user factory's config to our config
         // todo: see if we can do this a better way
         GroupifyUser.Factory.setConfiguration(configuration);
+        SpotifyClients.setConfiguration(configuration);
+
+        // batch track and artist lookups across every party on this node
+        if (configuration.CATALOG_BATCHING) {
+            GetTrackBuffer.setLoader(new CatalogLoader<>("tracks",
+                    (ids) -> SpotifyClients.catalog().getSeveralTracks(ids).build().execute(),
+                    configuration.CATALOG_BATCH_WINDOW));
+            GetArtistBuffer.setLoader(new CatalogLoader<>("artists",
+                    (ids) -> SpotifyClients.catalog().getSeveralArtists(ids).build().execute(),
+                    configuration.CATALOG_BATCH_WINDOW));
+        }
+        applyTuning(null, configuration);
+
+        // join the cluster, so parties are created on and forwarded to the nodes that own them
+        if (configuration.CLUSTER_NODES != null) {
+            Cluster.configure(configuration.CLUSTER_NODE, configuration.CLUSTER_NODES, configuration.CLUSTER_VIRTUAL_NODES);
+        }
+
+        // bring back the parties from before a restart, and journal the ones from now on
+        if (configuration.PARTY_JOURNAL != null) {
+            try {
+                PartyManager.getInstance().openJournal(Paths.get(configuration.PARTY_JOURNAL),
+                        configuration.JOURNAL_SYNC_INTERVAL, configuration.JOURNAL_SNAPSHOT_INTERVAL);
+            } catch (IOException e) {
+                LOG.error("can't open party journal, parties won't survive a restart path={}", configuration.PARTY_JOURNAL, e);
+            }
+        }
 
         // start Spring services
         springApplication = new SpringApplication(GroupifyService.class);
+        // lazy beans and trimmed auto-configuration, for nodes added under load
+        if (config.FAST_START) {
+            FastStart.apply(springApplication);
+            LOG.info("Started in FAST_START mode...");
+        }
         // enable SSL
         // springApplication.setAdditionalProfiles("ssl");
         applicationContext = springApplication.run(pArgs);
+        StartupMetrics.ready(config.FAST_START);
+
+        // a training run for an AppCDS archive warms up the request path and exits, the JVM dumps the archive on exit
+        if (FastStart.isTrainingRun()) {
+            FastStart.train(Integer.parseInt(applicationContext.getEnvironment().getProperty("local.server.port")));
+            System.exit(SpringApplication.exit(applicationContext));
+        }
+    }
+
+    // swaps in a reloaded configuration, applying what can change while the service runs
+    // settings that only take effect on a restart are logged and otherwise left as they were
+    public static synchronized void reconfigure(GroupifyConfiguration next) {
+        GroupifyConfiguration previous = configuration;
+        if (previous == null) {
+            throw new IllegalStateException("Groupify Service has not been initialized, use GroupifyService.start()");
+        }
+        // the tuning goes first, it can't fail on a configuration read() accepted, and if it somehow did nothing else would have changed
+        applyTuning(previous, next);
+        GroupifyUser.Factory.setConfiguration(next);
+        SpotifyClients.reconfigure(next);
+        if (previous.VERBOSE != next.VERBOSE) {
+            LoggingSystem.get(GroupifyService.class.getClassLoader()).setLogLevel("wenjalan.groupify", next.VERBOSE ? LogLevel.DEBUG : null);
+        }
+        configuration = next;
+        for (String setting : next.restartRequiredChanges(previous)) {
+            LOG.warn("{} changed but only takes effect on a restart", setting);
+        }
+        LOG.info("configuration reloaded");
+    }
+
+    // applies the tuning settings, which can change while the service runs
+    // every value is range checked by GroupifyConfiguration.read(), so none of the setters below throw
+    // previous: the configuration being replaced, or null at startup
+    private static void applyTuning(GroupifyConfiguration previous, GroupifyConfiguration next) {
+        CatalogBuffer.setParallelism(next.FLUSH_PARALLELISM);
+        // reconfiguring admission forgets every client's and party's bucket, so only do it when it changed
+        if (previous == null
+                || previous.ADMISSION_CLIENT_RATE != next.ADMISSION_CLIENT_RATE || previous.ADMISSION_CLIENT_BURST != next.ADMISSION_CLIENT_BURST
+                || previous.ADMISSION_PARTY_RATE != next.ADMISSION_PARTY_RATE || previous.ADMISSION_PARTY_BURST != next.ADMISSION_PARTY_BURST
+                || previous.MAX_CONCURRENT_GENERATIONS != next.MAX_CONCURRENT_GENERATIONS) {
+            AdmissionControl.configure(next.ADMISSION_CLIENT_RATE, next.ADMISSION_CLIENT_BURST,
+                    next.ADMISSION_PARTY_RATE, next.ADMISSION_PARTY_BURST,
+                    next.MAX_CONCURRENT_GENERATIONS);
+        }
+        PlaylistConfiguration.setMaxTimeBudget(next.MAX_TIME_BUDGET);
+        PartyManager.getInstance().configure(next.PARTY_MAX_AGE, next.REAPER_POLL);
+        CatalogCache.TRACKS.resize(next.TRACK_CACHE_SIZE, next.CATALOG_CACHE_TTL);
+        CatalogCache.ARTISTS.resize(next.ARTIST_CACHE_SIZE, next.CATALOG_CACHE_TTL);
+        for (CatalogLoader<?> loader : Arrays.asList(GetTrackBuffer.getLoader(), GetArtistBuffer.getLoader())) {
+            if (loader != null) {
+                loader.setWindow(next.CATALOG_BATCH_WINDOW);
+            }
+        }
     }
 
     // creates a new Party
@@ -88,16 +217,12 @@ public class GroupifyService {
     // returns: an authentication URI for the host user of this party
     public URI createParty() {
         // get a new Spotify API instance to create a request with
-        SpotifyApi spotify = new SpotifyApi.Builder()
-                .setClientId(configuration.CLIENT_ID)
-                .setClientSecret(configuration.CLIENT_SECRET)
-                .setRedirectUri(configuration.REDIRECT_URI)
-                .build();
+        SpotifyApi spotify = SpotifyClients.host().build();
 
         // start building a new Party
         final Party.Builder partyBuilder = new Party.Builder();
         final String partyId = partyBuilder.getId();
-        final String startState = partyId + ":" + UUID.randomUUID().toString(); // random uuid to check against
+        final String startState = Cluster.newState(partyId); // random uuid to check against
 
         // create a new authentication request for the host to sign in with
         AuthorizationCodeUriRequest request = spotify.authorizationCodeUri()
@@ -107,7 +232,7 @@ public class GroupifyService {
                 .build();
 
         // get the uri
-        final URI uri = request.execute();
+        final URI uri = SpotifyClients.browserUri(request.execute());
 
         // register a listener
         AuthenticationListener listener = new AuthenticationListener() {
@@ -119,21 +244,26 @@ public class GroupifyService {
                 }
 
                 // once authenticated, get the user and form a new party
+                GroupifyEvents.Span ingestion = GroupifyEvents.beginUserIngestion();
                 GroupifyUser host = GroupifyUser.Factory.createUser(code, true);
+                GroupifyEvents.userIngested(ingestion, partyId, true, host);
+                // if their profile couldn't be loaded, leave the listener attached so they can sign in again
+                if (host == null) {
+                    onAuthenticationFailure("could not load the host's Spotify profile");
+                    throw new IllegalStateException("error authenticating host user");
+                }
                 Party p = partyBuilder.build(host);
 
                 // detach this listener
                 AUTHENTICATION_LISTENERS.remove(this);
 
                 // log if in verbose mode
-                if (configuration.VERBOSE) {
-                    System.out.println("[V] Host " + host.getUserId() + " for party " + p.getId() + " authenticated successfully");
-                }
+                LOG.debug("host authenticated user={} party={}", host.getUserId(), p.getId());
             }
 
             @Override
             public void onAuthenticationFailure(String message) {
-                System.err.println("error creating party: " + message);
+                LOG.warn("host authentication failed party={} message={}", partyId, message);
             }
 
             @Override
@@ -141,13 +271,16 @@ public class GroupifyService {
                 return partyId;
             }
 
+            @Override
+            public String state() {
+                return startState;
+            }
+
         };
         AUTHENTICATION_LISTENERS.add(listener);
 
         // log if in verbose mode
-        if (configuration.VERBOSE) {
-            System.out.println("[V] Awaiting host authentication for party id " + partyId + "...");
-        }
+        LOG.debug("awaiting host authentication party={}", partyId);
 
         // return the uri
         return uri;
@@ -159,14 +292,10 @@ public class GroupifyService {
     // returns: an authentication URI for the guest to log in with
     public URI addUserToParty(final Party party) {
         // get a Guest Spotify API instance
-        SpotifyApi api = new SpotifyApi.Builder()
-                .setClientId(configuration.GUEST_ID)
-                .setClientSecret(configuration.GUEST_SECRET)
-                .setRedirectUri(configuration.REDIRECT_URI)
-                .build();
+        SpotifyApi api = SpotifyClients.guest().build();
 
         // create a state to identify this request with
-        final String startState = party.getId() + ":" + UUID.randomUUID().toString();
+        final String startState = Cluster.newState(party.getId());
 
         // ask for an authorization code from it
         AuthorizationCodeUriRequest request = api.authorizationCodeUri()
@@ -176,7 +305,7 @@ public class GroupifyService {
                 .build();
 
         // get the URI to return
-        final URI uri = request.execute();
+        final URI uri = SpotifyClients.browserUri(request.execute());
 
         // attach a new listener
         AuthenticationListener listener = new AuthenticationListener() {
@@ -188,34 +317,42 @@ public class GroupifyService {
                 }
 
                 // once authenticated, add the user to the party
+                GroupifyEvents.Span ingestion = GroupifyEvents.beginUserIngestion();
                 GroupifyUser user = GroupifyUser.Factory.createUser(code, false);
-                party.addUser(user);
+                GroupifyEvents.userIngested(ingestion, party.getId(), false, user);
+                // if their profile couldn't be loaded, leave the listener attached so they can sign in again
+                if (user == null) {
+                    onAuthenticationFailure("could not load the guest's Spotify profile");
+                    throw new IllegalStateException("error authenticating guest user");
+                }
+                PartyManager.getInstance().addUser(party, user);
 
                 // detach this listener
                 AUTHENTICATION_LISTENERS.remove(this);
 
                 // log if in verbose mode
-                if (configuration.VERBOSE) {
-                    System.out.println("[V] Guest " + user.getUserId() + " for party " + party.getId() + " authenticated successfully");
-                }
+                LOG.debug("guest authenticated user={} party={}", user.getUserId(), party.getId());
             }
 
             @Override
             public void onAuthenticationFailure(String message) {
-                System.err.println("error authenticating guest: " + message);
+                LOG.warn("guest authentication failed party={} message={}", party.getId(), message);
             }
 
             @Override
             public String partyId() {
                 return party.getId();
             }
+
+            @Override
+            public String state() {
+                return startState;
+            }
         };
         AUTHENTICATION_LISTENERS.add(listener);
 
         // log if in verbose mode
-        if (configuration.VERBOSE) {
-            System.out.println("[V] Awaiting guest authentication for party " + party.getId() + "...");
-        }
+        LOG.debug("awaiting guest authentication party={}", party.getId());
 
         // return the URI
         return uri;
@@ -231,12 +368,10 @@ public class GroupifyService {
             // if this is the user
             if (user.getUserId().equals(userId)) {
                 // remove them from the party
-                party.removeUser(user);
+                PartyManager.getInstance().removeUser(party, user);
 
                 // log if in verbose mode
-                if (configuration.VERBOSE) {
-                    System.out.println("[V] Removed user " + userId + " from party " + party.getId() + " successfully");
-                }
+                LOG.debug("user removed user={} party={}", userId, party.getId());
 
                 // return success
                 return true;
@@ -244,9 +379,7 @@ public class GroupifyService {
         }
 
         // log if in verbose mode
-        if (configuration.VERBOSE) {
-            System.out.println("[V] Removal of user " + userId + " from party " + party.getId() + " failed");
-        }
+        LOG.debug("user not found for removal user={} party={}", userId, party.getId());
 
         // return false, user not found
         return false;
@@ -259,13 +392,11 @@ public class GroupifyService {
         for (GroupifyUser user : party.getUsers()) {
             // if they're not the host, remove them
             if (!user.isHost()) {
-                party.removeUser(user);
+                PartyManager.getInstance().removeUser(party, user);
             }
         }
         // log if in verbose
-        if (configuration.VERBOSE) {
-            System.out.println("[V] Cleared " + party.getId() + " successfully");
-        }
+        LOG.debug("party cleared party={}", party.getId());
     }
 
     // removes all playlists named Groupify Playlist from the host's account
@@ -287,48 +418,53 @@ public class GroupifyService {
             if (p.getName().equals("Groupify Playlist")) {
                 // ... unfollow it
                 try {
-                    user.getApiInstance().unfollowPlaylist(p.getId()).build().execute();
+                    CallerContext.call(CallerContext.PURGE_PLAYLISTS, () -> user.getApiInstance().unfollowPlaylist(p.getId()).build().execute());
                 } catch (SpotifyWebApiException | IOException e) {
-                    System.err.println("error purging playlists from user " + user.getUserId() + "'s account: " + e.getMessage());
-                    e.printStackTrace();
+                    LOG.warn("error purging playlists user={}", user.getUserId(), e);
                     return false;
                 }
             }
         }
 
         // logging
-        if (configuration.VERBOSE) {
-            System.out.println("[V] Purged playlists of host user " + user.getUserId() + " successfully");
-        }
+        LOG.debug("playlists purged user={}", user.getUserId());
 
         return true;
     }
 
     // creates the playlist on the host user's account
     // post: a new Groupify Playlist on the host user's account
-    public String makePlaylist(Party party, PlaylistConfiguration config) {
+    // returns: a report with the playlist's url (null if it failed), any stages skipped to stay within budget and stage timings
+    public GenerationReport makePlaylist(Party party, PlaylistConfiguration config) {
         // get a Playlist Generator for this Party
         PlaylistGenerator generator = new PlaylistGenerator(party, false);
 
+        // a long party, or one restored from the journal, may have outlived the host's access token
+        party.getHost().refreshAccessTokenIfExpiring();
+
         // make the playlist
+        long startedAt = System.currentTimeMillis();
         Playlist playlist = generator.createPlaylist(config);
 
-        // return if it worked or not
+        // return if it worked or not, keeping the report for api/generations
         if (playlist == null) {
-            return null;
+            GenerationReport report = new GenerationReport(party.getId(), startedAt, null, generator.getSkippedStages(), generator.getTimings());
+            GenerationHistory.record(report);
+            return report;
         }
         else {
-            if (configuration.VERBOSE) {
-                System.out.println("[V] Playlist for party " + party.getId() + " created successfully");
-            }
             // return the "spotify" external url I guess
-            return playlist.getExternalUrls().getExternalUrls().get("spotify");
+            String url = playlist.getExternalUrls().getExternalUrls().get("spotify");
+            GenerationReport report = new GenerationReport(party.getId(), startedAt, url, generator.getSkippedStages(), generator.getTimings());
+            LOG.debug("playlist created party={} millis={} skipped={}", party.getId(), report.getTotalMillis(), report.getSkippedStages());
+            GenerationHistory.record(report);
+            return report;
         }
     }
 
     // stops the service
     public void stop() {
-        System.out.println("stopping Groupify Service...");
+        LOG.info("stopping Groupify Service...");
         SpringApplication.exit(applicationContext, () -> 0);
     }
 
@@ -355,4 +491,43 @@ public class GroupifyService {
         return getInstance();
     }
 
+    // writes WebModel responses from their cached bytes, ahead of Spring's own JSON converter
+    @Bean
+    public static WebModelMessageConverter webModelMessageConverter() {
+        return new WebModelMessageConverter();
+    }
+
+    // counts the first request answered, for StartupMetrics' time to first request
+    @Bean
+    public static OncePerRequestFilter firstRequestFilter() {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+                try {
+                    chain.doFilter(request, response);
+                } finally {
+                    StartupMetrics.requestServed();
+                }
+            }
+        };
+    }
+
+    // forwards requests for parties owned by another node of the cluster to it
+    @Bean
+    public static ForwardingFilter forwardingFilter() {
+        return new ForwardingFilter();
+    }
+
+    // hands Tomcat's request handling to the io pool when it runs on virtual threads,
+    // so a request blocked on Spotify doesn't hold one of Tomcat's platform threads
+    @Bean
+    public static WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadRequests() {
+        return (factory) -> factory.addConnectorCustomizers((connector) -> {
+            ProtocolHandler handler = connector.getProtocolHandler();
+            if (GroupifyExecutors.isVirtual() && handler instanceof AbstractProtocol) {
+                ((AbstractProtocol<?>) handler).setExecutor(GroupifyExecutors.io());
+            }
+        });
+    }
+
 }
@@ -0,0 +1,538 @@
+package wenjalan.groupify.service;
+
+import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.model_objects.specification.Artist;
+import com.wrapper.spotify.model_objects.specification.ArtistSimplified;
+import com.wrapper.spotify.model_objects.specification.Track;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wenjalan.groupify.service.model.GroupifyUser;
+import wenjalan.groupify.service.model.Party;
+import wenjalan.groupify.service.spotify.SpotifyClients;
+import wenjalan.groupify.service.util.GroupifyExecutors;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+// an append-only local journal of party events, so a restart brings every party back without anyone signing in again
+// each user is journaled with their tokens and the part of their taste playlist generation reads, nothing is fetched on replay
+// appends only copy into a buffer, which a background thread writes and fsyncs every sync interval, batching the fsyncs
+// every snapshot interval the live parties are written to a snapshot and the journal starts over, so it never grows for long
+// the snapshot and the journal both carry a generation, a journal older than its snapshot was compacted into it and is skipped
+// the files hold refresh tokens, so they're created readable by their owner only
+public class PartyJournal {
+
+    // the logger
+    private static final Logger LOG = LoggerFactory.getLogger(PartyJournal.class);
+
+    // the default time between fsyncs, and between snapshots, in millis
+    public static final long DEFAULT_SYNC_INTERVAL = 50;
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 10 * 60 * 1000;
+
+    // the first bytes of a snapshot or journal
+    private static final int MAGIC = 0x47504a31;
+
+    // the record types
+    private static final byte CREATED = 1;
+    private static final byte JOINED = 2;
+    private static final byte LEFT = 3;
+    private static final byte CLOSED = 4;
+
+    // the journal file
+    private final Path file;
+
+    // the snapshot file, next to the journal
+    private final Path snapshotFile;
+
+    // the journal, written only by the journal thread
+    private final FileChannel channel;
+
+    // the parties to snapshot
+    private final Supplier<Collection<Party>> liveParties;
+
+    // the thread that fsyncs and snapshots
+    private final ScheduledExecutorService thread = Executors.newSingleThreadScheduledExecutor(GroupifyExecutors.daemonThreads("groupify-journal"));
+
+    // the records appended since the last sync, guarded by this
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    // the generation of the current journal, written only by the journal thread
+    private long generation;
+
+    // a party as read back from the files
+    private static class RestoredParty {
+
+        // when the party was created
+        final long createdAt;
+
+        // the host, then the guests in the order they joined
+        final List<GroupifyUser> users = new ArrayList<>();
+
+        // constructor
+        RestoredParty(long createdAt, GroupifyUser host) {
+            this.createdAt = createdAt;
+            this.users.add(host);
+        }
+
+        // returns whether a user with an id is in this party
+        boolean contains(String userId) {
+            return users.stream().anyMatch((u) -> u.getUserId().equals(userId));
+        }
+
+    }
+
+    // constructor
+    private PartyJournal(Path file, FileChannel channel, long generation, Supplier<Collection<Party>> liveParties) {
+        this.file = file;
+        this.snapshotFile = snapshotOf(file);
+        this.channel = channel;
+        this.generation = generation;
+        this.liveParties = liveParties;
+    }
+
+    // reads back the parties in a journal and its snapshot, recreating their users without calling Spotify
+    // a torn or corrupt record, as a crash mid-write leaves, ends its file, everything before it is kept
+    // SpotifyClients must be configured first, restored users get clients from it
+    public static List<Party> replay(Path file) throws IOException {
+        Map<String, RestoredParty> parties = new LinkedHashMap<>();
+        long snapshotGeneration = readFile(snapshotOf(file), -1, parties);
+        readFile(file, snapshotGeneration, parties);
+
+        List<Party> restored = new ArrayList<>();
+        for (Map.Entry<String, RestoredParty> entry : parties.entrySet()) {
+            RestoredParty rp = entry.getValue();
+            Party party = Party.restore(entry.getKey(), rp.createdAt, rp.users.get(0));
+            for (GroupifyUser guest : rp.users.subList(1, rp.users.size())) {
+                party.addUser(guest);
+            }
+            restored.add(party);
+        }
+        return restored;
+    }
+
+    // starts journaling to a file, snapshotting the live parties first so it starts out empty
+    // liveParties: returns the parties to snapshot, called from the journal thread
+    public static PartyJournal open(Path file, long syncInterval, long snapshotInterval, Supplier<Collection<Party>> liveParties) throws IOException {
+        long generation = Math.max(readGeneration(file), readGeneration(snapshotOf(file))) + 1;
+        createPrivate(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        PartyJournal journal = new PartyJournal(file, channel, generation - 1, liveParties);
+        journal.snapshot();
+
+        journal.thread.scheduleWithFixedDelay(journal::syncQuietly, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        journal.thread.scheduleWithFixedDelay(journal::snapshotQuietly, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(journal::close));
+        return journal;
+    }
+
+    // journals a new party and its host
+    public void partyCreated(Party party) {
+        append(CREATED, party, party.getHost());
+    }
+
+    // journals a user joining a party
+    public void userJoined(Party party, GroupifyUser user) {
+        append(JOINED, party, user);
+    }
+
+    // journals a user leaving a party
+    public void userLeft(Party party, GroupifyUser user) {
+        append(LEFT, party, user);
+    }
+
+    // journals a party ending
+    public void partyClosed(Party party) {
+        append(CLOSED, party, null);
+    }
+
+    // writes what's pending and stops journaling
+    public void close() {
+        thread.shutdown();
+        try {
+            thread.awaitTermination(5, TimeUnit.SECONDS);
+            sync();
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("error closing party journal file={}", file, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // adds a record to the pending buffer
+    private void append(byte type, Party party, GroupifyUser user) {
+        byte[] record;
+        try {
+            record = frame(encode(type, party.getId(), party.getCreationTimestamp(), user));
+        } catch (IOException e) {
+            throw new IllegalStateException("can't encode journal record", e);
+        }
+        synchronized (this) {
+            pending.write(record, 0, record.length);
+        }
+    }
+
+    // writes the pending records to the journal and fsyncs it
+    private void sync() throws IOException {
+        ByteArrayOutputStream toWrite;
+        synchronized (this) {
+            if (pending.size() == 0) {
+                return;
+            }
+            toWrite = pending;
+            pending = new ByteArrayOutputStream();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(toWrite.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, channel.size());
+        }
+        channel.force(false);
+    }
+
+    // writes the live parties to a new snapshot, then starts the journal over
+    // a record appended while the parties are read may be in both, replay skips what it already has
+    private void snapshot() throws IOException {
+        long start = System.currentTimeMillis();
+        long next = generation + 1;
+
+        // the pending records are all in the parties about to be read, since a change is journaled after it's made
+        Collection<Party> parties;
+        synchronized (this) {
+            pending = new ByteArrayOutputStream();
+            parties = liveParties.get();
+        }
+
+        // write the snapshot next to the old one, and swap it in once it's on disk
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        createPrivate(temp);
+        int users = 0;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(out)));
+            writeHeader(data, next);
+            for (Party party : parties) {
+                List<GroupifyUser> partyUsers = party.getUsers();
+                if (partyUsers.isEmpty()) {
+                    continue;
+                }
+                data.write(frame(encode(CREATED, party.getId(), party.getCreationTimestamp(), party.getHost())));
+                for (GroupifyUser user : partyUsers) {
+                    if (user != party.getHost()) {
+                        data.write(frame(encode(JOINED, party.getId(), party.getCreationTimestamp(), user)));
+                    }
+                }
+                users += partyUsers.size();
+            }
+            data.flush();
+            out.force(false);
+        }
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // start the journal over, a crash before this leaves an older journal that replay skips
+        channel.truncate(0);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeHeader(new DataOutputStream(header), next);
+        channel.write(ByteBuffer.wrap(header.toByteArray()), 0);
+        channel.force(false);
+        generation = next;
+        LOG.info("party journal snapshot parties={} users={} generation={} millis={}", parties.size(), users, next, System.currentTimeMillis() - start);
+    }
+
+    // sync(), logging rather than throwing, for the journal thread
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException | RuntimeException e) {
+            LOG.error("error writing party journal file={}", file, e);
+        }
+    }
+
+    // snapshot(), logging rather than throwing, for the journal thread
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            LOG.error("error snapshotting party journal file={}", file, e);
+        }
+    }
+
+    // applies the records of a snapshot or journal to the parties read so far
+    // minGeneration: the generation below which the file has been compacted into the snapshot and is skipped
+    // returns the file's generation, -1 if there's no file
+    private static long readFile(Path path, long minGeneration, Map<String, RestoredParty> parties) throws IOException {
+        if (!Files.exists(path)) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            long generation = readHeader(in);
+            if (generation < minGeneration) {
+                LOG.info("skipping compacted party journal file={} generation={}", path, generation);
+                return generation;
+            }
+            int records = 0;
+            for (byte[] record; (record = readRecord(in, path)) != null; records++) {
+                apply(new DataInputStream(new ByteArrayInputStream(record)), parties);
+            }
+            LOG.info("party journal read file={} generation={} records={}", path, generation, records);
+            return generation;
+        } catch (EOFException e) {
+            // no complete header, nothing was ever journaled
+            return -1;
+        }
+    }
+
+    // applies one record, skipping ones already applied
+    private static void apply(DataInputStream in, Map<String, RestoredParty> parties) throws IOException {
+        byte type = in.readByte();
+        String partyId = in.readUTF();
+        long createdAt = in.readLong();
+        RestoredParty party = parties.get(partyId);
+        // a party id is reused once its party ends, only records of the same party apply to it
+        boolean same = party != null && party.createdAt == createdAt;
+        switch (type) {
+            case CREATED:
+                GroupifyUser host = readUser(in);
+                if (!same) {
+                    parties.put(partyId, new RestoredParty(createdAt, host));
+                }
+                break;
+            case JOINED:
+                GroupifyUser user = readUser(in);
+                if (same && !party.contains(user.getUserId())) {
+                    party.users.add(user);
+                }
+                break;
+            case LEFT:
+                String userId = in.readUTF();
+                if (same) {
+                    party.users.removeIf((u) -> !u.isHost() && u.getUserId().equals(userId));
+                }
+                break;
+            case CLOSED:
+                if (same) {
+                    parties.remove(partyId);
+                }
+                break;
+            default:
+                throw new IOException("unknown journal record type " + type);
+        }
+    }
+
+    // encodes a record: its type, its party, then the user it's about
+    private static byte[] encode(byte type, String partyId, long createdAt, GroupifyUser user) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        out.writeUTF(partyId);
+        out.writeLong(createdAt);
+        if (type == CREATED || type == JOINED) {
+            writeUser(out, user);
+        }
+        else if (type == LEFT) {
+            out.writeUTF(user.getUserId());
+        }
+        return bytes.toByteArray();
+    }
+
+    // writes a user's tokens and the part of their taste playlist generation reads
+    private static void writeUser(DataOutputStream out, GroupifyUser user) throws IOException {
+        SpotifyApi api = user.getApiInstance();
+        out.writeUTF(user.getUserId());
+        writeNullable(out, user.getDisplayName());
+        out.writeBoolean(user.isHost());
+        writeNullable(out, api.getAccessToken());
+        writeNullable(out, api.getRefreshToken());
+        out.writeLong(user.getAccessTokenExpiry());
+
+        Track[] topTracks = user.getTopTracks();
+        out.writeInt(topTracks.length);
+        for (Track t : topTracks) {
+            out.writeUTF(t.getId());
+            writeNullable(out, t.getName());
+            writeNullable(out, t.getUri());
+            ArtistSimplified[] artists = t.getArtists() == null ? new ArtistSimplified[0] : t.getArtists();
+            out.writeInt(artists.length);
+            for (ArtistSimplified a : artists) {
+                writeNullable(out, a.getId());
+                writeNullable(out, a.getName());
+            }
+        }
+
+        Artist[] topArtists = user.getTopArtists();
+        out.writeInt(topArtists.length);
+        for (Artist a : topArtists) {
+            out.writeUTF(a.getId());
+            writeNullable(out, a.getName());
+            String[] genres = a.getGenres() == null ? new String[0] : a.getGenres();
+            out.writeInt(genres.length);
+            for (String genre : genres) {
+                out.writeUTF(genre);
+            }
+        }
+    }
+
+    // reads a user written by writeUser(), with a client of their kind holding their tokens
+    private static GroupifyUser readUser(DataInputStream in) throws IOException {
+        String userId = in.readUTF();
+        String displayName = readNullable(in);
+        boolean isHost = in.readBoolean();
+        String accessToken = readNullable(in);
+        String refreshToken = readNullable(in);
+        long accessTokenExpiry = in.readLong();
+
+        int trackCount = in.readInt();
+        List<Track> topTracks = new ArrayList<>(trackCount);
+        for (int i = 0; i < trackCount; i++) {
+            Track.Builder track = new Track.Builder().setId(in.readUTF()).setName(readNullable(in)).setUri(readNullable(in));
+            ArtistSimplified[] artists = new ArtistSimplified[in.readInt()];
+            for (int j = 0; j < artists.length; j++) {
+                artists[j] = new ArtistSimplified.Builder().setId(readNullable(in)).setName(readNullable(in)).build();
+            }
+            topTracks.add(track.setArtists(artists).build());
+        }
+
+        int artistCount = in.readInt();
+        List<Artist> topArtists = new ArrayList<>(artistCount);
+        for (int i = 0; i < artistCount; i++) {
+            Artist.Builder artist = new Artist.Builder().setId(in.readUTF()).setName(readNullable(in));
+            String[] genres = new String[in.readInt()];
+            for (int j = 0; j < genres.length; j++) {
+                genres[j] = in.readUTF();
+            }
+            topArtists.add(artist.setGenres(genres).build());
+        }
+
+        SpotifyApi api = (isHost ? SpotifyClients.host() : SpotifyClients.guest()).build();
+        api.setAccessToken(accessToken);
+        api.setRefreshToken(refreshToken);
+        return GroupifyUser.Factory.restoreUser(api, isHost, displayName, userId, topTracks, topArtists, accessTokenExpiry);
+    }
+
+    // frames a record as its length, its CRC32, then the record
+    private static byte[] frame(byte[] record) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(record.length + 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(record.length);
+        out.writeInt((int) crc.getValue());
+        out.write(record);
+        return bytes.toByteArray();
+    }
+
+    // reads the next framed record, or null at the end of the file or at a torn or corrupt record
+    private static byte[] readRecord(DataInputStream in, Path path) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        try {
+            int expected = in.readInt();
+            if (length < 0 || length > 16 * 1024 * 1024) {
+                LOG.warn("corrupt party journal record, ignoring the rest file={}", path);
+                return null;
+            }
+            byte[] record = new byte[length];
+            in.readFully(record);
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, length);
+            if ((int) crc.getValue() != expected) {
+                LOG.warn("corrupt party journal record, ignoring the rest file={}", path);
+                return null;
+            }
+            return record;
+        } catch (EOFException e) {
+            LOG.warn("torn party journal record, ignoring it file={}", path);
+            return null;
+        }
+    }
+
+    // writes the magic number and generation a file starts with
+    private static void writeHeader(DataOutputStream out, long generation) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeLong(generation);
+        out.flush();
+    }
+
+    // reads the header of a file, returning its generation
+    private static long readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a party journal");
+        }
+        return in.readLong();
+    }
+
+    // returns the generation of a file, -1 if it has none
+    private static long readGeneration(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            return readHeader(in);
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    // returns the snapshot file of a journal
+    private static Path snapshotOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".snapshot");
+    }
+
+    // creates a file readable and writable by its owner only, if it doesn't exist
+    private static void createPrivate(Path path) throws IOException {
+        if (Files.exists(path)) {
+            return;
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        else {
+            Files.createFile(path);
+        }
+    }
+
+    // writes a string that may be null
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    // reads a string written by writeNullable()
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+}
@@ -1,29 +1,51 @@
 package wenjalan.groupify.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wenjalan.groupify.service.events.GroupifyEvents;
+import wenjalan.groupify.service.model.GroupifyUser;
 import wenjalan.groupify.service.model.Party;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 // the PartyManager
 // singleton
 public class PartyManager {
 
-    // the amount of time a Party is valid for: 8 hours
+    // the logger
+    private static final Logger LOG = LoggerFactory.getLogger(PartyManager.class);
+
+    // the default amount of time a Party is valid for: 8 hours
     public static final int PARTY_MAX_AGE = 8 * 60 *  60 * 1000;
 
-    // the amount of time the Reaper will go looking for parties: 5 minute intervals
+    // the default amount of time the Reaper will go looking for parties: 5 minute intervals
     public static final int REAPER_POLL = 5 * 60 * 1000;
 
     // the instance of PartyManager
     private static PartyManager instance = null;
 
     // the Map of party ids to their party instances
-    private Map<String, Party> parties = new HashMap<>();
+    private Map<String, Party> parties = new ConcurrentHashMap<>();
+
+    // the journal every party change is written to, null if parties aren't journaled
+    private volatile PartyJournal journal = null;
 
-    // party reaper unregisters parties older than PARTY_MAX_AGE
+    // party reaper unregisters parties older than maxAge
     private Thread reaper;
 
+    // the amount of time a Party is valid for, in millis
+    private volatile long maxAge = PARTY_MAX_AGE;
+
+    // the amount of time between the Reaper's looks, in millis
+    private volatile long reaperPoll = REAPER_POLL;
+
+    // the Reaper waits on this between looks, notified when its settings change
+    private final Object reaperLock = new Object();
+
     // private constructor
     private PartyManager() {
         // catch instantiations
@@ -37,24 +59,25 @@ public class PartyManager {
             public void run() {
                 try {
                     // log
-                    System.out.println("> Starting Reaper thread...");
+                    LOG.info("reaper started pollMillis={} maxAgeMillis={}", reaperPoll, maxAge);
                     // forever
                     for (;;) {
-                        // sleep for an interval
-                        Thread.sleep(REAPER_POLL);
+                        // wait for an interval, or until the settings change
+                        synchronized (reaperLock) {
+                            reaperLock.wait(reaperPoll);
+                        }
                         // check that all the parties are still young enough to live
                         long now = System.currentTimeMillis();
-                        for (Party p : parties.values()) {
+                        for (Party p : new ArrayList<>(parties.values())) {
                             // if the party is greater than the max age, deregister it
-                            if (now - p.getCreationTimestamp() > PARTY_MAX_AGE) {
-                                unregister(p);
+                            if (now - p.getCreationTimestamp() > maxAge) {
+                                unregister(p, GroupifyEvents.EXPIRED);
                             }
                         }
                     }
                 } catch (InterruptedException e) {
                     // log error
-                    System.err.println("> WARNING: Reaper thread interrupted, attempting to restart...");
-                    e.printStackTrace();
+                    LOG.warn("reaper interrupted, restarting", e);
                     // restart
                     this.run();
                 }
@@ -63,19 +86,90 @@ public class PartyManager {
         reaper.start();
     }
 
+    // changes how long parties live and how often the Reaper looks for expired ones
+    // the Reaper looks right away, so a shorter max age takes effect without waiting out the old interval
+    public void configure(long maxAge, long reaperPoll) {
+        if (maxAge <= 0 || reaperPoll <= 0) {
+            throw new IllegalArgumentException("party max age and reaper poll must be positive");
+        }
+        if (maxAge == this.maxAge && reaperPoll == this.reaperPoll) {
+            return;
+        }
+        this.maxAge = maxAge;
+        this.reaperPoll = reaperPoll;
+        LOG.info("reaper reconfigured pollMillis={} maxAgeMillis={}", reaperPoll, maxAge);
+        synchronized (reaperLock) {
+            reaperLock.notifyAll();
+        }
+    }
+
+    // restores the parties a previous run journaled, then journals this run's parties to the same file
+    // parties that expired while the service was down aren't restored
+    public void openJournal(Path file, long syncInterval, long snapshotInterval) throws IOException {
+        long start = System.currentTimeMillis();
+        int restored = 0;
+        int users = 0;
+        for (Party p : PartyJournal.replay(file)) {
+            if (start - p.getCreationTimestamp() > maxAge) {
+                Party.unregisterId(p.getId());
+                continue;
+            }
+            this.parties.put(p.getId(), p);
+            restored++;
+            users += p.getUsers().size();
+        }
+        this.journal = PartyJournal.open(file, syncInterval, snapshotInterval, () -> new ArrayList<>(parties.values()));
+        LOG.info("parties restored from journal parties={} users={} millis={}", restored, users, System.currentTimeMillis() - start);
+    }
+
     // registers a new Party to this PartyManager
     public void register(Party groupifyParty) {
         this.parties.put(groupifyParty.getId(), groupifyParty);
-        System.out.println("> registered new party with id " + groupifyParty.getId());
+        if (journal != null) {
+            journal.partyCreated(groupifyParty);
+        }
+        GroupifyEvents.partyCreated(groupifyParty.getId(), groupifyParty.getHost() == null ? null : groupifyParty.getHost().getUserId());
+        LOG.info("party registered party={}", groupifyParty.getId());
+    }
+
+    // adds a user to a party
+    public void addUser(Party p, GroupifyUser user) {
+        p.addUser(user);
+        if (journal != null) {
+            journal.userJoined(p, user);
+        }
+    }
+
+    // removes a user from a party
+    // returns whether they were in it
+    public boolean removeUser(Party p, GroupifyUser user) {
+        boolean removed = p.removeUser(user);
+        if (removed && journal != null) {
+            journal.userLeft(p, user);
+        }
+        return removed;
     }
 
     // unregisters a Party from this PartyManager
     // also calls the close() method on the party
     public void unregister(Party p) {
+        unregister(p, GroupifyEvents.REMOVED);
+    }
+
+    // unregisters a Party, recording why
+    // only the first of racing unregisters goes on, so the party is closed, journaled and reported once
+    private void unregister(Party p, String reason) {
         String id = p.getId();
-        this.parties.remove(p.getId());
+        if (!this.parties.remove(id, p)) {
+            return;
+        }
+        int users = p.getUsers().size();
         p.close();
-        System.out.println("> unregistered party with id " + id);
+        if (journal != null) {
+            journal.partyClosed(p);
+        }
+        GroupifyEvents.partyEnded(id, users, System.currentTimeMillis() - p.getCreationTimestamp(), reason);
+        LOG.info("party unregistered party={} reason={}", id, reason);
     }
 
     // returns a Party given a party id
@@ -5,26 +5,47 @@ import com.wrapper.spotify.SpotifyApi;
 import com.wrapper.spotify.exceptions.SpotifyWebApiException;
 import com.wrapper.spotify.model_objects.specification.*;
 import com.wrapper.spotify.requests.data.browse.GetRecommendationsRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wenjalan.groupify.service.events.GroupifyEvents;
 import wenjalan.groupify.service.model.Party;
 import wenjalan.groupify.service.model.GroupifyUser;
+import wenjalan.groupify.service.model.StageTimings;
+import wenjalan.groupify.service.spotify.CircuitBreaker;
+import wenjalan.groupify.service.spotify.EndpointUnavailableException;
+import wenjalan.groupify.service.spotify.SpotifyEndpoint;
+import wenjalan.groupify.service.util.CallerContext;
+import wenjalan.groupify.service.util.GetArtistBuffer;
 import wenjalan.groupify.service.util.GetTrackBuffer;
 import wenjalan.groupify.service.util.PlaylistConfiguration;
+import wenjalan.groupify.service.util.TimeBudget;
+import wenjalan.groupify.service.util.UnfinishedWriteException;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 public class PlaylistGenerator {
 
+    // the logger
+    private static final Logger LOG = LoggerFactory.getLogger(PlaylistGenerator.class);
+
     // whether or not we're in debug mode
     public final boolean DEBUG_MODE;
 
-    // the prefix we use for debug logs
-    public final String DEBUG_PREFIX = "D >> ";
+    // the time kept in hand for creating the playlist and adding its tracks, in millis
+    public static final long WRITE_RESERVE = 3000;
 
     // the Spotify API
     private SpotifyApi spotify;
 
+    // the time budget of the last generation
+    private TimeBudget budget = new TimeBudget(0);
+
+    // the stage timings of the last generation
+    private StageTimings timings = new StageTimings();
+
 //    // the threshold for track property sharing
 //    public static final int THRESHOLD = 2;
 //
@@ -37,12 +58,16 @@ public class PlaylistGenerator {
     // the Set of Users to generate a playlist for
     private List<GroupifyUser> users;
 
+    // the id of the party the playlist is for
+    private final String partyId;
+
     // debug constructor
     // spotify: the (authenticated) API to create the playlist with
     // users: the users the playlist is to be based on
     public PlaylistGenerator(Party party, boolean debugMode) {
         this.spotify = party.getHost().getApiInstance();
         this.users = party.getUsers();
+        this.partyId = party.getId();
         this.DEBUG_MODE = debugMode;
     }
 
@@ -56,85 +81,104 @@ public class PlaylistGenerator {
     // 5. a track is in a playlist of THRESHOLD or more users
     // TODO: future improvements
     // - let host user decide what genres the playlist should have
+    // optional stages are skipped once the config's time budget runs low, see getSkippedStages()
+    // how long each stage took is kept, see getTimings()
     public Playlist createPlaylist(PlaylistConfiguration config) {
         // announce
         // System.out.println("> generating playlist...");
+        this.budget = new TimeBudget(config.timeBudget);
+        this.timings = new StageTimings(partyId);
+        return CallerContext.get(CallerContext.PLAYLIST_GENERATOR, () -> generate(config));
+    }
+
+    // runs the stages of createPlaylist(), returning null if the playlist couldn't be made
+    private Playlist generate(PlaylistConfiguration config) {
         try {
             // get the host's id
-            String hostId = spotify.getCurrentUsersProfile().build().execute().getId();
+            StageTimings.Running stage = timings.begin("host lookup");
+            String hostId = budget.call(() -> spotify.getCurrentUsersProfile().build().execute().getId());
+            stage.done(1);
 
             // the set of songs (there should be no duplicate songs)
             Set<Track> songs = new HashSet<>();
 
             // 1. find top songs shared by config.strictness users
+            stage = timings.begin("shared top songs");
             List<Track> sharedTopSongs = getSharedTopSongs(users, config.strictness);
             songs.addAll(sharedTopSongs);
+            stage.done(sharedTopSongs.size());
 
             // 2. find top songs whose artist is a top artist of config.strictness users
+            stage = timings.begin("shared top artists");
             List<Track> sharedArtistSongs = getSharedTopArtistsSongs(users, config.strictness);
             songs.addAll(sharedArtistSongs);
+            stage.done(sharedArtistSongs.size());
 
             // 3. find top songs whose artist has genres shared by config.strictness users
+            stage = timings.begin("shared top genres");
             List<Track> sharedGenreSongs = getSharedTopGenresSongs(users, config.strictness);
             songs.addAll(sharedGenreSongs);
+            stage.done(sharedGenreSongs.size());
 
             // 4. fill in the rest of the playlist up to the min if the config wants to
             if (config.doRecommendations) {
                 int num = config.playlistSize - songs.size();
                 List<Track> recommendations = null;
-                if (num > 0) {
+                if (num > 0 && !budget.allows(WRITE_RESERVE)) {
+                    budget.skip("recommendations");
+                    timings.skipped("recommendations");
+                }
+                else if (num > 0 && CircuitBreaker.isOpen(SpotifyEndpoint.RECOMMENDATIONS)) {
+                    budget.skip("recommendations (circuit open)");
+                    timings.skipped("recommendations");
+                }
+                else if (num > 0) {
                     recommendations = getRecommendations(songs, num);
                     songs.addAll(recommendations);
-                    System.out.println(DEBUG_PREFIX + recommendations.size() + " song recommendations added:");
-                    recommendations.stream().map(Track::getName).forEach(x -> System.out.println(DEBUG_PREFIX + "\t" + x));
+                    LOG.debug("recommendations added count={}", recommendations.size());
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace("recommendations added tracks={}", names(recommendations));
+                    }
                 }
             }
 
             // debug logging
-            if (DEBUG_MODE) {
+            if (DEBUG_MODE && LOG.isDebugEnabled()) {
                 // threshold
-                System.out.println(DEBUG_PREFIX + "current user shared trait threshold: " + config.strictness);
-                System.out.println();
-
-                // top songs
-                System.out.println(DEBUG_PREFIX + sharedTopSongs.size() + " shared top songs:");
-                sharedTopSongs.stream().map(Track::getName).forEach(x -> System.out.println(DEBUG_PREFIX + "\t" + x));
-                System.out.println();
-
-                // top artists
-                System.out.println(DEBUG_PREFIX + sharedArtistSongs.size() + " shared top artists songs:");
-                sharedArtistSongs.stream().map(Track::getName).forEach(x -> System.out.println(DEBUG_PREFIX + "\t" + x));
-                System.out.println();
-
-                // top genres
-                System.out.println(DEBUG_PREFIX + sharedGenreSongs.size() + " shared top genre songs:");
-                sharedGenreSongs.stream().map(Track::getName).forEach(x -> System.out.println(DEBUG_PREFIX + "\t" + x));
-                System.out.println();
+                LOG.debug("shared trait threshold strictness={}", config.strictness);
+
+                // top songs, top artists and top genres
+                LOG.debug("shared top songs count={} tracks={}", sharedTopSongs.size(), names(sharedTopSongs));
+                LOG.debug("shared top artists songs count={} tracks={}", sharedArtistSongs.size(), names(sharedArtistSongs));
+                LOG.debug("shared top genre songs count={} tracks={}", sharedGenreSongs.size(), names(sharedGenreSongs));
             }
 
             // get the uris
+            stage = timings.begin("track resolution");
             List<String> uris = getUris(songs);
 
             // if we have too many, cut it down
             if (uris.size() > config.playlistSize) {
                 uris = uris.subList(0, config.playlistSize);
             }
+            stage.done(uris.size());
 
             // debug logging
-            if (DEBUG_MODE) {
-                System.out.println(DEBUG_PREFIX + uris.size() + " final track uris:");
-                for (String uri : uris) {
-                    System.out.println(DEBUG_PREFIX + "\t" + uri);
-                }
+            if (DEBUG_MODE && LOG.isDebugEnabled()) {
+                LOG.debug("final track uris count={} uris={}", uris.size(), uris);
             }
 
-            // create the playlist
-            Playlist playlist = this.spotify.createPlaylist(hostId, "Groupify Playlist")
+            // create the playlist, if there's time left to start it
+            // if it's still running when the budget runs out, it may yet appear on the host's account, empty
+            final String description = generatePlaylistDescription();
+            stage = timings.begin("playlist create");
+            Playlist playlist = budget.write(() -> this.spotify.createPlaylist(hostId, "Groupify Playlist")
                     .collaborative(false)
-                    .description(generatePlaylistDescription())
+                    .description(description)
                     .build()
-                    .execute();
+                    .execute());
             String playlistId = playlist.getId();
+            stage.done(1);
 
             // add the songs in batches of 100 or less
             for (int i = 0; i < uris.size(); i += 100) {
@@ -143,18 +187,59 @@ public class PlaylistGenerator {
                 for (String uri : smallList) {
                     jsonArray.add(uri);
                 }
-                this.spotify.addTracksToPlaylist(playlistId, jsonArray).build().execute();
+                // if we've run out of time, keep the playlist with what made it in so far
+                // a batch still running at the deadline is let finish but no longer waited on, and reported as unfinished
+                String batch = "add tracks " + i + "-" + (i + smallList.size() - 1);
+                stage = timings.begin(batch);
+                GroupifyEvents.Span write = GroupifyEvents.beginPlaylistWrite();
+                String outcome = StageTimings.FAILED;
+                try {
+                    budget.write(() -> this.spotify.addTracksToPlaylist(playlistId, jsonArray).build().execute());
+                    stage.done(smallList.size());
+                    outcome = StageTimings.OK;
+                } catch (UnfinishedWriteException e) {
+                    budget.skip(batch + " (unfinished)");
+                    stage.done(smallList.size(), StageTimings.UNFINISHED);
+                    outcome = StageTimings.UNFINISHED;
+                } catch (TimeoutException e) {
+                    budget.skip(batch);
+                    stage.done(smallList.size(), StageTimings.TIMED_OUT);
+                    outcome = StageTimings.TIMED_OUT;
+                } finally {
+                    GroupifyEvents.playlistWritten(write, partyId, playlistId, i, smallList.size(), outcome);
+                }
             }
 
             // return the playlist
             return playlist;
+        } catch (UnfinishedWriteException e) {
+            LOG.warn("ran out of time creating the Groupify playlist, it may still appear budgetMillis={}", config.timeBudget);
+            timings.finishOpen(StageTimings.UNFINISHED);
+            return null;
+        } catch (TimeoutException e) {
+            LOG.warn("ran out of time generating the Groupify playlist budgetMillis={}", config.timeBudget);
+            timings.finishOpen(StageTimings.TIMED_OUT);
+            return null;
         } catch (SpotifyWebApiException | IOException e) {
-            System.err.println("!!! error generating the Groupify playlist: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("error generating the Groupify playlist", e);
+            timings.finishOpen(StageTimings.FAILED);
             return null;
+        } finally {
+            // anything still open here threw something unexpected
+            timings.finishOpen(StageTimings.FAILED);
         }
     }
 
+    // returns the stages the last generation skipped to stay within its time budget
+    public List<String> getSkippedStages() {
+        return budget.getSkippedStages();
+    }
+
+    // returns how long each stage of the last generation took
+    public StageTimings getTimings() {
+        return this.timings;
+    }
+
     // generates the playlist's description
     private String generatePlaylistDescription() {
         Iterator<GroupifyUser> iter = users.iterator();
@@ -173,10 +258,12 @@ public class PlaylistGenerator {
         return desc;
     }
 
+    // the selection rules below are package-private so the benchmarks in src/jmh can measure them one at a time
+
     // 1.
     // returns the shared top songs of a Set of GroupifyUsers
     // threshold: the number of users that must have a song in their top tracks for it to be considered
-    private List<Track> getSharedTopSongs(List<GroupifyUser> users, int threshold) {
+    List<Track> getSharedTopSongs(List<GroupifyUser> users, int threshold) {
         // keep track of all the songs we've seen (so we don't call the API more times than we have to)
         Map<String, Track> trackLibrary = new HashMap<>();
 
@@ -225,7 +312,7 @@ public class PlaylistGenerator {
     // returns the top songs of a Set of GroupifyUsers whose artist is a top artist for <threshold> users
     // for songs with multiple artists, checks if any artist on the song is a top artist for <threshold> users
     // threshold: the number of users that must share an artist for a track to be considered
-    private List<Track> getSharedTopArtistsSongs(List<GroupifyUser> users, int threshold) {
+    List<Track> getSharedTopArtistsSongs(List<GroupifyUser> users, int threshold) {
         // the list to return
         List<Track> songs = new ArrayList<>();
 
@@ -253,12 +340,12 @@ public class PlaylistGenerator {
         }
 
         // debug logging
-        if (DEBUG_MODE) {
-            System.out.println(DEBUG_PREFIX + "group top artists:");
+        if (DEBUG_MODE && LOG.isDebugEnabled()) {
+            Map<String, Integer> named = new LinkedHashMap<>();
             for (String id : artistOccurrences.keySet()) {
-                System.out.println(DEBUG_PREFIX + "\t" + artistOccurrences.get(id) + " : " + idToArtist.get(id).getName());
+                named.put(idToArtist.get(id).getName(), artistOccurrences.get(id));
             }
-            System.out.println();
+            LOG.debug("group top artists occurrences={}", named);
         }
 
         // add songs where the artist is seen at least <threshold> times
@@ -287,7 +374,7 @@ public class PlaylistGenerator {
     // 3.
     // returns the top songs of a set of GroupifyUsers whose artist contains genres which are top genres for all users
     // threshold: the number of users that must share a specific genre for it to be considered
-    private List<Track> getSharedTopGenresSongs(List<GroupifyUser> users, int threshold) {
+    List<Track> getSharedTopGenresSongs(List<GroupifyUser> users, int threshold) {
         // the list of tracks to return
         List<Track> songs = new ArrayList<>();
 
@@ -305,19 +392,16 @@ public class PlaylistGenerator {
         }
 
         // debug logging
-        if (DEBUG_MODE) {
-            System.out.println(DEBUG_PREFIX + "group top genres:");
-            for (String genre : genreOccurrences.keySet().stream().sorted().collect(Collectors.toList())) {
-                System.out.println(DEBUG_PREFIX + "\t" + genreOccurrences.get(genre) + " : " + genre);
-            }
-            System.out.println();
+        if (DEBUG_MODE && LOG.isDebugEnabled()) {
+            LOG.debug("group top genres occurrences={}", new TreeMap<>(genreOccurrences));
         }
 
         // get everyone's top songs
         Map<String, Track> topSongs = getTopSongs(users);
 
-        // get everyone's top artists
+        // get everyone's top artists, plus every other artist on a top song
         Map<String, Artist> topArtists = getTopArtists(users);
+        topArtists.putAll(getMissingArtists(topSongs.values(), topArtists));
 
         // find tracks that have <threshold> or more users sharing that genre
         Set<String> added = new HashSet<>();
@@ -338,7 +422,11 @@ public class PlaylistGenerator {
 
             // for each artist
             for (Artist artist : artists) {
-                // if the artist isn't null (why can an artist be null?)
+                // stop once another artist has already matched
+                if (added.contains(trackId)) {
+                    break;
+                }
+                // skip artists we couldn't look up
                 if (artist == null) {
                     continue;
                 }
@@ -359,6 +447,50 @@ public class PlaylistGenerator {
         return songs;
     }
 
+    // returns a Map of artist ids to Artists for the artists on the given tracks that aren't already known
+    // they're looked up in one pass through a GetArtistBuffer, so cached and concurrently requested artists are shared
+    // if the lookup fails or runs out of time, the artists are left out and genre matching uses what's known
+    private Map<String, Artist> getMissingArtists(Collection<Track> tracks, Map<String, Artist> known) {
+        // find the artists we don't know yet
+        GetArtistBuffer buffer = new GetArtistBuffer(spotify);
+        for (Track t : tracks) {
+            for (ArtistSimplified as : t.getArtists()) {
+                if (as.getId() != null && !known.containsKey(as.getId())) {
+                    buffer.add(as);
+                }
+            }
+        }
+        if (buffer.size() == 0) {
+            return Collections.emptyMap();
+        }
+
+        // look them all up
+        Map<String, Artist> found = new HashMap<>();
+        StageTimings.Running stage = timings.begin("genre artist lookup");
+        try {
+            List<Artist> artists = budget.call(buffer::flush, WRITE_RESERVE);
+            for (Artist a : artists) {
+                if (a != null) {
+                    found.put(a.getId(), a);
+                }
+            }
+            if (!buffer.getFailures().isEmpty()) {
+                LOG.warn("artist chunks failed to load failed={} cause={}", buffer.getFailures().size(), buffer.getFailures().get(0).cause.getMessage());
+            }
+            stage.done(found.size());
+        } catch (TimeoutException e) {
+            budget.skip("genre artist lookup");
+            stage.done(0, StageTimings.TIMED_OUT);
+        } catch (EndpointUnavailableException e) {
+            budget.skip("genre artist lookup (" + e.getMessage() + ")");
+            stage.done(0, StageTimings.SKIPPED);
+        } catch (SpotifyWebApiException | IOException e) {
+            LOG.warn("error looking up artists for genre matching", e);
+            stage.done(0, StageTimings.FAILED);
+        }
+        return found;
+    }
+
     // last.
     // returns a list of recommended songs songs based on a given list of songs
     // songs: the list of songs
@@ -381,31 +513,48 @@ public class PlaylistGenerator {
         List<Track> songs = new ArrayList<>();
 
         // generate a list of track ids based off of tracks
-        StringBuilder trackIds = new StringBuilder();
-        Iterator<Track> iter = tracks.iterator();
-        for (int i = 0; i < 5 && iter.hasNext(); i++) {
-            Track t = iter.next();
-            trackIds.append(t.getId() + ",");
-        }
+        // sorted rather than in set order, so the same songs always ask for the same recommendations
+        String trackIds = tracks.stream()
+                .map(Track::getId)
+                .filter(Objects::nonNull)
+                .sorted()
+                .limit(5)
+                .collect(Collectors.joining(","));
 
         // create a request
         GetRecommendationsRequest request = spotify.getRecommendations()
                 .limit(limit)
-                .seed_tracks(trackIds.toString())
+                .seed_tracks(trackIds)
                 .build();
 
-        // run the request
+        // run the request, keeping enough time in hand to write the playlist afterwards
+        StageTimings.Running stage = timings.begin("recommendations");
         try {
             // add all recommended songs
-            TrackSimplified[] recommendations = request.execute().getTracks();
-            GetTrackBuffer buffer = new GetTrackBuffer(spotify);
-            buffer.addAll(recommendations);
-            List<Track> recTracks = buffer.flush();
+            List<Track> recTracks = budget.call(() -> {
+                TrackSimplified[] recommendations = request.execute().getTracks();
+                GetTrackBuffer buffer = new GetTrackBuffer(spotify);
+                buffer.addAll(recommendations);
+                List<Track> flushed = buffer.flush();
+                // keep what we got from the chunks that didn't fail
+                if (!buffer.getFailures().isEmpty()) {
+                    LOG.warn("recommendation chunks failed to load failed={} cause={}", buffer.getFailures().size(), buffer.getFailures().get(0).cause.getMessage());
+                }
+                return flushed.stream().filter(Objects::nonNull).collect(Collectors.toList());
+            }, WRITE_RESERVE);
             songs.addAll(recTracks);
+            stage.done(recTracks.size());
+        } catch (TimeoutException e) {
+            budget.skip("recommendations");
+            stage.done(0, StageTimings.TIMED_OUT);
+            return Collections.emptyList();
+        } catch (EndpointUnavailableException e) {
+            budget.skip("recommendations (" + e.getMessage() + ")");
+            stage.done(0, StageTimings.SKIPPED);
+            return Collections.emptyList();
         } catch (SpotifyWebApiException | IOException e) {
-            System.err.println("!!! error getting recommendations: " + e.getMessage());
-            e.printStackTrace();
-            System.err.println("seed track ids: " + trackIds.toString().replace(",", ",\n"));
+            LOG.warn("error getting recommendations seeds={}", trackIds, e);
+            stage.done(0, StageTimings.FAILED);
             return Collections.emptyList();
         }
 
@@ -496,4 +645,9 @@ public class PlaylistGenerator {
         }
     }
 
+    // returns the names of a collection of tracks, for debug logging
+    private static List<String> names(Collection<Track> tracks) {
+        return tracks.stream().map(Track::getName).collect(Collectors.toList());
+    }
+
 }
@@ -0,0 +1,87 @@
+package wenjalan.groupify.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// how long this node took to start, measured from when its JVM started
+// time to first request is what a node added for a burst actually makes people wait, lazy beans included
+public class StartupMetrics {
+
+    // the logger
+    private static final Logger LOG = LoggerFactory.getLogger(StartupMetrics.class);
+
+    // when the JVM started, in millis since the epoch
+    private static final long JVM_START = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    // millis from JVM start until Spring was ready, -1 until it is
+    private static volatile long readyMillis = -1;
+
+    // millis from JVM start until the first request had been answered, -1 until one has
+    private static volatile long firstRequestMillis = -1;
+
+    // whether the first request has been counted
+    private static final AtomicBoolean SERVED = new AtomicBoolean(false);
+
+    // whether the service was started in fast-start mode
+    private static volatile boolean fastStart = false;
+
+    // records that Spring is ready
+    static void ready(boolean fastStartMode) {
+        fastStart = fastStartMode;
+        readyMillis = System.currentTimeMillis() - JVM_START;
+        LOG.info("service ready readyMillis={} fastStart={} sharingClasses={}", readyMillis, fastStart, isSharingClasses());
+    }
+
+    // records that a request has been answered, only the first one counts
+    static void requestServed() {
+        if (firstRequestMillis < 0 && SERVED.compareAndSet(false, true)) {
+            firstRequestMillis = System.currentTimeMillis() - JVM_START;
+            LOG.info("first request served timeToFirstRequestMillis={}", firstRequestMillis);
+        }
+    }
+
+    // returns when the JVM started, in millis since the epoch
+    public static long getJvmStartTime() {
+        return JVM_START;
+    }
+
+    // returns the millis from JVM start until Spring was ready, -1 if it isn't yet
+    public static long getReadyMillis() {
+        return readyMillis;
+    }
+
+    // returns the millis from JVM start until the first request was answered, -1 if none has been
+    public static long getFirstRequestMillis() {
+        return firstRequestMillis;
+    }
+
+    // returns whether the service was started in fast-start mode
+    public static boolean isFastStart() {
+        return fastStart;
+    }
+
+    // returns whether the JVM is loading classes from a class data sharing archive
+    public static boolean isSharingClasses() {
+        return System.getProperty("java.vm.info", "").contains("sharing");
+    }
+
+    // returns the startup times in the Prometheus text format, leaving out any not measured yet
+    public static String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        if (readyMillis >= 0) {
+            out.append("# HELP groupify_startup_ready_seconds Time from JVM start until the service was ready\n");
+            out.append("# TYPE groupify_startup_ready_seconds gauge\n");
+            out.append("groupify_startup_ready_seconds{fast_start=\"").append(fastStart).append("\"} ").append(readyMillis / 1000.0).append('\n');
+        }
+        if (firstRequestMillis >= 0) {
+            out.append("# HELP groupify_startup_first_request_seconds Time from JVM start until the first request was answered\n");
+            out.append("# TYPE groupify_startup_first_request_seconds gauge\n");
+            out.append("groupify_startup_first_request_seconds{fast_start=\"").append(fastStart).append("\"} ").append(firstRequestMillis / 1000.0).append('\n');
+        }
+        return out.toString();
+    }
+
+}
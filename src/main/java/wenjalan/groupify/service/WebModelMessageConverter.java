@@ -0,0 +1,46 @@
+package wenjalan.groupify.service;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import wenjalan.groupify.service.model.webmodel.WebModel;
+
+import java.io.IOException;
+
+// writes WebModel responses with their own cached serialization, so Spring doesn't serialize them a second time
+public class WebModelMessageConverter extends AbstractHttpMessageConverter<WebModel> {
+
+    // constructor
+    public WebModelMessageConverter() {
+        super(MediaType.APPLICATION_JSON_UTF8, MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return WebModel.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        // WebModels only ever go out
+        return false;
+    }
+
+    @Override
+    protected WebModel readInternal(Class<? extends WebModel> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("WebModels can't be read");
+    }
+
+    @Override
+    protected Long getContentLength(WebModel model, MediaType contentType) {
+        return (long) model.toJsonBytes().length;
+    }
+
+    @Override
+    protected void writeInternal(WebModel model, HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getBody().write(model.toJsonBytes());
+    }
+
+}
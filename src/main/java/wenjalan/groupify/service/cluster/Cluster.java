@@ -0,0 +1,109 @@
+package wenjalan.groupify.service.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// which node of the cluster owns each party, from static membership
+// a party lives on the node its id hashes to, so a new party's id is drawn until it hashes to the node creating it
+// OAuth states name the owner too, so a callback finds its party even if it lands on another node
+// with no cluster configured every party is local and nothing here changes how the service behaves
+public class Cluster {
+
+    // the logger
+    private static final Logger LOG = LoggerFactory.getLogger(Cluster.class);
+
+    // the default number of points each node is placed at on the ring
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    // the nodes by name, empty when not clustered
+    private static volatile Map<String, ClusterNode> nodes = Collections.emptyMap();
+
+    // this node, null when not clustered
+    private static volatile ClusterNode self = null;
+
+    // the ring, null when not clustered
+    private static volatile HashRing ring = null;
+
+    // sets the membership
+    // selfName: the name of this node
+    // members: the nodes as comma separated name=url pairs, e.g. a=http://10.0.0.2:8080,b=http://10.0.0.3:8080
+    // virtualNodes: the number of points each node is placed at on the ring
+    public static void configure(String selfName, String members, int virtualNodes) {
+        Map<String, ClusterNode> parsed = new LinkedHashMap<>();
+        for (String member : members.split(",")) {
+            String[] parts = member.trim().split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("cluster node isn't name=url: " + member);
+            }
+            parsed.put(parts[0], new ClusterNode(parts[0], URI.create(parts[1])));
+        }
+        ClusterNode me = parsed.get(selfName);
+        if (me == null) {
+            throw new IllegalArgumentException("this node, " + selfName + ", isn't one of the cluster's nodes");
+        }
+        ring = new HashRing(new ArrayList<>(parsed.values()), virtualNodes);
+        nodes = parsed;
+        self = me;
+        LOG.info("cluster configured self={} nodes={} virtualNodes={}", selfName, parsed.values(), virtualNodes);
+    }
+
+    // returns whether this node is part of a cluster
+    public static boolean isClustered() {
+        return self != null;
+    }
+
+    // returns this node, null if it isn't part of a cluster
+    public static ClusterNode self() {
+        return self;
+    }
+
+    // returns every node, empty if this node isn't part of a cluster
+    public static List<ClusterNode> nodes() {
+        return new ArrayList<>(nodes.values());
+    }
+
+    // returns the node that owns a party, null if this node isn't part of a cluster
+    public static ClusterNode ownerOf(String partyId) {
+        HashRing r = ring;
+        return r == null ? null : r.nodeFor(partyId);
+    }
+
+    // returns whether a party is owned by this node, always the case when not clustered
+    public static boolean isLocal(String partyId) {
+        ClusterNode owner = ownerOf(partyId);
+        return owner == null || owner == self;
+    }
+
+    // returns a new OAuth state for a sign in to a party: its id, its owner when clustered, then a random nonce
+    public static String newState(String partyId) {
+        String nonce = UUID.randomUUID().toString();
+        return self == null ? partyId + ":" + nonce : partyId + ":" + self.getName() + ":" + nonce;
+    }
+
+    // returns the node a callback's state routes to, the party's owner if the state doesn't name a known node
+    public static ClusterNode routeState(String state) {
+        String[] parts = state.split(":");
+        ClusterNode named = parts.length == 3 ? nodes.get(parts[1]) : null;
+        return named != null ? named : ownerOf(parts[0]);
+    }
+
+    // returns whether a request from an address may have been forwarded by a node
+    // this node's own addresses count, for nodes sharing a host as when testing with several local JVMs
+    public static boolean isNodeAddress(String address) {
+        for (ClusterNode node : nodes.values()) {
+            if (node.hasAddress(address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
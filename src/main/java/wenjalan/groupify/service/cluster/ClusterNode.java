@@ -0,0 +1,58 @@
+package wenjalan.groupify.service.cluster;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.Set;
+
+// a service node of the cluster, as named in the static membership
+public class ClusterNode {
+
+    // the name of this node, which is what's hashed onto the ring and put in OAuth states
+    private final String name;
+
+    // where this node's API is, e.g. http://10.0.0.2:8080
+    private final URI baseUri;
+
+    // the addresses this node's host resolved to, to recognize requests it forwards
+    private final Set<String> addresses = new HashSet<>();
+
+    // constructor
+    public ClusterNode(String name, URI baseUri) {
+        if (name.isEmpty() || name.contains(":") || name.contains(",")) {
+            throw new IllegalArgumentException("invalid cluster node name: " + name);
+        }
+        this.name = name;
+        this.baseUri = baseUri;
+        try {
+            for (InetAddress address : InetAddress.getAllByName(baseUri.getHost())) {
+                addresses.add(address.getHostAddress());
+            }
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("can't resolve cluster node " + name + ": " + baseUri, e);
+        }
+    }
+
+    // name
+    public String getName() {
+        return this.name;
+    }
+
+    // baseUri
+    public URI getBaseUri() {
+        return this.baseUri;
+    }
+
+    // returns whether a request from an address may have come from this node
+    public boolean hasAddress(String address) {
+        return addresses.contains(address);
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        return name + "=" + baseUri;
+    }
+
+}
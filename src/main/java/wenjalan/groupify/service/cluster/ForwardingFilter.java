@@ -0,0 +1,192 @@
+package wenjalan.groupify.service.cluster;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import wenjalan.groupify.service.spotify.OkHttpManager;
+import wenjalan.groupify.service.util.PlaylistConfiguration;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// forwards a request for a party this node doesn't own to the node that does, and relays its answer back
+// so any node behind a plain load balancer can take any request, while each party lives on exactly one node
+// a forwarded request is marked, and a node handles a marked request itself, so a membership mismatch can't loop
+// the client's address goes along, so admission control on the owner limits the client and not the forwarding node
+public class ForwardingFilter extends OncePerRequestFilter {
+
+    // the logger
+    private static final Logger LOG = LoggerFactory.getLogger(ForwardingFilter.class);
+
+    // marks a forwarded request, naming the node it was forwarded by
+    public static final String FORWARDED_BY = "X-Groupify-Forwarded-By";
+
+    // carries the address of the client a forwarded request came from
+    public static final String FORWARDED_FOR = "X-Forwarded-For";
+
+    // the parameter each party endpoint takes its party id in
+    private static final Map<String, String> PARTY_PARAMETERS = new HashMap<>();
+    static {
+        PARTY_PARAMETERS.put("/api/party", "id");
+        PARTY_PARAMETERS.put("/api/add", "party");
+        PARTY_PARAMETERS.put("/api/make", "party");
+        PARTY_PARAMETERS.put("/api/remove", "party");
+    }
+
+    // the callback endpoint, routed by its state
+    private static final String CALLBACK = "/api/callback";
+
+    // headers that only describe one connection, and aren't relayed
+    private static final Set<String> HOP_BY_HOP = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "te", "trailer", "upgrade", "host", "content-length"
+    ));
+
+    // how much longer than the most time a generation may be given a forwarded request is waited on
+    // covers the owner's work before and after the generation itself
+    private static final long READ_TIMEOUT_MARGIN = 15000;
+
+    // the client requests are forwarded with, its read timeout is set per request, see readTimeout()
+    private final OkHttpClient client = OkHttpManager.createClient(32, 300, 5000, PlaylistConfiguration.DEFAULT_MAX_TIME_BUDGET + READ_TIMEOUT_MARGIN, false);
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        if (!Cluster.isClustered()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        // a request forwarded by another node is handled here whoever owns it
+        if (request.getHeader(FORWARDED_BY) != null) {
+            chain.doFilter(forwardedFrom(request), response);
+            return;
+        }
+
+        // forward it if it's for a party another node owns
+        ClusterNode owner = ownerOf(request);
+        if (owner == null || owner == Cluster.self()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        forward(request, response, owner);
+    }
+
+    // returns the node that owns the party a request is for, null if it isn't for a party
+    private static ClusterNode ownerOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.equals(CALLBACK)) {
+            String state = request.getParameter("state");
+            return state == null || state.isEmpty() ? null : Cluster.routeState(state);
+        }
+        String parameter = PARTY_PARAMETERS.get(path);
+        String partyId = parameter == null ? null : request.getParameter(parameter);
+        return partyId == null || partyId.isEmpty() ? null : Cluster.ownerOf(partyId);
+    }
+
+    // returns a forwarded request as it came from the client, if it really came from a node
+    private static HttpServletRequest forwardedFrom(HttpServletRequest request) {
+        String client = request.getHeader(FORWARDED_FOR);
+        if (client == null || !Cluster.isNodeAddress(request.getRemoteAddr())) {
+            return request;
+        }
+        return new HttpServletRequestWrapper(request) {
+            @Override
+            public String getRemoteAddr() {
+                return client;
+            }
+        };
+    }
+
+    // sends a request on to a node and copies its answer into the response
+    private void forward(HttpServletRequest request, HttpServletResponse response, ClusterNode owner) throws IOException {
+        String query = request.getQueryString();
+        String url = owner.getBaseUri().toString().replaceAll("/+$", "")
+                + request.getRequestURI().substring(request.getContextPath().length())
+                + (query == null ? "" : "?" + query);
+
+        // copy the request, marking it as forwarded
+        Request.Builder forwarded = new Request.Builder().url(url);
+        for (Enumeration<String> names = request.getHeaderNames(); names.hasMoreElements();) {
+            String name = names.nextElement();
+            if (!HOP_BY_HOP.contains(name.toLowerCase(Locale.ROOT))) {
+                for (String value : Collections.list(request.getHeaders(name))) {
+                    forwarded.addHeader(name, value);
+                }
+            }
+        }
+        forwarded.header(FORWARDED_BY, Cluster.self().getName());
+        forwarded.header(FORWARDED_FOR, request.getRemoteAddr());
+        String method = request.getMethod();
+        RequestBody body = null;
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            String contentType = request.getContentType();
+            body = RequestBody.create(readAll(request.getInputStream()), contentType == null ? null : MediaType.parse(contentType));
+        }
+        forwarded.method(method, body);
+
+        // relay the owner's answer
+        OkHttpClient timed = client.newBuilder().readTimeout(readTimeout(), TimeUnit.MILLISECONDS).build();
+        try (Response answer = timed.newCall(forwarded.build()).execute()) {
+            response.setStatus(answer.code());
+            Headers headers = answer.headers();
+            for (String name : headers.names()) {
+                if (!HOP_BY_HOP.contains(name.toLowerCase(Locale.ROOT))) {
+                    for (String value : headers.values(name)) {
+                        response.addHeader(name, value);
+                    }
+                }
+            }
+            ResponseBody answerBody = answer.body();
+            if (answerBody != null) {
+                byte[] bytes = answerBody.bytes();
+                response.setContentLength(bytes.length);
+                OutputStream out = response.getOutputStream();
+                out.write(bytes);
+                out.flush();
+            }
+        } catch (IOException e) {
+            LOG.warn("error forwarding request node={} path={}", owner.getName(), request.getRequestURI(), e);
+            response.sendError(HttpServletResponse.SC_BAD_GATEWAY, "party's node " + owner.getName() + " is unreachable");
+        }
+    }
+
+    // reads a stream to its end
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n; (n = in.read(buffer)) > 0;) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    // returns how long to wait on the owner's answer, as long as the longest generation a client can ask for and then some
+    // read each time, since the most time a generation may be given can be reloaded
+    // a shorter wait would answer 502 while the owner kept generating, and a retry would make a second playlist
+    private static long readTimeout() {
+        return PlaylistConfiguration.getMaxTimeBudget() + READ_TIMEOUT_MARGIN;
+    }
+
+}
@@ -0,0 +1,51 @@
+package wenjalan.groupify.service.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// maps keys to nodes by consistent hashing, each node placed on the ring at many points
+// adding or removing a node only moves the keys next to its points, and the points even out how many keys each node gets
+// immutable, every node with the same membership builds the same ring
+public class HashRing {
+
+    // the nodes by their points on the ring
+    private final TreeMap<Long, ClusterNode> ring = new TreeMap<>();
+
+    // constructor
+    // virtualNodes: the number of points each node is placed at
+    public HashRing(List<ClusterNode> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("a ring needs a node and at least one point per node");
+        }
+        for (ClusterNode node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node.getName() + "#" + i), node);
+            }
+        }
+    }
+
+    // returns the node that owns a key: the first one at or after the key's hash, going round
+    public ClusterNode nodeFor(String key) {
+        Map.Entry<Long, ClusterNode> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    // returns the first 8 bytes of the MD5 of a string, which spreads even short, similar keys around the ring
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (digest[i] & 0xff);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is always available", e);
+        }
+    }
+
+}
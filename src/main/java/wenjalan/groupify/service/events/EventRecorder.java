@@ -0,0 +1,43 @@
+package wenjalan.groupify.service.events;
+
+import wenjalan.groupify.service.model.GroupifyUser;
+
+// records nothing, used when the runtime doesn't have JFR
+// JfrEventRecorder overrides every method to emit the events
+class EventRecorder {
+
+    void partyCreated(String partyId, String hostId) {
+    }
+
+    void partyEnded(String partyId, int users, long ageMillis, String reason) {
+    }
+
+    GroupifyEvents.Span beginUserIngestion() {
+        return GroupifyEvents.NONE;
+    }
+
+    void userIngested(GroupifyEvents.Span span, String partyId, boolean isHost, GroupifyUser user) {
+    }
+
+    GroupifyEvents.Span beginStage() {
+        return GroupifyEvents.NONE;
+    }
+
+    void stageFinished(GroupifyEvents.Span span, String partyId, String stage, int candidates, String outcome) {
+    }
+
+    GroupifyEvents.Span beginFlush() {
+        return GroupifyEvents.NONE;
+    }
+
+    void flushed(GroupifyEvents.Span span, String catalog, int ids, int cacheHits, int failedIds, boolean batched) {
+    }
+
+    GroupifyEvents.Span beginPlaylistWrite() {
+        return GroupifyEvents.NONE;
+    }
+
+    void playlistWritten(GroupifyEvents.Span span, String partyId, String playlistId, int offset, int tracks, String outcome) {
+    }
+
+}
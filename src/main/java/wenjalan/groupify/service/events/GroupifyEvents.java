@@ -0,0 +1,98 @@
+package wenjalan.groupify.service.events;
+
+import wenjalan.groupify.service.model.GroupifyUser;
+
+// emits Java Flight Recorder events for party lifecycles, user ingestion, generation stages, catalog flushes and playlist writes
+// so a recording can line GC and allocation spikes up with the party and stage that caused them
+// nothing is kept unless a recording is running, e.g. java -XX:StartFlightRecording=filename=groupify.jfr ...
+// JFR's event API is in JDK 11+ and 8u262+, on older runtimes every method here does nothing
+public class GroupifyEvents {
+
+    // an event that has begun, finished by passing it to the matching method below
+    public interface Span {
+    }
+
+    // the span handed out when there's no JFR
+    static final Span NONE = new Span() {
+    };
+
+    // party end reasons
+    public static final String REMOVED = "removed";
+    public static final String EXPIRED = "expired";
+
+    // emits the events, or nothing if JFR isn't there
+    private static final EventRecorder RECORDER = createRecorder();
+
+    // returns a JFR recorder if the runtime has JFR's event API, a recorder that does nothing otherwise
+    private static EventRecorder createRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return new JfrEventRecorder();
+        } catch (ClassNotFoundException | LinkageError e) {
+            return new EventRecorder();
+        }
+    }
+
+    // returns whether events are being emitted to JFR
+    public static boolean isAvailable() {
+        return RECORDER.getClass() != EventRecorder.class;
+    }
+
+    // a party was created with its host
+    public static void partyCreated(String partyId, String hostId) {
+        RECORDER.partyCreated(partyId, hostId);
+    }
+
+    // a party was removed or expired
+    // reason: REMOVED or EXPIRED
+    public static void partyEnded(String partyId, int users, long ageMillis, String reason) {
+        RECORDER.partyEnded(partyId, users, ageMillis, reason);
+    }
+
+    // starts timing a user's sign in and the loading of their taste
+    public static Span beginUserIngestion() {
+        return RECORDER.beginUserIngestion();
+    }
+
+    // finishes a user ingestion
+    // user: the user that was loaded, null if loading failed
+    public static void userIngested(Span span, String partyId, boolean isHost, GroupifyUser user) {
+        RECORDER.userIngested(span, partyId, isHost, user);
+    }
+
+    // starts timing a stage of a playlist generation
+    public static Span beginStage() {
+        return RECORDER.beginStage();
+    }
+
+    // finishes a generation stage
+    // candidates: how many tracks, artists or ids the stage came out with, -1 if it doesn't apply
+    public static void stageFinished(Span span, String partyId, String stage, int candidates, String outcome) {
+        RECORDER.stageFinished(span, partyId, stage, candidates, outcome);
+    }
+
+    // starts timing a catalog buffer flush
+    public static Span beginFlush() {
+        return RECORDER.beginFlush();
+    }
+
+    // finishes a catalog buffer flush
+    // catalog: the name of the catalog, e.g. tracks
+    // ids: the ids flushed, cacheHits: how many came from the cache, failedIds: how many were in chunks that failed
+    // batched: whether misses went through the node-wide loader rather than the buffer's own chunks
+    public static void flushed(Span span, String catalog, int ids, int cacheHits, int failedIds, boolean batched) {
+        RECORDER.flushed(span, catalog, ids, cacheHits, failedIds, batched);
+    }
+
+    // starts timing a batch of tracks being added to a playlist
+    public static Span beginPlaylistWrite() {
+        return RECORDER.beginPlaylistWrite();
+    }
+
+    // finishes a playlist write
+    // offset: the position of the batch's first track in the playlist
+    public static void playlistWritten(Span span, String partyId, String playlistId, int offset, int tracks, String outcome) {
+        RECORDER.playlistWritten(span, partyId, playlistId, offset, tracks, outcome);
+    }
+
+}
@@ -0,0 +1,256 @@
+package wenjalan.groupify.service.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import wenjalan.groupify.service.model.GroupifyUser;
+
+// emits GroupifyEvents as JFR events, only loaded when the runtime has JFR
+// stack traces are left off every event, they're emitted per stage rather than per call and cost little when nothing is recording
+class JfrEventRecorder extends EventRecorder {
+
+    @Name("groupify.PartyCreated")
+    @Label("Party Created")
+    @Category({ "Groupify", "Parties" })
+    @StackTrace(false)
+    static class PartyCreatedEvent extends Event {
+        @Label("Party Id")
+        String partyId;
+
+        @Label("Host Id")
+        String hostId;
+    }
+
+    @Name("groupify.PartyEnded")
+    @Label("Party Ended")
+    @Category({ "Groupify", "Parties" })
+    @Description("A party was removed by its host or expired")
+    @StackTrace(false)
+    static class PartyEndedEvent extends Event {
+        @Label("Party Id")
+        String partyId;
+
+        @Label("Users")
+        int users;
+
+        @Label("Age")
+        @Timespan(Timespan.MILLISECONDS)
+        long age;
+
+        @Label("Reason")
+        String reason;
+    }
+
+    @Name("groupify.UserIngestion")
+    @Label("User Ingestion")
+    @Category({ "Groupify", "Users" })
+    @Description("A user signing in and their taste being loaded from Spotify")
+    @StackTrace(false)
+    static class UserIngestionEvent extends Event implements GroupifyEvents.Span {
+        @Label("Party Id")
+        String partyId;
+
+        @Label("User Id")
+        String userId;
+
+        @Label("Host")
+        boolean host;
+
+        @Label("Loaded")
+        boolean loaded;
+
+        @Label("Top Tracks")
+        int topTracks;
+
+        @Label("Top Artists")
+        int topArtists;
+
+        @Label("Top Genres")
+        int topGenres;
+
+        @Label("Playlists")
+        int playlists;
+
+        @Label("Saved Tracks")
+        int savedTracks;
+    }
+
+    @Name("groupify.GenerationStage")
+    @Label("Generation Stage")
+    @Category({ "Groupify", "Generation" })
+    @Description("A stage of a playlist generation, as reported in its stage timings")
+    @StackTrace(false)
+    static class GenerationStageEvent extends Event implements GroupifyEvents.Span {
+        @Label("Party Id")
+        String partyId;
+
+        @Label("Stage")
+        String stage;
+
+        @Label("Candidates")
+        int candidates;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("groupify.CatalogFlush")
+    @Label("Catalog Flush")
+    @Category({ "Groupify", "Catalog" })
+    @Description("A track or artist buffer looking up its ids in the cache and Spotify")
+    @StackTrace(false)
+    static class CatalogFlushEvent extends Event implements GroupifyEvents.Span {
+        @Label("Catalog")
+        String catalog;
+
+        @Label("Ids")
+        int ids;
+
+        @Label("Cache Hits")
+        int cacheHits;
+
+        @Label("Failed Ids")
+        int failedIds;
+
+        @Label("Batched")
+        boolean batched;
+    }
+
+    @Name("groupify.PlaylistWrite")
+    @Label("Playlist Write")
+    @Category({ "Groupify", "Generation" })
+    @Description("A batch of tracks being added to a generated playlist")
+    @StackTrace(false)
+    static class PlaylistWriteEvent extends Event implements GroupifyEvents.Span {
+        @Label("Party Id")
+        String partyId;
+
+        @Label("Playlist Id")
+        String playlistId;
+
+        @Label("Offset")
+        int offset;
+
+        @Label("Tracks")
+        int tracks;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Override
+    void partyCreated(String partyId, String hostId) {
+        PartyCreatedEvent event = new PartyCreatedEvent();
+        if (event.shouldCommit()) {
+            event.partyId = partyId;
+            event.hostId = hostId;
+            event.commit();
+        }
+    }
+
+    @Override
+    void partyEnded(String partyId, int users, long ageMillis, String reason) {
+        PartyEndedEvent event = new PartyEndedEvent();
+        if (event.shouldCommit()) {
+            event.partyId = partyId;
+            event.users = users;
+            event.age = ageMillis;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+
+    @Override
+    GroupifyEvents.Span beginUserIngestion() {
+        UserIngestionEvent event = new UserIngestionEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void userIngested(GroupifyEvents.Span span, String partyId, boolean isHost, GroupifyUser user) {
+        UserIngestionEvent event = (UserIngestionEvent) span;
+        event.end();
+        if (event.shouldCommit()) {
+            event.partyId = partyId;
+            event.host = isHost;
+            event.loaded = user != null;
+            if (user != null) {
+                event.userId = user.getUserId();
+                event.topTracks = user.getTopTracks().length;
+                event.topArtists = user.getTopArtists().length;
+                event.topGenres = user.getTopGenres().size();
+                event.playlists = user.getPlaylists().size();
+                event.savedTracks = user.getSavedTracks().size();
+            }
+            event.commit();
+        }
+    }
+
+    @Override
+    GroupifyEvents.Span beginStage() {
+        GenerationStageEvent event = new GenerationStageEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void stageFinished(GroupifyEvents.Span span, String partyId, String stage, int candidates, String outcome) {
+        GenerationStageEvent event = (GenerationStageEvent) span;
+        event.end();
+        if (event.shouldCommit()) {
+            event.partyId = partyId;
+            event.stage = stage;
+            event.candidates = candidates;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    @Override
+    GroupifyEvents.Span beginFlush() {
+        CatalogFlushEvent event = new CatalogFlushEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void flushed(GroupifyEvents.Span span, String catalog, int ids, int cacheHits, int failedIds, boolean batched) {
+        CatalogFlushEvent event = (CatalogFlushEvent) span;
+        event.end();
+        if (event.shouldCommit()) {
+            event.catalog = catalog;
+            event.ids = ids;
+            event.cacheHits = cacheHits;
+            event.failedIds = failedIds;
+            event.batched = batched;
+            event.commit();
+        }
+    }
+
+    @Override
+    GroupifyEvents.Span beginPlaylistWrite() {
+        PlaylistWriteEvent event = new PlaylistWriteEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void playlistWritten(GroupifyEvents.Span span, String partyId, String playlistId, int offset, int tracks, String outcome) {
+        PlaylistWriteEvent event = (PlaylistWriteEvent) span;
+        event.end();
+        if (event.shouldCommit()) {
+            event.partyId = partyId;
+            event.playlistId = playlistId;
+            event.offset = offset;
+            event.tracks = tracks;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package wenjalan.groupify.service.model;
+
+import java.util.List;
+
+// represents the outcome of a playlist generation
+public class GenerationReport {
+
+    // the id of the party the playlist was generated for
+    private final String partyId;
+
+    // when the generation started, in millis
+    private final long startedAt;
+
+    // the url of the created playlist, null if generation failed
+    private final String playlistUrl;
+
+    // the stages skipped to stay within the time budget
+    private final List<String> skippedStages;
+
+    // how long each stage took
+    private final StageTimings timings;
+
+    // how long the whole generation took, in millis
+    private final long totalMillis;
+
+    // constructor
+    public GenerationReport(String partyId, long startedAt, String playlistUrl, List<String> skippedStages, StageTimings timings) {
+        this.partyId = partyId;
+        this.startedAt = startedAt;
+        this.playlistUrl = playlistUrl;
+        this.skippedStages = skippedStages;
+        this.timings = timings;
+        this.totalMillis = timings.getTotalMillis();
+    }
+
+    // partyId
+    public String getPartyId() {
+        return this.partyId;
+    }
+
+    // startedAt
+    public long getStartedAt() {
+        return this.startedAt;
+    }
+
+    // playlistUrl
+    public String getPlaylistUrl() {
+        return this.playlistUrl;
+    }
+
+    // skippedStages
+    public List<String> getSkippedStages() {
+        return this.skippedStages;
+    }
+
+    // timings
+    public StageTimings getTimings() {
+        return this.timings;
+    }
+
+    // totalMillis
+    public long getTotalMillis() {
+        return this.totalMillis;
+    }
+
+    // returns whether a playlist was created
+    public boolean isSuccess() {
+        return this.playlistUrl != null;
+    }
+
+}
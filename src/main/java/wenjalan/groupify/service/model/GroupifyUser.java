@@ -5,14 +5,27 @@ import com.wrapper.spotify.exceptions.SpotifyWebApiException;
 import com.wrapper.spotify.model_objects.credentials.AuthorizationCodeCredentials;
 import com.wrapper.spotify.model_objects.specification.*;
 import com.wrapper.spotify.requests.authorization.authorization_code.AuthorizationCodeRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import wenjalan.groupify.service.GroupifyConfiguration;
+import wenjalan.groupify.service.spotify.CircuitBreaker;
+import wenjalan.groupify.service.spotify.SpotifyClients;
+import wenjalan.groupify.service.util.CallerContext;
+import wenjalan.groupify.service.util.GroupifyExecutors;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 // represents a specific user's taste in music
 public class GroupifyUser {
 
+    // the logger
+    private static final Logger LOG = LoggerFactory.getLogger(GroupifyUser.class);
+
     // the Factory for GroupifyUser objects
     public static class Factory {
 
@@ -33,90 +46,129 @@ public class GroupifyUser {
 
             // gather all their information
             try {
-                // get the api to get information with
-                SpotifyApi api = authenticate(authCode, isHost);
-
-                // get the user's taste information
-                String displayName = api.getCurrentUsersProfile().build().execute().getDisplayName();
-                String userId = api.getCurrentUsersProfile().build().execute().getId();
-                List<Track> topTracks = Arrays.asList(api.getUsersTopTracks().limit(TOP_TRACKS_TO_RETRIEVE).build().execute().getItems());
-                List<Artist> topArtists = Arrays.asList(api.getUsersTopArtists().limit(TOP_ARTISTS_TO_RETRIEVE).build().execute().getItems());
-                List<Playlist> playlists = loadPlaylists(api);
-                List<SavedTrack> savedTracks = Arrays.asList(api.getUsersSavedTracks().limit(50).build().execute().getItems());
-                List<String> topGenres = generateTopGenres(topArtists);
-
-
-                // return a new GroupifyUser object with that information
-                return new GroupifyUser(
-                        api,
-                        isHost,
-                        displayName,
-                        userId,
-                        topTracks,
-                        topArtists,
-                        topGenres,
-                        playlists,
-                        savedTracks
-                );
+                return CallerContext.call(CallerContext.USER_FACTORY, () -> {
+                    // get the api to get information with
+                    SpotifyApi api = (isHost ? SpotifyClients.host() : SpotifyClients.guest()).build();
+                    long accessTokenExpiry = authenticate(api, authCode);
+
+                    // get the user's taste information, all at once since none of it depends on the rest
+                    ExecutorService io = GroupifyExecutors.io();
+                    Future<User> profile = io.submit(() -> api.getCurrentUsersProfile().build().execute());
+                    Future<Track[]> topTrackItems = io.submit(() -> api.getUsersTopTracks().limit(TOP_TRACKS_TO_RETRIEVE).build().execute().getItems());
+                    Future<Artist[]> topArtistItems = io.submit(() -> api.getUsersTopArtists().limit(TOP_ARTISTS_TO_RETRIEVE).build().execute().getItems());
+                    Future<List<Playlist>> playlistList = io.submit(() -> loadPlaylists(api));
+                    Future<SavedTrack[]> savedTrackItems = io.submit(() -> api.getUsersSavedTracks().limit(50).build().execute().getItems());
+
+                    User user = GroupifyExecutors.await(profile);
+                    String displayName = user.getDisplayName();
+                    String userId = user.getId();
+                    List<Track> topTracks = Arrays.asList(GroupifyExecutors.await(topTrackItems));
+                    List<Artist> topArtists = Arrays.asList(GroupifyExecutors.await(topArtistItems));
+                    List<Playlist> playlists = GroupifyExecutors.await(playlistList);
+                    List<SavedTrack> savedTracks = Arrays.asList(GroupifyExecutors.await(savedTrackItems));
+
+                    // return a new GroupifyUser object with that information
+                    GroupifyUser groupifyUser = createUser(api, isHost, displayName, userId, topTracks, topArtists, playlists, savedTracks);
+                    groupifyUser.accessTokenExpiry = accessTokenExpiry;
+                    return groupifyUser;
+                });
             } catch (SpotifyWebApiException | IOException e) {
-                System.out.println();
-                System.err.println("!!! error initializing GroupifyUser: " + e.getMessage());
-                e.printStackTrace();
+                LOG.error("error initializing user host={}", isHost, e);
                 return null;
             }
         }
 
-        // returns a newly authenticated API instance
-        // authCode: the authorization code to authenticate with
-        // scopes: the scopes to authenticate with
-        private static SpotifyApi authenticate(String authCode, boolean isHost) throws SpotifyWebApiException, IOException {
-            // create APi instance
-            SpotifyApi.Builder builder = SpotifyApi.builder()
-                    .setRedirectUri(configuration.REDIRECT_URI);
-
-            // host user
-            if (isHost) {
-                builder.setClientId(configuration.CLIENT_ID);
-                builder.setClientSecret(configuration.CLIENT_SECRET);
-            }
-
-            // guest user
-            else {
-                builder.setClientId(configuration.GUEST_ID);
-                builder.setClientSecret(configuration.GUEST_SECRET);
-            }
+        // creates a new GroupifyUser from taste information that's already been retrieved, without calling Spotify
+        // used by createUser(), and to build synthetic users for benchmarks
+        public static GroupifyUser createUser(SpotifyApi api, boolean isHost, String displayName, String userId, List<Track> topTracks, List<Artist> topArtists, List<Playlist> playlists, List<SavedTrack> savedTracks) {
+            List<String> topGenres = generateTopGenres(topArtists);
+            return new GroupifyUser(
+                    api,
+                    isHost,
+                    displayName,
+                    userId,
+                    topTracks,
+                    topArtists,
+                    topGenres,
+                    playlists,
+                    savedTracks
+            );
+        }
 
-            // create the api
-            SpotifyApi api = builder.build();
+        // recreates a GroupifyUser from before a restart, without calling Spotify
+        // only what playlist generation reads is kept, so their playlists and saved tracks come back empty
+        // accessTokenExpiry: when the api's access token expires in millis, it's refreshed before the next generation if it has
+        public static GroupifyUser restoreUser(SpotifyApi api, boolean isHost, String displayName, String userId, List<Track> topTracks, List<Artist> topArtists, long accessTokenExpiry) {
+            GroupifyUser user = createUser(api, isHost, displayName, userId, topTracks, topArtists, Collections.emptyList(), Collections.emptyList());
+            user.accessTokenExpiry = accessTokenExpiry;
+            return user;
+        }
 
-            // authorize it
+        // authenticates an API instance with an authorization code
+        // returns when its access token expires in millis
+        private static long authenticate(SpotifyApi api, String authCode) throws SpotifyWebApiException, IOException {
             AuthorizationCodeRequest request = api.authorizationCode(authCode).build();
             AuthorizationCodeCredentials credentials = request.execute();
             api.setAccessToken(credentials.getAccessToken());
             api.setRefreshToken(credentials.getRefreshToken());
-
-            // return it
-            return api;
+            return System.currentTimeMillis() + credentials.getExpiresIn() * 1000L;
         }
 
-        // returns a list of a user's playlists
+        // returns a list of a user's playlists, in the order Spotify listed them
+        // on virtual threads they're fetched a few at a time, at most half an endpoint's bulkhead so other users fit too,
+        // on platform threads one after another, as they were before virtual threads
+        // a playlist that fails to load is left out rather than losing the ones that did
         public static List<Playlist> loadPlaylists(SpotifyApi api) {
+            PlaylistSimplified[] playlistsSimplified;
             try {
-                List<Playlist> playlists = new ArrayList<>();
-                PlaylistSimplified[] playlistsSimplified = api.getListOfCurrentUsersPlaylists().build().execute().getItems();
-                for (PlaylistSimplified ps : playlistsSimplified) {
-                    playlists.add(api.getPlaylist(ps.getId()).build().execute());
-                }
-                return playlists;
+                playlistsSimplified = api.getListOfCurrentUsersPlaylists().build().execute().getItems();
             } catch (SpotifyWebApiException | IOException e) {
-                System.err.println("error loading playlists: " + e.getMessage());
-                e.printStackTrace();
+                LOG.warn("error loading playlists", e);
                 return Collections.emptyList();
             }
+
+            // fetch them with up to <fanout> workers, one of them being this thread
+            Playlist[] loaded = new Playlist[playlistsSimplified.length];
+            List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger next = new AtomicInteger(0);
+            Runnable worker = () -> {
+                for (int i; (i = next.getAndIncrement()) < loaded.length;) {
+                    try {
+                        loaded[i] = api.getPlaylist(playlistsSimplified[i].getId()).build().execute();
+                    } catch (SpotifyWebApiException | IOException | RuntimeException e) {
+                        failures.add(e);
+                    }
+                }
+            };
+            int fanout = GroupifyExecutors.isVirtual() ? Math.max(1, Math.min(PLAYLIST_FANOUT, CircuitBreaker.getMaxConcurrent() / 2)) : 1;
+            List<Future<?>> helpers = new ArrayList<>();
+            for (int i = 1; i < Math.min(fanout, loaded.length); i++) {
+                helpers.add(GroupifyExecutors.io().submit(worker));
+            }
+            worker.run();
+            try {
+                for (Future<?> helper : helpers) {
+                    GroupifyExecutors.await(helper);
+                }
+            } catch (SpotifyWebApiException | IOException e) {
+                // workers catch their own failures, so this is an interrupt
+                LOG.warn("interrupted loading playlists", e);
+            }
+
+            if (!failures.isEmpty()) {
+                LOG.warn("playlists failed to load failed={} of={} cause={}", failures.size(), loaded.length, failures.get(0).getMessage());
+            }
+            List<Playlist> playlists = new ArrayList<>();
+            for (Playlist playlist : loaded) {
+                if (playlist != null) {
+                    playlists.add(playlist);
+                }
+            }
+            return playlists;
         }
 
         // returns the top genres of a user given their top artists
-        private static List<String> generateTopGenres(List<Artist> topArtists) {
+        public static List<String> generateTopGenres(List<Artist> topArtists) {
             // create a map of genres to their occurrences
             Map<String, Integer> genres = new TreeMap<>();
 
@@ -162,9 +214,22 @@ public class GroupifyUser {
     // the number of top artists to retrieve
     public static final int TOP_ARTISTS_TO_RETRIEVE = 50;
 
+    // the most playlists of one user fetched at once on virtual threads
+    public static final int PLAYLIST_FANOUT = 4;
+
+    // how long before its access token expires that it's refreshed, in millis
+    private static final long TOKEN_REFRESH_MARGIN = 60 * 1000;
+
     // the Spotify API instance of this user
     private final SpotifyApi apiInstance;
 
+    // when the api's access token expires in millis, never if it isn't known
+    private volatile long accessTokenExpiry = Long.MAX_VALUE;
+
+    // held while the access token is refreshed
+    // a lock rather than a monitor, since the refresh blocks on Spotify and may be waited on by virtual threads
+    private final ReentrantLock tokenLock = new ReentrantLock();
+
     // whether or not this user is a host user
     private final boolean isHost;
 
@@ -208,6 +273,37 @@ public class GroupifyUser {
         return this.apiInstance;
     }
 
+    // returns when the api's access token expires in millis
+    public long getAccessTokenExpiry() {
+        return this.accessTokenExpiry;
+    }
+
+    // refreshes the api's access token if it expires within a minute
+    // parties outlive Spotify's hour-long tokens, and a party restored from the journal may come back with an expired one
+    // a failed refresh is only logged, the calls made with the old token will fail on their own
+    public void refreshAccessTokenIfExpiring() {
+        if (apiInstance.getRefreshToken() == null || System.currentTimeMillis() < accessTokenExpiry - TOKEN_REFRESH_MARGIN) {
+            return;
+        }
+        tokenLock.lock();
+        try {
+            if (System.currentTimeMillis() < accessTokenExpiry - TOKEN_REFRESH_MARGIN) {
+                return;
+            }
+            AuthorizationCodeCredentials credentials = apiInstance.authorizationCodeRefresh().build().execute();
+            apiInstance.setAccessToken(credentials.getAccessToken());
+            if (credentials.getRefreshToken() != null) {
+                apiInstance.setRefreshToken(credentials.getRefreshToken());
+            }
+            accessTokenExpiry = System.currentTimeMillis() + credentials.getExpiresIn() * 1000L;
+            LOG.debug("access token refreshed user={}", userId);
+        } catch (SpotifyWebApiException | IOException e) {
+            LOG.warn("error refreshing access token user={}", userId, e);
+        } finally {
+            tokenLock.unlock();
+        }
+    }
+
     // displayName
     public String getDisplayName() {
         return displayName;
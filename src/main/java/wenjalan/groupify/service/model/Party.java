@@ -1,8 +1,10 @@
 package wenjalan.groupify.service.model;
 
 import wenjalan.groupify.service.PartyManager;
+import wenjalan.groupify.service.cluster.Cluster;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 // represents a party of users
 public class Party {
@@ -15,7 +17,9 @@ public class Party {
 
         // build method
         public Party build(GroupifyUser host) {
-            return new Party(host, id);
+            Party party = new Party(host, getId(), System.currentTimeMillis());
+            PartyManager.getInstance().register(party);
+            return party;
         }
 
         // returns the id of the party being created
@@ -32,15 +36,13 @@ public class Party {
             UUID uuid = UUID.randomUUID();
             String id = uuid.toString().substring(0, 5).toUpperCase();
 
-            // keep regenerating the id if it's already been registered
-            while (registeredIds.contains(id)) {
+            // keep regenerating the id if another node of the cluster would own it, or if it's already been registered
+            // add() reserves the id and tells whether it was free in one step, so two threads can't both take it
+            while (!Cluster.isLocal(id) || !registeredIds.add(id)) {
                 uuid = UUID.randomUUID();
                 id = uuid.toString().substring(0, 5).toUpperCase();
             }
 
-            // register the ID as used
-            registeredIds.add(id);
-
             // return the new id
             return id;
         }
@@ -48,7 +50,8 @@ public class Party {
     }
 
     // the set of all currently registered Party ids
-    private static Set<String> registeredIds = new HashSet<>();
+    // used from request threads, the reaper and journal replay at once
+    private static final Set<String> registeredIds = ConcurrentHashMap.newKeySet();
 
     // the host user of this party
     private final GroupifyUser host;
@@ -62,28 +65,46 @@ public class Party {
     // when this party was crated
     private final long creationTimestamp;
 
+    // bumped whenever the party's users change
+    private volatile long version = 0;
+
+    // the snapshot of the current version, built the first time it's asked for
+    private volatile PartySnapshot snapshot = null;
+
     // constructor
     // host: the host user
     // id: the id to give this party
-    private Party(GroupifyUser host, String id) {
+    // creationTimestamp: when the party was created in millis
+    private Party(GroupifyUser host, String id, long creationTimestamp) {
         this.host = host;
         this.users = new LinkedList<>();
         this.id = id;
-        this.creationTimestamp = System.currentTimeMillis();
-        PartyManager.getInstance().register(this);
+        this.creationTimestamp = creationTimestamp;
 
         // add the host to their own party
         addUser(host);
     }
 
+    // recreates a party from before a restart, with its original id and creation time, without registering it
+    public static Party restore(String id, long creationTimestamp, GroupifyUser host) {
+        registeredIds.add(id);
+        return new Party(host, id, creationTimestamp);
+    }
+
     // adds a user to this party
-    public void addUser(GroupifyUser user) {
+    public synchronized void addUser(GroupifyUser user) {
         this.users.add(user);
+        this.version++;
     }
 
     // removes a user from this party
-    public void removeUser(GroupifyUser user) {
-        this.users.remove(user);
+    // returns whether they were in it
+    public synchronized boolean removeUser(GroupifyUser user) {
+        if (this.users.remove(user)) {
+            this.version++;
+            return true;
+        }
+        return false;
     }
 
     // returns the host of this Party
@@ -92,7 +113,7 @@ public class Party {
     }
 
     // returns a copy of the List of Users in this party
-    public List<GroupifyUser> getUsers() {
+    public synchronized List<GroupifyUser> getUsers() {
         return new LinkedList<>(this.users);
     }
 
@@ -111,14 +132,35 @@ public class Party {
         return this.creationTimestamp;
     }
 
+    // returns the version of this party, which goes up every time its users change
+    public long getVersion() {
+        return this.version;
+    }
+
+    // returns an immutable snapshot of this party as it is now
+    // the same snapshot is returned until the party changes, so polling an unchanged party costs nothing
+    public PartySnapshot getSnapshot() {
+        PartySnapshot current = this.snapshot;
+        if (current != null && current.getVersion() == this.version) {
+            return current;
+        }
+        synchronized (this) {
+            if (this.snapshot == null || this.snapshot.getVersion() != this.version) {
+                this.snapshot = new PartySnapshot(this);
+            }
+            return this.snapshot;
+        }
+    }
+
     // unregisters this party, removing its id from the registry and removing all users
     // should be called whenever a Party is done
-    public void close() {
+    public synchronized void close() {
         // unregister the id of this party to free up for future parties
         unregisterId(this.id);
 
         // empty users
         this.users.clear();
+        this.version++;
     }
 
 }
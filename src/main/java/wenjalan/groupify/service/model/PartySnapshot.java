@@ -0,0 +1,68 @@
+package wenjalan.groupify.service.model;
+
+import wenjalan.groupify.service.model.webmodel.PartyWebModel;
+
+// an immutable view of a Party at one version, with its JSON already serialized
+// built by Party.getSnapshot() and shared by every request for that version
+public class PartySnapshot {
+
+    // the version of the party this is a snapshot of
+    private final long version;
+
+    // the entity tag identifying this snapshot
+    private final String etag;
+
+    // the party as a web model
+    private final PartyWebModel model;
+
+    // the model serialized as UTF-8 JSON
+    private final byte[] json;
+
+    // constructor, should be called while holding the party's lock so users and version agree
+    PartySnapshot(Party party) {
+        this.version = party.getVersion();
+        // party ids get reused once a party closes, so the creation time keeps tags from colliding
+        this.etag = "\"" + party.getId() + "-" + party.getCreationTimestamp() + "-" + version + "\"";
+        this.model = new PartyWebModel(party);
+        this.json = model.toJsonBytes();
+    }
+
+    // returns the version of the party this is a snapshot of
+    public long getVersion() {
+        return this.version;
+    }
+
+    // returns the entity tag of this snapshot, quoted as it goes in an ETag header
+    public String getEtag() {
+        return this.etag;
+    }
+
+    // returns the party as a web model
+    public PartyWebModel getModel() {
+        return this.model;
+    }
+
+    // returns the serialized JSON of this snapshot
+    // the array is shared, callers must not modify it
+    public byte[] getJson() {
+        return this.json;
+    }
+
+    // returns whether an If-None-Match header value matches this snapshot
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,167 @@
+package wenjalan.groupify.service.model;
+
+import wenjalan.groupify.service.events.GroupifyEvents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// the time and candidate counts of each stage of one playlist generation, in the order they finished
+// each stage is also emitted as a JFR event, see GroupifyEvents
+public class StageTimings {
+
+    // outcomes a stage can end with
+    public static final String OK = "ok";
+    public static final String SKIPPED = "skipped";
+    public static final String TIMED_OUT = "timed out";
+    public static final String UNFINISHED = "unfinished";
+    public static final String FAILED = "failed";
+
+    // a finished stage
+    public static class Stage {
+
+        // the name of the stage
+        private final String name;
+
+        // when the stage started, in millis since the generation started
+        private final long offsetMillis;
+
+        // how long the stage took, in millis
+        private final long millis;
+
+        // how many tracks, artists or ids the stage came out with, -1 if it doesn't apply
+        private final int candidates;
+
+        // how the stage ended
+        private final String outcome;
+
+        // constructor
+        private Stage(String name, long offsetMillis, long millis, int candidates, String outcome) {
+            this.name = name;
+            this.offsetMillis = offsetMillis;
+            this.millis = millis;
+            this.candidates = candidates;
+            this.outcome = outcome;
+        }
+
+        // name
+        public String getName() {
+            return this.name;
+        }
+
+        // offsetMillis
+        public long getOffsetMillis() {
+            return this.offsetMillis;
+        }
+
+        // millis
+        public long getMillis() {
+            return this.millis;
+        }
+
+        // candidates
+        public int getCandidates() {
+            return this.candidates;
+        }
+
+        // outcome
+        public String getOutcome() {
+            return this.outcome;
+        }
+
+    }
+
+    // a stage that has started but not finished
+    public class Running {
+
+        // the name of the stage
+        private final String name;
+
+        // the System.nanoTime() the stage started at
+        private final long start = System.nanoTime();
+
+        // the JFR event of the stage
+        private final GroupifyEvents.Span span = GroupifyEvents.beginStage();
+
+        // constructor
+        private Running(String name) {
+            this.name = name;
+        }
+
+        // finishes the stage successfully
+        public void done(int candidates) {
+            done(candidates, OK);
+        }
+
+        // finishes the stage
+        public void done(int candidates, String outcome) {
+            finish(this, candidates, outcome);
+        }
+
+    }
+
+    // the id of the party the playlist is generated for, null if unknown
+    private final String partyId;
+
+    // the System.nanoTime() the generation started at
+    private final long start = System.nanoTime();
+
+    // the finished stages, guarded by this
+    private final List<Stage> stages = new ArrayList<>();
+
+    // the stages still running, guarded by this
+    private final List<Running> open = new ArrayList<>();
+
+    // constructor
+    // partyId: the party the playlist is generated for, null if unknown
+    public StageTimings(String partyId) {
+        this.partyId = partyId;
+    }
+
+    // constructor, for a generation not tied to a party
+    public StageTimings() {
+        this(null);
+    }
+
+    // starts timing a stage
+    public synchronized Running begin(String name) {
+        Running stage = new Running(name);
+        open.add(stage);
+        return stage;
+    }
+
+    // records a stage that never ran
+    public void skipped(String name) {
+        begin(name).done(-1, SKIPPED);
+    }
+
+    // finishes every stage still running, e.g. when the generation is abandoned part way through
+    public synchronized void finishOpen(String outcome) {
+        for (Running stage : new ArrayList<>(open)) {
+            finish(stage, -1, outcome);
+        }
+    }
+
+    // returns the finished stages, in the order they finished
+    public synchronized List<Stage> getStages() {
+        return Collections.unmodifiableList(new ArrayList<>(stages));
+    }
+
+    // returns the millis since the generation started
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    // moves a running stage to the finished ones, unless it's already been finished
+    private synchronized void finish(Running stage, int candidates, String outcome) {
+        if (!open.remove(stage)) {
+            return;
+        }
+        long now = System.nanoTime();
+        GroupifyEvents.stageFinished(stage.span, partyId, stage.name, candidates, outcome);
+        stages.add(new Stage(stage.name, TimeUnit.NANOSECONDS.toMillis(stage.start - start),
+                TimeUnit.NANOSECONDS.toMillis(now - stage.start), candidates, outcome));
+    }
+
+}
@@ -0,0 +1,18 @@
+package wenjalan.groupify.service.model.webmodel;
+
+import wenjalan.groupify.service.AdmissionRejectedException;
+
+// represents a request turned away by admission control, meant to be converted to JSON
+public class AdmissionRejectedResponseModel extends WebModel {
+
+    // fields
+    public final String message;
+    public final long retryAfter;
+
+    // constructor: given the rejection
+    public AdmissionRejectedResponseModel(AdmissionRejectedException e) {
+        this.message = e.getMessage();
+        this.retryAfter = e.getRetryAfter();
+    }
+
+}
@@ -0,0 +1,32 @@
+package wenjalan.groupify.service.model.webmodel;
+
+import wenjalan.groupify.service.util.CatalogCache;
+
+// represents the statistics of a catalog cache, meant to be converted to JSON
+public class CatalogCacheWebModel extends WebModel {
+
+    // fields
+    public final String name;
+    public final int size;
+    public final int capacity;
+    public final long hits;
+    public final long misses;
+    public final double hitRate;
+    public final long evictions;
+    public final long expirations;
+    public final long estimatedBytes;
+
+    // constructor: given a CatalogCache
+    public CatalogCacheWebModel(CatalogCache<?> cache) {
+        this.name = cache.getName();
+        this.size = cache.size();
+        this.capacity = cache.getCapacity();
+        this.hits = cache.getHits();
+        this.misses = cache.getMisses();
+        this.hitRate = cache.getHitRate();
+        this.evictions = cache.getEvictions();
+        this.expirations = cache.getExpirations();
+        this.estimatedBytes = cache.getEstimatedBytes();
+    }
+
+}
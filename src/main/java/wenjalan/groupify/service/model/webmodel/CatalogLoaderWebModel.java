@@ -0,0 +1,24 @@
+package wenjalan.groupify.service.model.webmodel;
+
+import wenjalan.groupify.service.util.CatalogLoader;
+
+// represents the statistics of a catalog loader, meant to be converted to JSON
+public class CatalogLoaderWebModel extends WebModel {
+
+    // fields
+    public final String name;
+    public final long requested;
+    public final long batches;
+    public final double averageBatchSize;
+    public final int queued;
+
+    // constructor: given a CatalogLoader
+    public CatalogLoaderWebModel(CatalogLoader<?> loader) {
+        this.name = loader.getName();
+        this.requested = loader.getRequested();
+        this.batches = loader.getBatches();
+        this.averageBatchSize = loader.getAverageBatchSize();
+        this.queued = loader.getQueued();
+    }
+
+}
@@ -0,0 +1,26 @@
+package wenjalan.groupify.service.model.webmodel;
+
+import wenjalan.groupify.service.spotify.CircuitBreaker;
+
+// represents the state of a Spotify endpoint's circuit breaker, meant to be converted to JSON
+public class CircuitBreakerWebModel extends WebModel {
+
+    // fields
+    public final String endpoint;
+    public final String state;
+    public final int consecutiveFailures;
+    public final int inFlight;
+    public final long rejected;
+    public final long opened;
+
+    // constructor: given a CircuitBreaker
+    public CircuitBreakerWebModel(CircuitBreaker breaker) {
+        this.endpoint = breaker.getEndpoint();
+        this.state = breaker.getState().name();
+        this.consecutiveFailures = breaker.getConsecutiveFailures();
+        this.inFlight = breaker.getInFlight();
+        this.rejected = breaker.getRejected();
+        this.opened = breaker.getOpened();
+    }
+
+}
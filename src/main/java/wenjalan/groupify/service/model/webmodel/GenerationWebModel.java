@@ -0,0 +1,26 @@
+package wenjalan.groupify.service.model.webmodel;
+
+import wenjalan.groupify.service.model.GenerationReport;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+// represents a past playlist generation and where its time went, meant to be converted to JSON
+// leaves out the party id and playlist url, a party id being all /api/add, /api/make and /api/remove ask for
+public class GenerationWebModel extends WebModel {
+
+    // fields
+    public final long startedAt;
+    public final long totalMillis;
+    public final List<String> skippedStages;
+    public final List<StageTimingWebModel> stages;
+
+    // constructor: given a GenerationReport
+    public GenerationWebModel(GenerationReport report) {
+        this.startedAt = report.getStartedAt();
+        this.totalMillis = report.getTotalMillis();
+        this.skippedStages = report.getSkippedStages();
+        this.stages = report.getTimings().getStages().stream().map(StageTimingWebModel::new).collect(Collectors.toList());
+    }
+
+}
@@ -2,7 +2,10 @@ package wenjalan.groupify.service.model.webmodel;
 
 public class PartyRemoveResponseModel extends WebModel {
 
-    String message;
+    // the response to every successful removal, serialized once
+    public static final PartyRemoveResponseModel SUCCESS = new PartyRemoveResponseModel("success");
+
+    public final String message;
 
     public PartyRemoveResponseModel(String message) {
         this.message = message;
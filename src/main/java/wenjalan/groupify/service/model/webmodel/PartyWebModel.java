@@ -13,6 +13,7 @@ public class PartyWebModel extends WebModel {
     public final String host;
     public final List<String> users;
     public final long creationTimestamp;
+    public final long version;
 
     // constructor: given a Party
     public PartyWebModel(Party p) {
@@ -20,6 +21,7 @@ public class PartyWebModel extends WebModel {
         this.host = p.getHost().getDisplayName();
         this.users = p.getUsers().stream().map((user) -> user.getDisplayName()).collect(Collectors.toList());
         this.creationTimestamp = p.getCreationTimestamp();
+        this.version = p.getVersion();
     }
 
 }
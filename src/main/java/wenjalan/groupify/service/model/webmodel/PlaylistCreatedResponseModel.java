@@ -1,14 +1,31 @@
 package wenjalan.groupify.service.model.webmodel;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import wenjalan.groupify.service.model.GenerationReport;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
 // represents the response sent when a playlist is created successfully
 public class PlaylistCreatedResponseModel extends WebModel {
 
     // fields
     public final String playlistUrl;
+    public final List<String> skippedStages;
+
+    // only sent when asked for
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public final Long totalMillis;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public final List<StageTimingWebModel> stages;
 
-    // constructor: with playlist object
-    public PlaylistCreatedResponseModel(String playlistUrl) {
-        this.playlistUrl = playlistUrl;
+    // constructor: with the report of the generation
+    // withTimings: whether to include how long each stage took
+    public PlaylistCreatedResponseModel(GenerationReport report, boolean withTimings) {
+        this.playlistUrl = report.getPlaylistUrl();
+        this.skippedStages = report.getSkippedStages();
+        this.totalMillis = withTimings ? report.getTotalMillis() : null;
+        this.stages = withTimings ? report.getTimings().getStages().stream().map(StageTimingWebModel::new).collect(Collectors.toList()) : null;
     }
 
 }
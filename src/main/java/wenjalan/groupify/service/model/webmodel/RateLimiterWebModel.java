@@ -0,0 +1,29 @@
+package wenjalan.groupify.service.model.webmodel;
+
+import wenjalan.groupify.service.spotify.Priority;
+import wenjalan.groupify.service.spotify.RateLimiter;
+
+// represents the state of a client id's Spotify rate limiter, meant to be converted to JSON
+public class RateLimiterWebModel extends WebModel {
+
+    // fields
+    public final String clientId;
+    public final double permitsPerSecond;
+    public final int availableTokens;
+    public final long pausedMillis;
+    public final int queueDepth;
+    public final int hostQueueDepth;
+    public final int guestQueueDepth;
+
+    // constructor: given a RateLimiter
+    public RateLimiterWebModel(RateLimiter limiter) {
+        this.clientId = limiter.getClientId();
+        this.permitsPerSecond = limiter.getPermitsPerSecond();
+        this.availableTokens = limiter.getAvailableTokens();
+        this.pausedMillis = limiter.getPausedMillis();
+        this.queueDepth = limiter.getQueueDepth();
+        this.hostQueueDepth = limiter.getQueueDepth(Priority.HOST);
+        this.guestQueueDepth = limiter.getQueueDepth(Priority.GUEST);
+    }
+
+}
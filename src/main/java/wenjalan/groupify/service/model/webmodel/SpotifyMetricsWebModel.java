@@ -0,0 +1,46 @@
+package wenjalan.groupify.service.model.webmodel;
+
+import wenjalan.groupify.service.spotify.SpotifyMetrics;
+import wenjalan.groupify.service.util.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// represents the calls made to one Spotify endpoint by one caller, meant to be converted to JSON
+public class SpotifyMetricsWebModel extends WebModel {
+
+    // fields
+    public final String endpoint;
+    public final String caller;
+    public final long count;
+    public final Map<String, Long> errors;
+    public final double meanMillis;
+    public final long p50Millis;
+    public final long p95Millis;
+    public final long p99Millis;
+    public final long maxMillis;
+    public final Map<String, Long> latencyBuckets;
+
+    // constructor: given the metrics of an endpoint and caller
+    public SpotifyMetricsWebModel(SpotifyMetrics metrics) {
+        LatencyHistogram latency = metrics.getLatency();
+        this.endpoint = metrics.getEndpoint();
+        this.caller = metrics.getCaller();
+        this.count = metrics.getCount();
+        this.errors = metrics.getErrors();
+        this.meanMillis = latency.getMean();
+        this.p50Millis = latency.getQuantile(0.5);
+        this.p95Millis = latency.getQuantile(0.95);
+        this.p99Millis = latency.getQuantile(0.99);
+        this.maxMillis = latency.getMax();
+
+        // counts per bucket, keyed by the bucket's upper bound in millis
+        long[] counts = latency.getBuckets();
+        this.latencyBuckets = new LinkedHashMap<>();
+        for (int i = 0; i < LatencyHistogram.BOUNDS.length; i++) {
+            latencyBuckets.put(String.valueOf(LatencyHistogram.BOUNDS[i]), counts[i]);
+        }
+        latencyBuckets.put("+Inf", counts[counts.length - 1]);
+    }
+
+}
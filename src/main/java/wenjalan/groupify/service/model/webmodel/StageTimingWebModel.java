@@ -0,0 +1,24 @@
+package wenjalan.groupify.service.model.webmodel;
+
+import wenjalan.groupify.service.model.StageTimings;
+
+// represents one timed stage of a playlist generation, meant to be converted to JSON
+public class StageTimingWebModel extends WebModel {
+
+    // fields
+    public final String name;
+    public final long offsetMillis;
+    public final long millis;
+    public final int candidates;
+    public final String outcome;
+
+    // constructor: given a finished stage
+    public StageTimingWebModel(StageTimings.Stage stage) {
+        this.name = stage.getName();
+        this.offsetMillis = stage.getOffsetMillis();
+        this.millis = stage.getMillis();
+        this.candidates = stage.getCandidates();
+        this.outcome = stage.getOutcome();
+    }
+
+}
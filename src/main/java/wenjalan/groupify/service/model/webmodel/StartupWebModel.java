@@ -0,0 +1,24 @@
+package wenjalan.groupify.service.model.webmodel;
+
+import wenjalan.groupify.service.StartupMetrics;
+
+// represents how long this node took to start, meant to be converted to JSON
+public class StartupWebModel extends WebModel {
+
+    // fields
+    public final long jvmStartTime;
+    public final long readyMillis;
+    public final long firstRequestMillis;
+    public final boolean fastStart;
+    public final boolean sharingClasses;
+
+    // constructor: from the StartupMetrics as they are now
+    public StartupWebModel() {
+        this.jvmStartTime = StartupMetrics.getJvmStartTime();
+        this.readyMillis = StartupMetrics.getReadyMillis();
+        this.firstRequestMillis = StartupMetrics.getFirstRequestMillis();
+        this.fastStart = StartupMetrics.isFastStart();
+        this.sharingClasses = StartupMetrics.isSharingClasses();
+    }
+
+}
@@ -1,14 +1,44 @@
 package wenjalan.groupify.service.model.webmodel;
 
-import com.google.gson.Gson;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 // represents an object meant to be represented by JSON, for communication in HTML
+// models are immutable, so each one is serialized at most once and the bytes are reused
 public class WebModel {
 
+    // the mapper every model is serialized with
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // the writer of each model class, with its serializer resolved up front
+    private static final Map<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
+    // the serialized form of this model, once it's been asked for
+    private transient volatile byte[] json = null;
+
     // returns the JSON representation of this object
     public String toJson() {
-        Gson gson = new Gson();
-        return gson.toJson(this);
+        return new String(toJsonBytes(), StandardCharsets.UTF_8);
+    }
+
+    // returns the JSON representation of this object as UTF-8 bytes
+    // the array is shared, callers must not modify it
+    public byte[] toJsonBytes() {
+        byte[] bytes = this.json;
+        if (bytes == null) {
+            try {
+                bytes = WRITERS.computeIfAbsent(getClass(), MAPPER::writerFor).writeValueAsBytes(this);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("can't serialize " + getClass().getSimpleName(), e);
+            }
+            this.json = bytes;
+        }
+        return bytes;
     }
 
 }
@@ -0,0 +1,60 @@
+package wenjalan.groupify.service.spotify;
+
+import com.wrapper.spotify.IHttpManager;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+
+import java.io.IOException;
+import java.net.URI;
+
+// an IHttpManager that holds a place in its endpoint's bulkhead for as long as each call is on the wire
+// it sits behind the rate limiter, so a burst waiting for tokens doesn't fill the bulkhead and get turned away by it,
+// and a full bulkhead only ever means that many calls are waiting on Spotify itself
+public class BulkheadHttpManager implements IHttpManager {
+
+    // the manager that actually sends the calls
+    private final IHttpManager delegate;
+
+    // constructor
+    public BulkheadHttpManager(IHttpManager delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException {
+        return send(SpotifyEndpoint.of("GET", uri), () -> delegate.get(uri, headers));
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return send(SpotifyEndpoint.of("POST", uri), () -> delegate.post(uri, headers, body));
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return send(SpotifyEndpoint.of("PUT", uri), () -> delegate.put(uri, headers, body));
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return send(SpotifyEndpoint.of("DELETE", uri), () -> delegate.delete(uri, headers, body));
+    }
+
+    // makes a call holding a place in its endpoint's bulkhead
+    private String send(String endpoint, Call call) throws IOException, SpotifyWebApiException {
+        CircuitBreaker breaker = CircuitBreaker.forEndpoint(endpoint);
+        breaker.acquirePermit();
+        try {
+            return call.execute();
+        } finally {
+            breaker.releasePermit();
+        }
+    }
+
+    // a single call to the delegate
+    private interface Call {
+        String execute() throws IOException, SpotifyWebApiException;
+    }
+
+}
@@ -0,0 +1,234 @@
+package wenjalan.groupify.service.spotify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+// guards a single Spotify endpoint with a circuit breaker and a bulkhead
+// after enough failures in a row the circuit opens and calls fail fast until a trial call succeeds,
+// and no more than a fixed number of calls may be waiting on the endpoint at once
+// the circuit is checked before a call waits for the rate limiter, the bulkhead only once it's about to be sent,
+// so calls queued on our own limiter don't fill the bulkhead, see BulkheadHttpManager
+public class CircuitBreaker {
+
+    // the states a circuit can be in
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    // the default number of failures in a row that opens a circuit
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    // the default time a circuit stays open before a trial call, in millis
+    public static final long DEFAULT_OPEN_TIME = 30000;
+
+    // the default number of calls allowed on one endpoint at once
+    public static final int DEFAULT_MAX_CONCURRENT = 16;
+
+    // the breakers of each endpoint
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    // the settings new breakers are created with
+    private static volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private static volatile long openTime = DEFAULT_OPEN_TIME;
+    private static volatile int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+
+    // the endpoint this breaker guards
+    private final String endpoint;
+
+    // the failures in a row that open this circuit
+    private volatile int threshold;
+
+    // the time this circuit stays open, in millis
+    private volatile long openMillis;
+
+    // the bulkhead
+    private final Bulkhead permits;
+
+    // the most calls allowed at once
+    private volatile int concurrency;
+
+    // the current state, guarded by this
+    private State state = State.CLOSED;
+
+    // the failures in a row, guarded by this
+    private int consecutiveFailures = 0;
+
+    // when the circuit was last opened, guarded by this
+    private long openedAt = 0;
+
+    // whether a trial call is running while half open, guarded by this
+    private boolean trialInFlight = false;
+
+    // statistics, guarded by this
+    private long rejected = 0;
+    private long opened = 0;
+
+    // constructor
+    private CircuitBreaker(String endpoint, int threshold, long openMillis, int concurrency) {
+        this.endpoint = endpoint;
+        this.threshold = threshold;
+        this.openMillis = openMillis;
+        this.concurrency = concurrency;
+        this.permits = new Bulkhead(concurrency);
+    }
+
+    // a semaphore that can be resized while permits are held
+    private static class Bulkhead extends Semaphore {
+
+        // serialVersionUID
+        private static final long serialVersionUID = 1L;
+
+        // constructor
+        Bulkhead(int permits) {
+            super(permits);
+        }
+
+        // adds or takes away permits, a shrunk bulkhead runs down as the calls over its new size finish
+        void resize(int from, int to) {
+            if (to > from) {
+                release(to - from);
+            }
+            else if (to < from) {
+                reducePermits(from - to);
+            }
+        }
+
+    }
+
+    // sets the settings of every breaker, the ones already created included
+    public static void configure(int failures, long openMillis, int concurrent) {
+        if (failures < 1 || openMillis < 0 || concurrent < 1) {
+            throw new IllegalArgumentException("invalid circuit breaker settings");
+        }
+        failureThreshold = failures;
+        openTime = openMillis;
+        maxConcurrent = concurrent;
+        for (CircuitBreaker breaker : BREAKERS.values()) {
+            breaker.setLimits(failures, openMillis, concurrent);
+        }
+    }
+
+    // changes this breaker's settings, leaving its state as it is
+    private synchronized void setLimits(int threshold, long openMillis, int concurrency) {
+        this.threshold = threshold;
+        this.openMillis = openMillis;
+        permits.resize(this.concurrency, concurrency);
+        this.concurrency = concurrency;
+    }
+
+    // returns the number of calls allowed on one endpoint at once
+    public static int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    // returns the breaker of an endpoint
+    public static CircuitBreaker forEndpoint(String endpoint) {
+        return BREAKERS.computeIfAbsent(endpoint, (e) -> new CircuitBreaker(e, failureThreshold, openTime, maxConcurrent));
+    }
+
+    // returns whether an endpoint's circuit is open, without creating a breaker for it
+    public static boolean isOpen(String endpoint) {
+        CircuitBreaker breaker = BREAKERS.get(endpoint);
+        return breaker != null && breaker.getState() == State.OPEN;
+    }
+
+    // returns every breaker created so far
+    public static List<CircuitBreaker> all() {
+        return new ArrayList<>(BREAKERS.values());
+    }
+
+    // reserves a call on this endpoint, failing fast if the circuit is open
+    // every successful acquire() must be followed by onSuccess(), onFailure() or onIgnored()
+    public synchronized void acquire() throws EndpointUnavailableException {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.OPEN || (state == State.HALF_OPEN && trialInFlight)) {
+            rejected++;
+            throw new EndpointUnavailableException(endpoint, "circuit open");
+        }
+        if (state == State.HALF_OPEN) {
+            trialInFlight = true;
+        }
+    }
+
+    // takes a place in the bulkhead for a call about to be sent, failing fast if it's full
+    // every successful acquirePermit() must be followed by releasePermit()
+    public void acquirePermit() throws EndpointUnavailableException {
+        if (!permits.tryAcquire()) {
+            synchronized (this) {
+                rejected++;
+            }
+            throw new EndpointUnavailableException(endpoint, "too many calls in progress");
+        }
+    }
+
+    // gives back a place taken with acquirePermit()
+    public void releasePermit() {
+        permits.release();
+    }
+
+    // records a call that succeeded, closing the circuit
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    // records a call that failed, opening the circuit if it failed too many times in a row
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= threshold) {
+            if (state != State.OPEN) {
+                opened++;
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+        trialInFlight = false;
+    }
+
+    // records a call whose outcome says nothing about the endpoint, such as a cancelled one
+    public synchronized void onIgnored() {
+        trialInFlight = false;
+    }
+
+    // returns the current state
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    // endpoint
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+    // returns the number of calls in progress
+    public int getInFlight() {
+        return concurrency - permits.availablePermits();
+    }
+
+    // returns the failures in a row
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    // returns the number of calls rejected
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    // returns the number of times this circuit has opened
+    public synchronized long getOpened() {
+        return opened;
+    }
+
+}
@@ -0,0 +1,120 @@
+package wenjalan.groupify.service.spotify;
+
+import com.wrapper.spotify.IHttpManager;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import wenjalan.groupify.service.util.SingleFlight;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Arrays;
+
+// an IHttpManager that coalesces identical concurrent GETs into a single call to Spotify
+// writes are never coalesced
+public class CoalescingHttpManager implements IHttpManager {
+
+    // the path prefixes of catalog endpoints, whose responses don't depend on who's asking
+    private static final String[] CATALOG_PATHS = {
+            "/v1/tracks",
+            "/v1/artists",
+            "/v1/albums",
+            "/v1/recommendations",
+            "/v1/audio-features",
+    };
+
+    // the GETs in flight, shared by every client
+    private static final SingleFlight<String, String> IN_FLIGHT = new SingleFlight<>();
+
+    // the manager that actually sends the calls
+    private final IHttpManager delegate;
+
+    // constructor
+    public CoalescingHttpManager(IHttpManager delegate) {
+        this.delegate = delegate;
+    }
+
+    // returns the shared in-flight table, for its statistics
+    public static SingleFlight<String, String> getInFlight() {
+        return IN_FLIGHT;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException {
+        String key = key(uri, headers);
+        for (;;) {
+            try {
+                return IN_FLIGHT.execute(key, () -> delegate.get(uri, headers));
+            } catch (InterruptedIOException e) {
+                // the caller we attached to was cancelled, make the call ourselves unless we were too
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+            } catch (IOException | SpotifyWebApiException | RuntimeException e) {
+                throw e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting on a coalesced Spotify call");
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return delegate.post(uri, headers, body);
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return delegate.put(uri, headers, body);
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return delegate.delete(uri, headers, body);
+    }
+
+    // returns the key identical GETs share
+    // query parameters are sorted so their order doesn't matter, but values such as id lists are kept as is,
+    // since Spotify answers in the order they were asked for
+    // anything outside the catalog is per-user, so the caller's token is part of the key
+    static String key(URI uri, Header[] headers) {
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        StringBuilder key = new StringBuilder(uri.getHost()).append(path);
+        if (uri.getRawQuery() != null) {
+            String[] params = uri.getRawQuery().split("&");
+            Arrays.sort(params);
+            key.append('?').append(String.join("&", params));
+        }
+        if (!isCatalog(path)) {
+            key.append('#').append(authorization(headers));
+        }
+        return key.toString();
+    }
+
+    // returns whether a path belongs to a catalog endpoint
+    private static boolean isCatalog(String path) {
+        for (String prefix : CATALOG_PATHS) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // returns the Authorization header's value, or an empty String if there is none
+    private static String authorization(Header[] headers) {
+        if (headers != null) {
+            for (Header h : headers) {
+                if (h.getName().equalsIgnoreCase("Authorization")) {
+                    return h.getValue();
+                }
+            }
+        }
+        return "";
+    }
+
+}
@@ -0,0 +1,26 @@
+package wenjalan.groupify.service.spotify;
+
+import java.io.IOException;
+
+// thrown instead of calling a Spotify endpoint whose circuit is open or whose bulkhead is full
+// it's an IOException so existing handling of failed Spotify calls covers it
+public class EndpointUnavailableException extends IOException {
+
+    // serialVersionUID
+    private static final long serialVersionUID = 1L;
+
+    // the endpoint that was unavailable
+    private final String endpoint;
+
+    // constructor
+    public EndpointUnavailableException(String endpoint, String message) {
+        super(endpoint + ": " + message);
+        this.endpoint = endpoint;
+    }
+
+    // endpoint
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+}
@@ -0,0 +1,82 @@
+package wenjalan.groupify.service.spotify;
+
+import com.wrapper.spotify.IHttpManager;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.exceptions.detailed.BadGatewayException;
+import com.wrapper.spotify.exceptions.detailed.InternalServerErrorException;
+import com.wrapper.spotify.exceptions.detailed.ServiceUnavailableException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+
+// an IHttpManager that sends each call through the CircuitBreaker of its endpoint
+// only failures that say the endpoint itself is in trouble count against it, not client errors like 401 or 404
+// nor a full bulkhead, which BulkheadHttpManager reports from further down once the call is about to be sent
+public class GuardedHttpManager implements IHttpManager {
+
+    // the manager that actually sends the calls
+    private final IHttpManager delegate;
+
+    // constructor
+    public GuardedHttpManager(IHttpManager delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException {
+        return send(SpotifyEndpoint.of("GET", uri), () -> delegate.get(uri, headers));
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return send(SpotifyEndpoint.of("POST", uri), () -> delegate.post(uri, headers, body));
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return send(SpotifyEndpoint.of("PUT", uri), () -> delegate.put(uri, headers, body));
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return send(SpotifyEndpoint.of("DELETE", uri), () -> delegate.delete(uri, headers, body));
+    }
+
+    // makes a call through its endpoint's breaker
+    private String send(String endpoint, Call call) throws IOException, SpotifyWebApiException {
+        CircuitBreaker breaker = CircuitBreaker.forEndpoint(endpoint);
+        breaker.acquire();
+        try {
+            String response = call.execute();
+            breaker.onSuccess();
+            return response;
+        } catch (InternalServerErrorException | BadGatewayException | ServiceUnavailableException | TooManyRequestsException e) {
+            breaker.onFailure();
+            throw e;
+        } catch (IOException e) {
+            // a cancelled caller or a full bulkhead says nothing about the endpoint, but a timeout does
+            if (e instanceof EndpointUnavailableException
+                    || (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException))) {
+                breaker.onIgnored();
+            }
+            else {
+                breaker.onFailure();
+            }
+            throw e;
+        } catch (SpotifyWebApiException | RuntimeException e) {
+            breaker.onSuccess();
+            throw e;
+        }
+    }
+
+    // a single call to the delegate
+    private interface Call {
+        String execute() throws IOException, SpotifyWebApiException;
+    }
+
+}
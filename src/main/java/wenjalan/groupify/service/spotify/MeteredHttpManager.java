@@ -0,0 +1,63 @@
+package wenjalan.groupify.service.spotify;
+
+import com.wrapper.spotify.IHttpManager;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import wenjalan.groupify.service.util.CallerContext;
+
+import java.io.IOException;
+import java.net.URI;
+
+// an IHttpManager that records every call in SpotifyMetrics, tagged with its endpoint and the current CallerContext
+// sits outermost, so latency is what the caller waited, queueing on limiters and breakers included
+public class MeteredHttpManager implements IHttpManager {
+
+    // the manager that actually sends the calls
+    private final IHttpManager delegate;
+
+    // constructor
+    public MeteredHttpManager(IHttpManager delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException {
+        return measure(SpotifyEndpoint.of("GET", uri), () -> delegate.get(uri, headers));
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return measure(SpotifyEndpoint.of("POST", uri), () -> delegate.post(uri, headers, body));
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return measure(SpotifyEndpoint.of("PUT", uri), () -> delegate.put(uri, headers, body));
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return measure(SpotifyEndpoint.of("DELETE", uri), () -> delegate.delete(uri, headers, body));
+    }
+
+    // makes a call and records how it went
+    private String measure(String endpoint, Call call) throws IOException, SpotifyWebApiException {
+        long start = System.nanoTime();
+        Throwable error = null;
+        try {
+            return call.execute();
+        } catch (IOException | SpotifyWebApiException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            SpotifyMetrics.record(endpoint, CallerContext.current(), (System.nanoTime() - start) / 1_000_000, error);
+        }
+    }
+
+    // a single call to the delegate
+    private interface Call {
+        String execute() throws IOException, SpotifyWebApiException;
+    }
+
+}
@@ -0,0 +1,152 @@
+package wenjalan.groupify.service.spotify;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.wrapper.spotify.IHttpManager;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+// an IHttpManager that sends Spotify calls over a shared, pooled OkHttpClient
+// keeping connections alive between calls means TLS handshakes are paid once per connection, not once per call
+public class OkHttpManager implements IHttpManager {
+
+    // the client all calls are sent with
+    private final OkHttpClient client;
+
+    // constructor
+    public OkHttpManager(OkHttpClient client) {
+        this.client = client;
+    }
+
+    // returns a client tuned for talking to Spotify
+    // maxIdleConnections: the number of idle connections kept in the pool
+    // keepAliveSeconds: how long an idle connection is kept
+    // connectTimeout: the timeout for opening a connection, in millis
+    // readTimeout: the timeout for reading and writing on a connection, in millis
+    // http2: whether to negotiate HTTP/2, sharing one connection between concurrent calls
+    public static OkHttpClient createClient(int maxIdleConnections, long keepAliveSeconds, long connectTimeout, long readTimeout, boolean http2) {
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                .writeTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                .protocols(http2 ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1) : Collections.singletonList(Protocol.HTTP_1_1))
+                .build();
+    }
+
+    // returns the client calls are sent with
+    public OkHttpClient getClient() {
+        return this.client;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException {
+        return execute(request(uri, headers).get().build());
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return execute(request(uri, headers).post(toRequestBody(body)).build());
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return execute(request(uri, headers).put(toRequestBody(body)).build());
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return execute(request(uri, headers).delete(toRequestBody(body)).build());
+    }
+
+    // returns a request builder for a uri with the given headers
+    private static Request.Builder request(URI uri, Header[] headers) {
+        Request.Builder builder = new Request.Builder().url(uri.toString());
+        if (headers != null) {
+            for (Header h : headers) {
+                builder.addHeader(h.getName(), h.getValue());
+            }
+        }
+        return builder;
+    }
+
+    // converts an Apache HttpEntity to an OkHttp RequestBody
+    private static RequestBody toRequestBody(HttpEntity entity) throws IOException {
+        if (entity == null) {
+            return RequestBody.create(new byte[0], null);
+        }
+        MediaType type = entity.getContentType() == null ? null : MediaType.parse(entity.getContentType().getValue());
+        return RequestBody.create(EntityUtils.toByteArray(entity), type);
+    }
+
+    // sends a request, returning the body or throwing the exception Spotify's own manager would
+    private String execute(Request request) throws IOException, SpotifyWebApiException {
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            String responseBody = body == null ? null : body.string();
+            int code = response.code();
+            if (code < 400) {
+                return responseBody;
+            }
+            String message = errorMessage(responseBody, response.message());
+            throw SpotifyErrors.toException(code, message, retryAfterSeconds(response.header("Retry-After")));
+        }
+    }
+
+    // returns a Retry-After header in seconds, -1 if there was none or it isn't a number of seconds
+    // an HTTP-date is read as none too, rather than letting a NumberFormatException skip the 429 handling
+    private static int retryAfterSeconds(String retryAfter) {
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(retryAfter.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // pulls Spotify's error message out of an error response, falling back to the reason phrase
+    private static String errorMessage(String responseBody, String reason) {
+        if (responseBody == null || responseBody.isEmpty()) {
+            return reason;
+        }
+        try {
+            JsonElement json = new JsonParser().parse(responseBody);
+            if (!json.isJsonObject()) {
+                return reason;
+            }
+            JsonObject object = json.getAsJsonObject();
+            if (object.has("error_description")) {
+                return object.get("error_description").getAsString();
+            }
+            if (object.has("error") && object.get("error").isJsonObject() && object.getAsJsonObject("error").has("message")) {
+                return object.getAsJsonObject("error").get("message").getAsString();
+            }
+            if (object.has("error") && object.get("error").isJsonPrimitive()) {
+                return object.get("error").getAsString();
+            }
+        } catch (RuntimeException e) {
+            // not json, use the reason
+        }
+        return reason;
+    }
+
+}
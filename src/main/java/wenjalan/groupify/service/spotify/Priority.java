@@ -0,0 +1,13 @@
+package wenjalan.groupify.service.spotify;
+
+// the priority an outbound Spotify call is given when it has to wait for the rate limiter
+// earlier constants are served first
+public enum Priority {
+
+    // calls made on behalf of a host, such as generating or purging playlists
+    HOST,
+
+    // calls made while ingesting a guest's taste
+    GUEST
+
+}
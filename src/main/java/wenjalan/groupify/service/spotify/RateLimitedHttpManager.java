@@ -0,0 +1,93 @@
+package wenjalan.groupify.service.spotify;
+
+import com.wrapper.spotify.IHttpManager;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.concurrent.ThreadLocalRandom;
+
+// an IHttpManager that sends every call through a RateLimiter, backing off and retrying when Spotify answers 429
+public class RateLimitedHttpManager implements IHttpManager {
+
+    // the number of times a call is retried after a 429 before giving up
+    public static final int MAX_RETRIES = 3;
+
+    // the backoff used when Spotify doesn't send a Retry-After, doubled on each retry
+    public static final long BASE_BACKOFF = 1000;
+
+    // the manager that actually sends the calls
+    private final IHttpManager delegate;
+
+    // the limiter every call waits on
+    private final RateLimiter limiter;
+
+    // the priority of the calls made through this manager
+    private final Priority priority;
+
+    // constructor
+    public RateLimitedHttpManager(IHttpManager delegate, RateLimiter limiter, Priority priority) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.priority = priority;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException {
+        return send(() -> delegate.get(uri, headers));
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return send(() -> delegate.post(uri, headers, body));
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return send(() -> delegate.put(uri, headers, body));
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return send(() -> delegate.delete(uri, headers, body));
+    }
+
+    // waits for the limiter, then makes the call, retrying on 429
+    private String send(Call call) throws IOException, SpotifyWebApiException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                limiter.acquire(priority);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for the Spotify rate limiter");
+            }
+
+            try {
+                return call.execute();
+            } catch (TooManyRequestsException e) {
+                // out of retries, let the caller handle it
+                if (attempt >= MAX_RETRIES) {
+                    throw e;
+                }
+                // pause everyone on this client id for as long as Spotify asked, or our own backoff if longer
+                long backoff = Math.max(e.getRetryAfter() * 1000L, BASE_BACKOFF << attempt);
+                limiter.pause(jitter(backoff));
+            }
+        }
+    }
+
+    // spreads a backoff by up to a quarter so waiting callers don't all come back at once
+    private static long jitter(long millis) {
+        return millis + ThreadLocalRandom.current().nextLong(millis / 4 + 1);
+    }
+
+    // a single call to the delegate
+    private interface Call {
+        String execute() throws IOException, SpotifyWebApiException;
+    }
+
+}
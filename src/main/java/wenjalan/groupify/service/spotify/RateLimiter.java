@@ -0,0 +1,230 @@
+package wenjalan.groupify.service.spotify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// a token bucket shared by every outbound Spotify call made with the same client id
+// waiting callers are served in Priority order, and Spotify's Retry-After pauses the whole bucket
+// waits use a lock rather than a monitor so virtual threads waiting here don't pin their carrier
+public class RateLimiter {
+
+    // the default number of calls allowed per second
+    public static final double DEFAULT_RATE = 10.0;
+
+    // the default number of calls that can be made in a burst
+    public static final int DEFAULT_BURST = 20;
+
+    // the limiters of each client id
+    private static final Map<String, RateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    // the rate new limiters are created with
+    private static volatile double rate = DEFAULT_RATE;
+
+    // the burst new limiters are created with
+    private static volatile int burst = DEFAULT_BURST;
+
+    // the client id this limiter belongs to
+    private final String clientId;
+
+    // calls allowed per second
+    private volatile double permitsPerSecond;
+
+    // the most tokens the bucket can hold
+    private volatile int maxTokens;
+
+    // the tokens currently in the bucket
+    private double tokens;
+
+    // the System.nanoTime() the bucket was last refilled at
+    private long lastRefill;
+
+    // the System.nanoTime() before which no calls may be made, set by Retry-After
+    private long pausedUntil;
+
+    // the number of callers waiting at each priority
+    private final int[] waiting = new int[Priority.values().length];
+
+    // guards the bucket
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // signalled whenever a waiting caller leaves
+    private final Condition changed = lock.newCondition();
+
+    // constructor
+    private RateLimiter(String clientId, double permitsPerSecond, int maxTokens) {
+        this.clientId = clientId;
+        this.permitsPerSecond = permitsPerSecond;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+        this.lastRefill = System.nanoTime();
+        this.pausedUntil = lastRefill;
+    }
+
+    // sets the rate and burst of every limiter, the ones already created included
+    public static void configure(double permitsPerSecond, int maxBurst) {
+        if (permitsPerSecond <= 0 || maxBurst < 1) {
+            throw new IllegalArgumentException("rate must be positive and burst at least 1");
+        }
+        rate = permitsPerSecond;
+        burst = maxBurst;
+        for (RateLimiter limiter : LIMITERS.values()) {
+            limiter.setLimits(permitsPerSecond, maxBurst);
+        }
+    }
+
+    // changes this limiter's rate and burst, keeping the tokens already earned up to the new burst
+    private void setLimits(double permitsPerSecond, int maxTokens) {
+        lock.lock();
+        try {
+            refill();
+            this.permitsPerSecond = permitsPerSecond;
+            this.maxTokens = maxTokens;
+            this.tokens = Math.min(tokens, maxTokens);
+            // waiters computed their sleep from the old rate
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // returns the limiter shared by all calls made with a client id
+    public static RateLimiter forClient(String clientId) {
+        return LIMITERS.computeIfAbsent(clientId, (id) -> new RateLimiter(id, rate, burst));
+    }
+
+    // returns every limiter created so far
+    public static List<RateLimiter> all() {
+        return new ArrayList<>(LIMITERS.values());
+    }
+
+    // blocks until a call may be made
+    // priority: the priority of the caller, higher priority callers waiting are served first
+    public void acquire(Priority priority) throws InterruptedException {
+        lock.lock();
+        waiting[priority.ordinal()]++;
+        try {
+            for (;;) {
+                refill();
+                long now = System.nanoTime();
+
+                // take a token if we're allowed to
+                if (now >= pausedUntil && !higherWaiting(priority) && tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+
+                // otherwise wait until the pause is over or another token is due
+                long wait;
+                if (now < pausedUntil) {
+                    wait = pausedUntil - now;
+                }
+                else if (tokens < 1) {
+                    wait = (long) ((1 - tokens) / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+                }
+                else {
+                    // a higher priority caller is about to take the token, it'll wake us when done
+                    wait = TimeUnit.MILLISECONDS.toNanos(50);
+                }
+                changed.awaitNanos(Math.max(wait, 1));
+            }
+        } finally {
+            waiting[priority.ordinal()]--;
+            changed.signalAll();
+            lock.unlock();
+        }
+    }
+
+    // stops all calls through this limiter for a while, as Spotify asked with Retry-After
+    public void pause(long millis) {
+        lock.lock();
+        try {
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            if (until - pausedUntil > 0) {
+                pausedUntil = until;
+            }
+            // an exhausted bucket keeps the burst after the pause from tripping Spotify again
+            tokens = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // returns the total number of callers waiting
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            int depth = 0;
+            for (int n : waiting) {
+                depth += n;
+            }
+            return depth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // returns the number of callers waiting at a priority
+    public int getQueueDepth(Priority priority) {
+        lock.lock();
+        try {
+            return waiting[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // returns the number of whole tokens in the bucket right now
+    public int getAvailableTokens() {
+        lock.lock();
+        try {
+            refill();
+            return (int) tokens;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // returns the millis left on the current Retry-After pause, 0 if not paused
+    public long getPausedMillis() {
+        lock.lock();
+        try {
+            return Math.max(0, TimeUnit.NANOSECONDS.toMillis(pausedUntil - System.nanoTime()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // returns the client id of this limiter
+    public String getClientId() {
+        return this.clientId;
+    }
+
+    // returns the calls allowed per second
+    public double getPermitsPerSecond() {
+        return this.permitsPerSecond;
+    }
+
+    // adds the tokens earned since the last refill
+    private void refill() {
+        long now = System.nanoTime();
+        double earned = (now - lastRefill) / (double) TimeUnit.SECONDS.toNanos(1) * permitsPerSecond;
+        tokens = Math.min(maxTokens, tokens + earned);
+        lastRefill = now;
+    }
+
+    // returns whether a caller with a higher priority than the given one is waiting
+    private boolean higherWaiting(Priority priority) {
+        for (int i = 0; i < priority.ordinal(); i++) {
+            if (waiting[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,193 @@
+package wenjalan.groupify.service.spotify;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.wrapper.spotify.IHttpManager;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.message.BasicHeader;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// an IHttpManager that writes every call and its outcome to a TrafficArchive, for ReplayHttpManager to serve back later
+// tokens are never written: each token Spotify hands out is swapped for a placeholder naming the user it's for,
+// and calls made with it are recorded under that placeholder, so a user keeps one identity across token refreshes
+// to learn who a token is for, this asks Spotify for the user's profile once per token, outside the archive
+public class RecordingHttpManager implements IHttpManager {
+
+    // where a token's user is looked up, rewritten like any other call if the transport redirects
+    private static final URI PROFILE = URI.create("https://api.spotify.com/v1/me");
+
+    // the manager that actually sends the calls
+    private final IHttpManager delegate;
+
+    // where exchanges are written
+    private final TrafficArchive.Recorder recorder;
+
+    // the placeholder of each real access token seen so far
+    private final Map<String, String> identities = new ConcurrentHashMap<>();
+
+    // the placeholder of each real refresh token seen so far
+    private final Map<String, String> refreshIdentities = new ConcurrentHashMap<>();
+
+    // constructor
+    public RecordingHttpManager(IHttpManager delegate, TrafficArchive.Recorder recorder) {
+        this.delegate = delegate;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException {
+        return record("GET", uri, headers, null, () -> delegate.get(uri, headers));
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return record("POST", uri, headers, body, () -> delegate.post(uri, headers, body));
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return record("PUT", uri, headers, body, () -> delegate.put(uri, headers, body));
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return record("DELETE", uri, headers, body, () -> delegate.delete(uri, headers, body));
+    }
+
+    // makes a call and records it
+    // the caller gets the real response, the archive gets the redacted one
+    private String record(String method, URI uri, Header[] headers, HttpEntity body, Call call) throws IOException, SpotifyWebApiException {
+        boolean tokenRequest = SpotifyEndpoint.TOKEN.equals(SpotifyEndpoint.of(method, uri));
+        List<String> catalogIds = TrafficArchive.catalogIds(method, uri);
+        TrafficArchive.Exchange exchange = new TrafficArchive.Exchange();
+        exchange.key = TrafficArchive.key(method, uri, tokenRequest
+                ? TrafficArchive.tokenIdentity(headers, body, refreshPlaceholder(body))
+                : identityOf(TrafficArchive.bearerToken(headers)));
+        if (tokenRequest) {
+            String group = TrafficArchive.tokenGroupIdentity(headers, body);
+            exchange.group = group == null ? null : TrafficArchive.key(method, uri, group);
+        }
+        long start = System.nanoTime();
+        try {
+            String response = call.execute();
+            exchange.status = 200;
+            exchange.body = tokenRequest ? redactToken(body, response) : response;
+            return response;
+        } catch (SpotifyWebApiException e) {
+            exchange.status = SpotifyErrors.statusOf(e);
+            exchange.message = e.getMessage();
+            if (e instanceof TooManyRequestsException) {
+                exchange.retryAfter = ((TooManyRequestsException) e).getRetryAfter();
+            }
+            throw e;
+        } catch (IOException e) {
+            exchange.status = TrafficArchive.NO_RESPONSE;
+            exchange.message = e.getClass().getSimpleName() + ": " + e.getMessage();
+            throw e;
+        } finally {
+            exchange.millis = (System.nanoTime() - start) / 1_000_000;
+            // a catalog lookup that worked is kept per id, one that failed as it was
+            if (catalogIds != null && exchange.status == 200) {
+                writePerId(uri, catalogIds, exchange);
+            }
+            else {
+                recorder.write(exchange);
+            }
+        }
+    }
+
+    // writes the answer to a catalog lookup as one exchange per id, for ReplayHttpManager to put back together
+    private void writePerId(URI uri, List<String> ids, TrafficArchive.Exchange exchange) throws IOException {
+        JsonElement response = new JsonParser().parse(exchange.body);
+        JsonElement listed = response.isJsonObject() ? response.getAsJsonObject().get(TrafficArchive.catalogField(uri)) : null;
+        if (listed == null || !listed.isJsonArray()) {
+            recorder.write(exchange);
+            return;
+        }
+        JsonArray objects = listed.getAsJsonArray();
+        for (int i = 0; i < ids.size() && i < objects.size(); i++) {
+            TrafficArchive.Exchange single = new TrafficArchive.Exchange();
+            single.key = TrafficArchive.catalogKey(uri, ids.get(i));
+            single.status = 200;
+            single.body = objects.get(i).toString();
+            single.millis = exchange.millis;
+            recorder.write(single);
+        }
+    }
+
+    // returns the identity calls made with an access token are recorded under, the app's if there's none
+    private String identityOf(String token) {
+        if (token == null) {
+            return TrafficArchive.APP_IDENTITY;
+        }
+        String identity = identities.get(token);
+        if (identity == null) {
+            // a token from before recording started, like a restored party's
+            // if Spotify won't say whose it is, the call it's used for will most likely fail the same way
+            try {
+                identity = TrafficArchive.TOKEN_PREFIX + userOf(token);
+                identities.putIfAbsent(token, identity);
+            } catch (IOException e) {
+                return TrafficArchive.TOKEN_PREFIX + "unknown";
+            }
+        }
+        return identity;
+    }
+
+    // returns the placeholder of the refresh token in a token request, null if it has none
+    private String refreshPlaceholder(HttpEntity body) throws IOException {
+        String refreshToken = TrafficArchive.form(body).get("refresh_token");
+        if (refreshToken == null) {
+            return null;
+        }
+        return refreshIdentities.getOrDefault(refreshToken, TrafficArchive.REFRESH_PREFIX + "unknown");
+    }
+
+    // returns a token response with its tokens swapped for placeholders naming the user they're for
+    // a client credentials token is the app's own, and calls made with it are recorded as the app's
+    private String redactToken(HttpEntity request, String response) throws IOException, SpotifyWebApiException {
+        JsonElement element = new JsonParser().parse(response);
+        if (!element.isJsonObject() || !element.getAsJsonObject().has("access_token")) {
+            return response;
+        }
+        JsonObject token = element.getAsJsonObject();
+        String accessToken = token.get("access_token").getAsString();
+        boolean app = "client_credentials".equals(TrafficArchive.form(request).get("grant_type"));
+        String user = app ? null : userOf(accessToken);
+        String identity = app ? TrafficArchive.APP_IDENTITY : TrafficArchive.TOKEN_PREFIX + user;
+        identities.put(accessToken, identity);
+        token.addProperty("access_token", identity);
+        if (token.has("refresh_token")) {
+            String placeholder = TrafficArchive.REFRESH_PREFIX + user;
+            refreshIdentities.put(token.get("refresh_token").getAsString(), placeholder);
+            token.addProperty("refresh_token", placeholder);
+        }
+        return token.toString();
+    }
+
+    // returns the Spotify id of the user an access token is for
+    private String userOf(String accessToken) throws IOException {
+        try {
+            String profile = delegate.get(PROFILE, new Header[] { new BasicHeader("Authorization", "Bearer " + accessToken) });
+            return new JsonParser().parse(profile).getAsJsonObject().get("id").getAsString();
+        } catch (SpotifyWebApiException | RuntimeException e) {
+            throw new IOException("can't tell who a token is for while recording: " + e.getMessage(), e);
+        }
+    }
+
+    // a single call to the delegate
+    private interface Call {
+        String execute() throws IOException, SpotifyWebApiException;
+    }
+
+}
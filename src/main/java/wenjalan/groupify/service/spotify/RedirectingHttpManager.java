@@ -0,0 +1,62 @@
+package wenjalan.groupify.service.spotify;
+
+import com.wrapper.spotify.IHttpManager;
+import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+// an IHttpManager that sends calls meant for api.spotify.com or accounts.spotify.com somewhere else,
+// such as a FakeSpotifyServer, keeping the path and query
+public class RedirectingHttpManager implements IHttpManager {
+
+    // the manager that actually sends the calls
+    private final IHttpManager delegate;
+
+    // where calls are sent instead, e.g. http://localhost:9090
+    private final URI base;
+
+    // constructor
+    public RedirectingHttpManager(IHttpManager delegate, URI base) {
+        this.delegate = delegate;
+        this.base = base;
+    }
+
+    // returns a Spotify uri moved onto a different base, leaving other uris alone
+    public static URI rewrite(URI uri, URI base) {
+        String host = uri.getHost();
+        if (!SpotifyApi.DEFAULT_HOST.equals(host) && !SpotifyApi.DEFAULT_AUTHENTICATION_HOST.equals(host)) {
+            return uri;
+        }
+        try {
+            return new URI(base.getScheme(), uri.getRawUserInfo(), base.getHost(), base.getPort(), uri.getPath(), uri.getQuery(), uri.getFragment());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("can't redirect " + uri + " to " + base, e);
+        }
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException {
+        return delegate.get(rewrite(uri, base), headers);
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return delegate.post(rewrite(uri, base), headers, body);
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return delegate.put(rewrite(uri, base), headers, body);
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return delegate.delete(rewrite(uri, base), headers, body);
+    }
+
+}
@@ -0,0 +1,133 @@
+package wenjalan.groupify.service.spotify;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.wrapper.spotify.IHttpManager;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// an IHttpManager that answers calls from a TrafficArchive instead of the network
+// calls with the same key are answered in the order they were recorded, starting over once they run out,
+// and each answer takes as long as the recorded call did times the time scale
+// a catalog lookup is answered as recorded if the same ids were looked up together, otherwise put together per id
+public class ReplayHttpManager implements IHttpManager {
+
+    // the recorded exchanges by key
+    private final Map<String, List<TrafficArchive.Exchange>> exchanges;
+
+    // how many times each key has been answered
+    private final Map<String, AtomicInteger> served = new ConcurrentHashMap<>();
+
+    // what recorded timings are multiplied by, 0 answers immediately
+    private final double timeScale;
+
+    // constructor
+    public ReplayHttpManager(Map<String, List<TrafficArchive.Exchange>> exchanges, double timeScale) {
+        this.exchanges = exchanges;
+        this.timeScale = timeScale;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException {
+        return replay("GET", uri, headers, null);
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return replay("POST", uri, headers, body);
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return replay("PUT", uri, headers, body);
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return replay("DELETE", uri, headers, body);
+    }
+
+    // answers a call with its next recorded exchange
+    private String replay(String method, URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        // the placeholder tokens handed out during replay are the identities calls were recorded under
+        String key;
+        if (SpotifyEndpoint.TOKEN.equals(SpotifyEndpoint.of(method, uri))) {
+            key = TrafficArchive.key(method, uri, TrafficArchive.tokenIdentity(headers, body, TrafficArchive.form(body).get("refresh_token")));
+            // a code that was never recorded gets the next of the codes recorded for its client
+            String group = TrafficArchive.tokenGroupIdentity(headers, body);
+            if (!exchanges.containsKey(key) && group != null) {
+                key = TrafficArchive.key(method, uri, group);
+            }
+        }
+        else {
+            String token = TrafficArchive.bearerToken(headers);
+            key = TrafficArchive.key(method, uri, token == null ? TrafficArchive.APP_IDENTITY : token);
+        }
+        List<String> catalogIds = TrafficArchive.catalogIds(method, uri);
+        if (catalogIds != null && !exchanges.containsKey(key)) {
+            return replayPerId(uri, catalogIds);
+        }
+        TrafficArchive.Exchange exchange = next(key);
+        delay(exchange.millis);
+        if (exchange.status == TrafficArchive.NO_RESPONSE) {
+            throw new IOException(exchange.message);
+        }
+        if (exchange.status == 0) {
+            throw new SpotifyWebApiException(exchange.message);
+        }
+        if (exchange.status >= 400) {
+            throw SpotifyErrors.toException(exchange.status, exchange.message, exchange.retryAfter);
+        }
+        return exchange.body;
+    }
+
+    // answers a catalog lookup from the answers recorded for each of its ids, taking as long as the slowest of them
+    private String replayPerId(URI uri, List<String> ids) throws IOException {
+        JsonArray objects = new JsonArray();
+        long millis = 0;
+        for (String id : ids) {
+            TrafficArchive.Exchange exchange = next(TrafficArchive.catalogKey(uri, id));
+            objects.add(new JsonParser().parse(exchange.body));
+            millis = Math.max(millis, exchange.millis);
+        }
+        delay(millis);
+        JsonObject response = new JsonObject();
+        response.add(TrafficArchive.catalogField(uri), objects);
+        return response.toString();
+    }
+
+    // returns the next recorded exchange for a key
+    private TrafficArchive.Exchange next(String key) throws IOException {
+        List<TrafficArchive.Exchange> recorded = exchanges.get(key);
+        if (recorded == null || recorded.isEmpty()) {
+            throw new IOException("no recorded exchange for " + key);
+        }
+        int n = served.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement();
+        return recorded.get(n % recorded.size());
+    }
+
+    // waits out a recorded call's time, scaled
+    private void delay(long millis) throws InterruptedIOException {
+        long scaled = (long) (millis * timeScale);
+        if (scaled <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(scaled);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("replay interrupted");
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package wenjalan.groupify.service.spotify;
+
+import com.wrapper.spotify.IHttpManager;
+import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.model_objects.credentials.ClientCredentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wenjalan.groupify.service.GroupifyConfiguration;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.locks.ReentrantLock;
+
+// creates every SpotifyApi the service uses, so all outbound calls share the same pooled transport and rate limits
+public class SpotifyClients {
+
+    // the logger
+    private static final Logger LOG = LoggerFactory.getLogger(SpotifyClients.class);
+
+    // the configuration clients are created with, swapped whole when it's reloaded
+    private static volatile GroupifyConfiguration configuration = null;
+
+    // the pooled transport shared by every client
+    private static IHttpManager transport = null;
+
+    // the app-authorized API used for catalog lookups that aren't tied to any user
+    private static SpotifyApi catalogApi = null;
+
+    // when the catalog API's token expires, in millis
+    private static long catalogTokenExpiry = 0;
+
+    // held while the catalog token is checked and refreshed
+    // a lock rather than a monitor, since the refresh blocks on Spotify and may be waited on by virtual threads
+    private static final ReentrantLock CATALOG_LOCK = new ReentrantLock();
+
+    // sets the configuration to create clients with
+    public static void setConfiguration(GroupifyConfiguration config) {
+        configuration = config;
+        RateLimiter.configure(config.RATE_LIMIT, config.RATE_BURST);
+        CircuitBreaker.configure(config.BREAKER_FAILURES, config.BREAKER_OPEN_TIME, config.BULKHEAD_MAX_CONCURRENT);
+        transport = new OkHttpManager(OkHttpManager.createClient(
+                config.HTTP_MAX_IDLE_CONNECTIONS,
+                config.HTTP_KEEP_ALIVE,
+                config.HTTP_CONNECT_TIMEOUT,
+                config.HTTP_READ_TIMEOUT,
+                config.HTTP2
+        ));
+        // talk to a stand-in instead of Spotify if one is configured
+        if (config.SPOTIFY_BASE_URI != null) {
+            transport = new RedirectingHttpManager(transport, config.SPOTIFY_BASE_URI);
+        }
+        // answer calls from a recording, or record what's sent
+        try {
+            if (config.SPOTIFY_REPLAY != null) {
+                transport = new ReplayHttpManager(TrafficArchive.read(config.SPOTIFY_REPLAY), config.REPLAY_TIME_SCALE);
+            }
+            else if (config.SPOTIFY_RECORD != null) {
+                TrafficArchive.Recorder recorder = new TrafficArchive.Recorder(config.SPOTIFY_RECORD);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        recorder.close();
+                    } catch (IOException e) {
+                        LOG.warn("error closing traffic archive path={}", config.SPOTIFY_RECORD, e);
+                    }
+                }));
+                transport = new RecordingHttpManager(transport, recorder);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("can't open traffic archive: " + e.getMessage(), e);
+        }
+    }
+
+    // swaps in a reloaded configuration, keeping the transport built from the first one
+    // clients created from now on use the new credentials and limits, the catalog API signs in again if its credentials changed
+    public static void reconfigure(GroupifyConfiguration config) {
+        checkConfiguration();
+        GroupifyConfiguration previous = configuration;
+        RateLimiter.configure(config.RATE_LIMIT, config.RATE_BURST);
+        CircuitBreaker.configure(config.BREAKER_FAILURES, config.BREAKER_OPEN_TIME, config.BULKHEAD_MAX_CONCURRENT);
+        CATALOG_LOCK.lock();
+        try {
+            configuration = config;
+            if (!previous.CLIENT_ID.equals(config.CLIENT_ID) || !previous.CLIENT_SECRET.equals(config.CLIENT_SECRET)) {
+                catalogApi = null;
+                catalogTokenExpiry = 0;
+            }
+        } finally {
+            CATALOG_LOCK.unlock();
+        }
+    }
+
+    // returns a builder for an API acting for a host user
+    public static SpotifyApi.Builder host() {
+        checkConfiguration();
+        return builder(configuration.CLIENT_ID, configuration.CLIENT_SECRET, Priority.HOST);
+    }
+
+    // returns a builder for an API acting for a guest user
+    public static SpotifyApi.Builder guest() {
+        checkConfiguration();
+        return builder(configuration.GUEST_ID, configuration.GUEST_SECRET, Priority.GUEST);
+    }
+
+    // returns an API authorized as the app itself, for catalog lookups shared between parties
+    // the client credentials token is refreshed a minute before it expires
+    public static SpotifyApi catalog() throws SpotifyWebApiException, IOException {
+        checkConfiguration();
+        CATALOG_LOCK.lock();
+        try {
+            if (catalogApi == null) {
+                catalogApi = builder(configuration.CLIENT_ID, configuration.CLIENT_SECRET, Priority.HOST).build();
+            }
+            if (System.currentTimeMillis() >= catalogTokenExpiry) {
+                ClientCredentials credentials = catalogApi.clientCredentials().build().execute();
+                catalogApi.setAccessToken(credentials.getAccessToken());
+                catalogTokenExpiry = System.currentTimeMillis() + (credentials.getExpiresIn() - 60) * 1000L;
+            }
+            return catalogApi;
+        } finally {
+            CATALOG_LOCK.unlock();
+        }
+    }
+
+    // returns a uri meant for the user's browser, pointed at the configured stand-in if there is one
+    public static URI browserUri(URI uri) {
+        checkConfiguration();
+        if (configuration.SPOTIFY_BASE_URI == null) {
+            return uri;
+        }
+        return RedirectingHttpManager.rewrite(uri, configuration.SPOTIFY_BASE_URI);
+    }
+
+    // returns a builder with the credentials, redirect and http manager for a client id filled in
+    private static SpotifyApi.Builder builder(String clientId, String clientSecret, Priority priority) {
+        return SpotifyApi.builder()
+                .setClientId(clientId)
+                .setClientSecret(clientSecret)
+                .setRedirectUri(configuration.REDIRECT_URI)
+                .setHttpManager(httpManager(clientId, priority));
+    }
+
+    // returns the http manager calls for a client id at a priority go through
+    // identical reads are coalesced before they reach the rate limiter, so duplicates don't spend tokens,
+    // and each endpoint's circuit breaker sits in front of the limiter so calls to a failing endpoint don't queue on it
+    // the endpoint's bulkhead is behind the limiter, so it only counts calls that have a token and are being sent
+    // every call is metered on the way in, before any of that
+    private static IHttpManager httpManager(String clientId, Priority priority) {
+        IHttpManager limited = new RateLimitedHttpManager(new BulkheadHttpManager(transport), RateLimiter.forClient(clientId), priority);
+        return new MeteredHttpManager(new CoalescingHttpManager(new GuardedHttpManager(limited)));
+    }
+
+    // throws if no configuration has been set
+    private static void checkConfiguration() {
+        if (configuration == null) {
+            throw new IllegalStateException("configuration has not been set, use setConfiguration() with a valid GroupifyConfiguration to set up");
+        }
+    }
+
+    // no instances
+    private SpotifyClients() {
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package wenjalan.groupify.service.spotify;
+
+import java.net.URI;
+
+// names the Spotify endpoint a call is made to, so calls can be grouped per endpoint
+public class SpotifyEndpoint {
+
+    // the endpoints the service uses
+    public static final String TOKEN = "token";
+    public static final String PROFILE = "profile";
+    public static final String TOP_TRACKS = "top-tracks";
+    public static final String TOP_ARTISTS = "top-artists";
+    public static final String MY_PLAYLISTS = "my-playlists";
+    public static final String SAVED_TRACKS = "saved-tracks";
+    public static final String PLAYLIST = "playlist";
+    public static final String TRACKS = "tracks";
+    public static final String ARTISTS = "artists";
+    public static final String RECOMMENDATIONS = "recommendations";
+    public static final String PLAYLIST_CREATE = "playlist-create";
+    public static final String PLAYLIST_ADD_TRACKS = "playlist-add-tracks";
+    public static final String PLAYLIST_UNFOLLOW = "playlist-unfollow";
+    public static final String OTHER = "other";
+
+    // returns the name of the endpoint a call is made to
+    // method: the HTTP method, upper case
+    // uri: the uri called
+    public static String of(String method, URI uri) {
+        String path = uri.getPath() == null ? "" : uri.getPath();
+        if (path.startsWith("/api/token")) {
+            return TOKEN;
+        }
+        if (path.startsWith("/v1/")) {
+            path = path.substring(3);
+        }
+        String[] segments = path.substring(path.startsWith("/") ? 1 : 0).split("/");
+        switch (segments[0]) {
+            case "me":
+                if (segments.length == 1) {
+                    return PROFILE;
+                }
+                if (segments[1].equals("top") && segments.length > 2) {
+                    return segments[2].equals("tracks") ? TOP_TRACKS : TOP_ARTISTS;
+                }
+                if (segments[1].equals("playlists")) {
+                    return MY_PLAYLISTS;
+                }
+                if (segments[1].equals("tracks")) {
+                    return SAVED_TRACKS;
+                }
+                return OTHER;
+            case "tracks":
+                return TRACKS;
+            case "artists":
+                return ARTISTS;
+            case "recommendations":
+                return RECOMMENDATIONS;
+            case "users":
+                // POST /users/{id}/playlists
+                return segments.length > 2 && segments[2].equals("playlists") && method.equals("POST") ? PLAYLIST_CREATE : OTHER;
+            case "playlists":
+                if (segments.length == 2) {
+                    return PLAYLIST;
+                }
+                if (segments.length > 2 && segments[2].equals("tracks")) {
+                    return method.equals("GET") ? PLAYLIST : PLAYLIST_ADD_TRACKS;
+                }
+                if (segments.length > 2 && segments[2].equals("followers") && method.equals("DELETE")) {
+                    return PLAYLIST_UNFOLLOW;
+                }
+                return OTHER;
+            default:
+                return OTHER;
+        }
+    }
+
+    // no instances
+    private SpotifyEndpoint() {
+
+    }
+
+}
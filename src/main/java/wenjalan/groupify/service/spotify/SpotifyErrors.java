@@ -0,0 +1,68 @@
+package wenjalan.groupify.service.spotify;
+
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.exceptions.detailed.*;
+
+// converts between HTTP error statuses and the exceptions the Spotify library throws for them
+public class SpotifyErrors {
+
+    // returns the exception Spotify's own http manager throws for an error status
+    // retryAfter: the Retry-After of a 429 in seconds, or a negative number if there was none
+    public static SpotifyWebApiException toException(int status, String message, int retryAfter) {
+        switch (status) {
+            case 400:
+                return new BadRequestException(message);
+            case 401:
+                return new UnauthorizedException(message);
+            case 403:
+                return new ForbiddenException(message);
+            case 404:
+                return new NotFoundException(message);
+            case 429:
+                return retryAfter >= 0 ? new TooManyRequestsException(message, retryAfter) : new TooManyRequestsException(message);
+            case 500:
+                return new InternalServerErrorException(message);
+            case 502:
+                return new BadGatewayException(message);
+            case 503:
+                return new ServiceUnavailableException(message);
+            default:
+                return new SpotifyWebApiException(status + " " + message);
+        }
+    }
+
+    // returns the error status an exception stands for, or 0 if it's not one of the detailed ones
+    public static int statusOf(SpotifyWebApiException e) {
+        if (e instanceof BadRequestException) {
+            return 400;
+        }
+        if (e instanceof UnauthorizedException) {
+            return 401;
+        }
+        if (e instanceof ForbiddenException) {
+            return 403;
+        }
+        if (e instanceof NotFoundException) {
+            return 404;
+        }
+        if (e instanceof TooManyRequestsException) {
+            return 429;
+        }
+        if (e instanceof InternalServerErrorException) {
+            return 500;
+        }
+        if (e instanceof BadGatewayException) {
+            return 502;
+        }
+        if (e instanceof ServiceUnavailableException) {
+            return 503;
+        }
+        return 0;
+    }
+
+    // no instances
+    private SpotifyErrors() {
+
+    }
+
+}
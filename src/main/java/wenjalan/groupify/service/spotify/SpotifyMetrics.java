@@ -0,0 +1,108 @@
+package wenjalan.groupify.service.spotify;
+
+import wenjalan.groupify.service.util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// the count, errors and latency of every outbound Spotify call, per endpoint and caller
+// recorded by MeteredHttpManager, the one place every call passes through
+public class SpotifyMetrics {
+
+    // the metrics of each endpoint and caller pair
+    private static final Map<String, SpotifyMetrics> METRICS = new ConcurrentHashMap<>();
+
+    // the endpoint these calls were made to, see SpotifyEndpoint
+    private final String endpoint;
+
+    // the part of the service that made these calls, see CallerContext
+    private final String caller;
+
+    // the latency of every call, failed or not
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    // the number of failed calls by exception class
+    private final Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+
+    // constructor
+    private SpotifyMetrics(String endpoint, String caller) {
+        this.endpoint = endpoint;
+        this.caller = caller;
+    }
+
+    // records a call
+    // error: what the call threw, null if it succeeded
+    public static void record(String endpoint, String caller, long millis, Throwable error) {
+        SpotifyMetrics metrics = METRICS.computeIfAbsent(endpoint + " " + caller, (k) -> new SpotifyMetrics(endpoint, caller));
+        metrics.latency.record(millis);
+        if (error != null) {
+            metrics.errors.computeIfAbsent(error.getClass().getSimpleName(), (k) -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    // returns the metrics of every endpoint and caller pair called so far, ordered by endpoint then caller
+    public static List<SpotifyMetrics> all() {
+        List<SpotifyMetrics> all = new ArrayList<>(new TreeMap<>(METRICS).values());
+        return Collections.unmodifiableList(all);
+    }
+
+    // returns every metric in the Prometheus text format
+    public static String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        List<SpotifyMetrics> all = all();
+        out.append("# HELP groupify_spotify_call_seconds Latency of outbound Spotify calls as seen by the caller\n");
+        out.append("# TYPE groupify_spotify_call_seconds histogram\n");
+        for (SpotifyMetrics metrics : all) {
+            String labels = "endpoint=\"" + metrics.endpoint + "\",caller=\"" + metrics.caller + "\"";
+            long[] counts = metrics.latency.getBuckets();
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String le = i < LatencyHistogram.BOUNDS.length ? String.valueOf(LatencyHistogram.BOUNDS[i] / 1000.0) : "+Inf";
+                out.append("groupify_spotify_call_seconds_bucket{").append(labels).append(",le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+            }
+            out.append("groupify_spotify_call_seconds_sum{").append(labels).append("} ").append(metrics.latency.getSum() / 1000.0).append('\n');
+            out.append("groupify_spotify_call_seconds_count{").append(labels).append("} ").append(cumulative).append('\n');
+        }
+        out.append("# HELP groupify_spotify_call_errors_total Failed outbound Spotify calls by exception class\n");
+        out.append("# TYPE groupify_spotify_call_errors_total counter\n");
+        for (SpotifyMetrics metrics : all) {
+            metrics.getErrors().forEach((type, n) -> out.append("groupify_spotify_call_errors_total{endpoint=\"").append(metrics.endpoint)
+                    .append("\",caller=\"").append(metrics.caller).append("\",error=\"").append(type).append("\"} ").append(n).append('\n'));
+        }
+        return out.toString();
+    }
+
+    // returns the endpoint
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+    // returns the caller
+    public String getCaller() {
+        return this.caller;
+    }
+
+    // returns the latency histogram
+    public LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    // returns the number of calls made
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    // returns the number of failed calls by exception class
+    public Map<String, Long> getErrors() {
+        Map<String, Long> counts = new TreeMap<>();
+        errors.forEach((type, n) -> counts.put(type, n.get()));
+        return counts;
+    }
+
+}
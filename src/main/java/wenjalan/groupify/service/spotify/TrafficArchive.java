@@ -0,0 +1,244 @@
+package wenjalan.groupify.service.spotify;
+
+import com.google.gson.Gson;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// a gzipped file of recorded Spotify exchanges, one JSON object per line
+// exchanges are keyed by method, path, query and the user they were made for, never by host,
+// so an archive recorded against Spotify replays the same against a stand-in
+// nothing that depends on timing goes into a key, so the same flows replay the same however their calls interleave:
+// users are known by their Spotify id rather than by token, token requests by grant and code, and several-track and
+// several-artist lookups are kept per id, since how ids are batched depends on the loader's window and the cache
+// a code exchanged for a token is also grouped with the other codes for the same client, which answer for codes never
+// recorded, like the made up ones of a load generator replaying an archive recorded against Spotify
+public class TrafficArchive {
+
+    // the status recorded for calls that failed without a response, like a timeout
+    public static final int NO_RESPONSE = -1;
+
+    // the Authorization identity of calls authorized as the app, like token requests
+    public static final String APP_IDENTITY = "app";
+
+    // the identity of catalog lookups, which answer the same whoever makes them
+    public static final String CATALOG_IDENTITY = "catalog";
+
+    // the prefixes of the placeholder access and refresh tokens written in place of real ones, followed by a user id
+    public static final String TOKEN_PREFIX = "recorded-token-";
+    public static final String REFRESH_PREFIX = "recorded-refresh-";
+
+    // the catalog lookups kept per id, and the field of their responses the objects are listed in
+    private static final Map<String, String> CATALOG_LOOKUPS = new HashMap<>();
+    static {
+        CATALOG_LOOKUPS.put("/v1/tracks", "tracks");
+        CATALOG_LOOKUPS.put("/v1/artists", "artists");
+    }
+
+    // serializes exchanges
+    private static final Gson GSON = new Gson();
+
+    // a single recorded request and its outcome
+    public static class Exchange {
+
+        // the key the request is replayed by
+        public String key;
+
+        // a looser key the request also answers by, for requests no key matches exactly, null if none
+        public String group;
+
+        // the response status, NO_RESPONSE if the call failed without one
+        public int status;
+
+        // the response body of a successful call
+        public String body;
+
+        // the error message of a failed call
+        public String message;
+
+        // the Retry-After of a 429 in seconds, negative if there was none
+        public int retryAfter = -1;
+
+        // how long the call took in millis
+        public long millis;
+
+    }
+
+    // appends exchanges to an archive
+    public static class Recorder implements Closeable {
+
+        // the compressed stream exchanges are written to
+        private final Writer out;
+
+        // constructor, truncates any existing archive at path
+        public Recorder(String path) throws IOException {
+            // sync flush so every exchange is readable even if the process is killed
+            this.out = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(path), true), StandardCharsets.UTF_8);
+        }
+
+        // writes an exchange
+        public synchronized void write(Exchange exchange) throws IOException {
+            out.write(GSON.toJson(exchange));
+            out.write('\n');
+            out.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+
+    }
+
+    // returns the exchanges in an archive, grouped by key in the order they were recorded
+    public static Map<String, List<Exchange>> read(String path) throws IOException {
+        Map<String, List<Exchange>> exchanges = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(path)), StandardCharsets.UTF_8))) {
+            for (String line; (line = in.readLine()) != null;) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                Exchange exchange = GSON.fromJson(line, Exchange.class);
+                exchanges.computeIfAbsent(exchange.key, k -> new ArrayList<>()).add(exchange);
+                if (exchange.group != null) {
+                    exchanges.computeIfAbsent(exchange.group, k -> new ArrayList<>()).add(exchange);
+                }
+            }
+        }
+        return exchanges;
+    }
+
+    // returns the key an exchange is stored under
+    // identity: who the call was made for, see Recorder and Replayer for how it's derived
+    public static String key(String method, URI uri, String identity) {
+        String query = uri.getRawQuery();
+        return method + " " + uri.getRawPath() + (query == null ? "" : "?" + query) + " " + identity;
+    }
+
+    // returns the identity a token request is stored under: its grant, then the client and code of an authorization code
+    // or the placeholder of the refresh token being used, so a replayed request gets the same user's token back
+    // refreshPlaceholder: the placeholder of the refresh token sent, for refresh_token grants
+    public static String tokenIdentity(Header[] headers, HttpEntity body, String refreshPlaceholder) throws IOException {
+        Map<String, String> form = form(body);
+        String grant = form.getOrDefault("grant_type", "");
+        if (grant.equals("authorization_code")) {
+            return tokenGroupIdentity(headers, body) + " " + form.getOrDefault("code", "");
+        }
+        if (grant.equals("refresh_token")) {
+            return APP_IDENTITY + " " + grant + " " + refreshPlaceholder;
+        }
+        return APP_IDENTITY + " " + grant;
+    }
+
+    // returns the identity a token request is grouped under, null if it isn't grouped
+    // authorization codes are grouped by the client they were given to, since a host's and a guest's sign ins differ
+    public static String tokenGroupIdentity(Header[] headers, HttpEntity body) throws IOException {
+        String grant = form(body).getOrDefault("grant_type", "");
+        if (!grant.equals("authorization_code")) {
+            return null;
+        }
+        String client = basicClient(headers);
+        return APP_IDENTITY + " " + grant + (client == null ? "" : " " + client);
+    }
+
+    // returns the fields of a form body, empty if there's none
+    public static Map<String, String> form(HttpEntity body) throws IOException {
+        Map<String, String> form = new HashMap<>();
+        if (body != null) {
+            for (NameValuePair pair : URLEncodedUtils.parse(body)) {
+                form.put(pair.getName(), pair.getValue());
+            }
+        }
+        return form;
+    }
+
+    // returns the ids of a several-tracks or several-artists lookup, or null if a call isn't one
+    public static List<String> catalogIds(String method, URI uri) {
+        if (!method.equals("GET") || !CATALOG_LOOKUPS.containsKey(uri.getRawPath())) {
+            return null;
+        }
+        for (NameValuePair pair : URLEncodedUtils.parse(uri, StandardCharsets.UTF_8)) {
+            if (pair.getName().equals("ids")) {
+                return Arrays.asList(pair.getValue().split(","));
+            }
+        }
+        return null;
+    }
+
+    // returns the field the objects of a catalog lookup's response are listed in
+    public static String catalogField(URI uri) {
+        return CATALOG_LOOKUPS.get(uri.getRawPath());
+    }
+
+    // returns the key the answer for one id of a catalog lookup is stored under
+    // any other parameters of the lookup, like a market, are kept in a fixed order
+    public static String catalogKey(URI uri, String id) {
+        List<String> params = new ArrayList<>();
+        for (NameValuePair pair : URLEncodedUtils.parse(uri, StandardCharsets.UTF_8)) {
+            if (!pair.getName().equals("ids")) {
+                params.add(pair.getName() + "=" + pair.getValue());
+            }
+        }
+        Collections.sort(params);
+        StringBuilder key = new StringBuilder("GET ").append(uri.getRawPath()).append("?ids=").append(id);
+        for (String param : params) {
+            key.append('&').append(param);
+        }
+        return key.append(' ').append(CATALOG_IDENTITY).toString();
+    }
+
+    // returns the client id of a call authorized with HTTP Basic, like a token request, or null if it isn't
+    private static String basicClient(Header[] headers) {
+        if (headers == null) {
+            return null;
+        }
+        for (Header header : headers) {
+            if ("Authorization".equalsIgnoreCase(header.getName()) && header.getValue().startsWith("Basic ")) {
+                String credentials = new String(Base64.getDecoder().decode(header.getValue().substring("Basic ".length()).trim()), StandardCharsets.UTF_8);
+                int colon = credentials.indexOf(':');
+                return colon < 0 ? credentials : credentials.substring(0, colon);
+            }
+        }
+        return null;
+    }
+
+    // returns the bearer token in a set of headers, or null if the call isn't authorized as a user
+    public static String bearerToken(Header[] headers) {
+        if (headers == null) {
+            return null;
+        }
+        for (Header header : headers) {
+            if ("Authorization".equalsIgnoreCase(header.getName()) && header.getValue().startsWith("Bearer ")) {
+                return header.getValue().substring("Bearer ".length());
+            }
+        }
+        return null;
+    }
+
+    // no instances
+    private TrafficArchive() {
+
+    }
+
+}
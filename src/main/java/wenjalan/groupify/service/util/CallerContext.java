@@ -0,0 +1,96 @@
+package wenjalan.groupify.service.util;
+
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+// names the part of the service the current thread is making Spotify calls for, so calls can be grouped per caller
+// tasks on the GroupifyExecutors io pool inherit the caller of the thread that submitted them
+public class CallerContext {
+
+    // the callers
+    public static final String USER_FACTORY = "user-factory";
+    public static final String PLAYLIST_GENERATOR = "playlist-generator";
+    public static final String TRACK_BUFFER = "track-buffer";
+    public static final String ARTIST_BUFFER = "artist-buffer";
+    public static final String CATALOG_LOADER = "catalog-loader";
+    public static final String PURGE_PLAYLISTS = "purge-playlists";
+    public static final String UNKNOWN = "unknown";
+
+    // the caller of each thread
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    // a Spotify call made under a caller
+    public interface Call<T> {
+        T call() throws SpotifyWebApiException, IOException;
+    }
+
+    // makes a Spotify call on this thread count towards a caller, then restores the caller before it
+    public static <T> T call(String caller, Call<T> task) throws SpotifyWebApiException, IOException {
+        String previous = enter(caller);
+        try {
+            return task.call();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    // runs a task on this thread under a caller, then restores the caller before it
+    public static <T> T get(String caller, Supplier<T> task) {
+        String previous = enter(caller);
+        try {
+            return task.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    // runs a task on this thread under a caller, then restores the caller before it
+    public static void run(String caller, Runnable task) {
+        String previous = enter(caller);
+        try {
+            task.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    // returns the caller of this thread, UNKNOWN if none was entered
+    public static String current() {
+        String caller = CURRENT.get();
+        return caller == null ? UNKNOWN : caller;
+    }
+
+    // returns a task that runs under the caller of this thread, wherever it's run
+    static Runnable inherit(Runnable task) {
+        String caller = CURRENT.get();
+        if (caller == null) {
+            return task;
+        }
+        return () -> run(caller, task);
+    }
+
+    // sets the caller of this thread, returning the one before it
+    private static String enter(String caller) {
+        String previous = CURRENT.get();
+        CURRENT.set(caller);
+        return previous;
+    }
+
+    // puts back the caller a thread had before enter()
+    private static void restore(String previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        }
+        else {
+            CURRENT.set(previous);
+        }
+    }
+
+    // no instances
+    private CallerContext() {
+
+    }
+
+}
@@ -0,0 +1,283 @@
+package wenjalan.groupify.service.util;
+
+import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import wenjalan.groupify.service.events.GroupifyEvents;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// the common parts of GetTrackBuffer and GetArtistBuffer
+// collects ids, then fetches them from the catalog cache and Spotify in chunks of up to 50, several chunks at a time,
+// or through a node-wide CatalogLoader when batching is on
+public abstract class CatalogBuffer<T> {
+
+    // the most ids Spotify accepts in one call
+    public static final int CHUNK_SIZE = 50;
+
+    // the default number of chunks fetched at once
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    // the number of chunks fetched at once by every buffer, and of batches every CatalogLoader has in flight
+    private static volatile int parallelism = DEFAULT_PARALLELISM;
+
+    // represents a chunk of ids that couldn't be fetched
+    public static class ChunkFailure {
+
+        // the ids in the chunk
+        public final List<String> ids;
+
+        // why it failed
+        public final Exception cause;
+
+        // constructor
+        public ChunkFailure(List<String> ids, Exception cause) {
+            this.ids = ids;
+            this.cause = cause;
+        }
+
+    }
+
+    // the ids to retrieve, in the order they were added, without duplicates
+    protected final Set<String> ids = new LinkedHashSet<>();
+
+    // the Spotify API instance to use
+    protected final SpotifyApi spotify;
+
+    // the cache consulted before asking Spotify
+    private final CatalogCache<T> cache;
+
+    // the chunks that failed during the last flush
+    private List<ChunkFailure> failures = Collections.emptyList();
+
+    // constructor
+    protected CatalogBuffer(SpotifyApi spotify, CatalogCache<T> cache) {
+        this.spotify = spotify;
+        this.cache = cache;
+    }
+
+    // fetches up to CHUNK_SIZE objects from Spotify, in the order of the ids given
+    protected abstract T[] fetch(String idsQuery) throws SpotifyWebApiException, IOException;
+
+    // returns the node-wide loader misses are batched through, or null to fetch them directly
+    protected abstract CatalogLoader<T> loader();
+
+    // returns the CallerContext chunks are fetched under
+    protected abstract String caller();
+
+    // sets the number of chunks every buffer fetches at once, and of batches every CatalogLoader has in flight
+    public static void setParallelism(int chunks) {
+        if (chunks < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        parallelism = chunks;
+    }
+
+    // returns the number of chunks every buffer fetches at once
+    public static int getParallelism() {
+        return parallelism;
+    }
+
+    // flushes the buffer, returning the objects in the order their ids were added
+    // ids in chunks that failed map to null, see getFailures()
+    // throws the first failure if every chunk failed
+    // each flush is emitted as a JFR event, see GroupifyEvents
+    public List<T> flush() throws SpotifyWebApiException, IOException {
+        GroupifyEvents.Span span = GroupifyEvents.beginFlush();
+
+        // check the catalog cache first, only asking Spotify for the misses
+        Map<String, T> found = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String id : ids) {
+            T cached = cache.get(id);
+            if (cached != null) {
+                found.put(id, cached);
+            }
+            else {
+                misses.add(id);
+            }
+        }
+
+        int cacheHits = found.size();
+
+        // fetch them all, through the shared loader if there is one
+        CatalogLoader<T> loader = loader();
+        List<ChunkFailure> chunkFailures;
+        boolean allFailed;
+        if (loader != null) {
+            chunkFailures = loadAll(loader, misses, found);
+            int failedIds = chunkFailures.stream().mapToInt((f) -> f.ids.size()).sum();
+            allFailed = !misses.isEmpty() && failedIds == misses.size();
+        }
+        else {
+            // split the misses into chunks
+            List<List<String>> chunks = new ArrayList<>();
+            for (int i = 0; i < misses.size(); i += CHUNK_SIZE) {
+                chunks.add(misses.subList(i, Math.min(i + CHUNK_SIZE, misses.size())));
+            }
+            chunkFailures = fetchAll(chunks, found);
+            allFailed = !chunks.isEmpty() && chunkFailures.size() == chunks.size();
+        }
+        this.failures = Collections.unmodifiableList(chunkFailures);
+        GroupifyEvents.flushed(span, cache.getName(), ids.size(), cacheHits, chunkFailures.stream().mapToInt((f) -> f.ids.size()).sum(), loader != null);
+        if (allFailed) {
+            rethrow(chunkFailures.get(0).cause);
+        }
+
+        // put them back in order
+        List<T> results = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            results.add(found.get(id));
+        }
+        return results;
+    }
+
+    // fetches chunks with up to <parallelism> workers, one of them being this thread
+    // found: where fetched objects are put
+    // returns the chunks that failed
+    private List<ChunkFailure> fetchAll(List<List<String>> chunks, Map<String, T> found) throws InterruptedIOException {
+        List<ChunkFailure> chunkFailures = Collections.synchronizedList(new ArrayList<>());
+        if (chunks.isEmpty()) {
+            return chunkFailures;
+        }
+        Map<String, T> fetched = Collections.synchronizedMap(new HashMap<>());
+        AtomicInteger next = new AtomicInteger(0);
+        Runnable worker = () -> {
+            for (int i; (i = next.getAndIncrement()) < chunks.size();) {
+                List<String> chunk = chunks.get(i);
+                try {
+                    T[] retrieved = CallerContext.call(caller(), () -> fetch(String.join(",", chunk)));
+                    for (int j = 0; j < retrieved.length && j < chunk.size(); j++) {
+                        cache.put(chunk.get(j), retrieved[j]);
+                        fetched.put(chunk.get(j), retrieved[j]);
+                    }
+                } catch (SpotifyWebApiException | IOException | RuntimeException e) {
+                    chunkFailures.add(new ChunkFailure(chunk, e));
+                }
+            }
+        };
+
+        // start the helpers, then work alongside them
+        int workers = Math.min(parallelism, chunks.size());
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int i = 1; i < workers; i++) {
+            helpers.add(GroupifyExecutors.io().submit(worker));
+        }
+        worker.run();
+        try {
+            for (Future<?> f : helpers) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            helpers.forEach((f) -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while flushing buffer");
+        } catch (ExecutionException e) {
+            // workers catch their own failures, so this is a bug
+            throw new IllegalStateException(e.getCause());
+        }
+
+        found.putAll(fetched);
+        return new ArrayList<>(chunkFailures);
+    }
+
+    // asks a shared loader for the ids, waiting for the batches they end up in
+    // found: where loaded objects are put
+    // returns the failures, one per failed batch
+    private List<ChunkFailure> loadAll(CatalogLoader<T> loader, List<String> ids, Map<String, T> found) throws InterruptedIOException {
+        List<CompletableFuture<T>> futures = loader.loadAll(ids);
+        Map<Throwable, List<String>> failedBatches = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            try {
+                T value = futures.get(i).get();
+                cache.put(id, value);
+                found.put(id, value);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while flushing buffer");
+            } catch (ExecutionException e) {
+                // ids from the same batch share the same exception
+                failedBatches.computeIfAbsent(e.getCause(), (cause) -> new ArrayList<>()).add(id);
+            }
+        }
+        List<ChunkFailure> chunkFailures = new ArrayList<>();
+        for (Map.Entry<Throwable, List<String>> failed : failedBatches.entrySet()) {
+            Throwable cause = failed.getKey();
+            Exception e = cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+            chunkFailures.add(new ChunkFailure(failed.getValue(), e));
+        }
+        return chunkFailures;
+    }
+
+    // rethrows a chunk's failure as one of the exceptions flush() declares
+    private static void rethrow(Exception e) throws SpotifyWebApiException, IOException {
+        if (e instanceof SpotifyWebApiException) {
+            throw (SpotifyWebApiException) e;
+        }
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        throw (RuntimeException) e;
+    }
+
+    // returns the chunks that failed during the last flush
+    public List<ChunkFailure> getFailures() {
+        return this.failures;
+    }
+
+    // clears the buffer
+    public void clear() {
+        this.ids.clear();
+    }
+
+    // add an id to the buffer
+    public void add(String id) {
+        ids.add(id);
+    }
+
+    // add several ids to the buffer
+    public void addAll(String... ids) {
+        this.ids.addAll(Arrays.asList(ids));
+    }
+
+    // remove an id from the buffer
+    public void remove(String id) {
+        ids.remove(id);
+    }
+
+    // returns whether the buffer contains an id
+    public boolean contains(String id) {
+        return ids.contains(id);
+    }
+
+    // returns the size of the buffer
+    public int size() {
+        return ids.size();
+    }
+
+    // returns the contents of the buffer
+    public List<String> getIds() {
+        return new ArrayList<>(ids);
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        return ids.toString();
+    }
+
+}
@@ -0,0 +1,220 @@
+package wenjalan.groupify.service.util;
+
+import com.wrapper.spotify.model_objects.specification.Artist;
+import com.wrapper.spotify.model_objects.specification.Track;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// a process-wide, size-bounded cache of Spotify catalog objects, keyed by id
+// segmented LRU: new entries go on probation, entries hit again are promoted to the protected segment,
+// so one big generation's one-off lookups can't flush out the tracks and artists every party shares
+public class CatalogCache<V> {
+
+    // the default sizes and lifetime of the shared caches, until resized
+    public static final int DEFAULT_TRACK_CAPACITY = 20000;
+    public static final int DEFAULT_ARTIST_CAPACITY = 10000;
+    public static final long DEFAULT_TTL = TimeUnit.HOURS.toMillis(6);
+
+    // the cache of Tracks shared by every generation
+    public static final CatalogCache<Track> TRACKS = new CatalogCache<>("tracks", DEFAULT_TRACK_CAPACITY, DEFAULT_TTL, 2048);
+
+    // the cache of Artists shared by every generation
+    public static final CatalogCache<Artist> ARTISTS = new CatalogCache<>("artists", DEFAULT_ARTIST_CAPACITY, DEFAULT_TTL, 1024);
+
+    // the share of the capacity given to the protected segment
+    private static final double PROTECTED_SHARE = 0.8;
+
+    // a cached value and when it expires
+    private static class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // the name of this cache
+    private final String name;
+
+    // the most entries this cache holds, guarded by this
+    private int capacity;
+
+    // the most entries the protected segment holds, guarded by this
+    private int protectedCapacity;
+
+    // how long an entry lives, in millis, guarded by this
+    private long ttl;
+
+    // the rough size of an entry in bytes, for the memory estimate
+    private final int estimatedEntryBytes;
+
+    // entries seen once, in access order
+    private final LinkedHashMap<String, Entry<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+
+    // entries seen more than once, in access order
+    private final LinkedHashMap<String, Entry<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+    // statistics
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+
+    // constructor
+    // name: the name of the cache, for statistics
+    // capacity: the most entries to hold
+    // ttl: how long an entry lives, in millis
+    // estimatedEntryBytes: the rough size of an entry, for the memory estimate
+    public CatalogCache(String name, int capacity, long ttl, int estimatedEntryBytes) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.protectedCapacity = (int) (capacity * PROTECTED_SHARE);
+        this.ttl = ttl;
+        this.estimatedEntryBytes = estimatedEntryBytes;
+    }
+
+    // returns the value cached for an id, or null if there is none
+    public synchronized V get(String id) {
+        long now = System.currentTimeMillis();
+
+        // protected hit
+        Entry<V> e = protectedSegment.get(id);
+        if (e != null) {
+            if (e.expiresAt <= now) {
+                protectedSegment.remove(id);
+                expirations++;
+                misses++;
+                return null;
+            }
+            hits++;
+            return e.value;
+        }
+
+        // probation hit, promote it
+        e = probation.remove(id);
+        if (e != null) {
+            if (e.expiresAt <= now) {
+                expirations++;
+                misses++;
+                return null;
+            }
+            hits++;
+            protectedSegment.put(id, e);
+            demoteOverflow();
+            return e.value;
+        }
+
+        misses++;
+        return null;
+    }
+
+    // caches a value under an id
+    public synchronized void put(String id, V value) {
+        if (id == null || value == null) {
+            return;
+        }
+        Entry<V> e = new Entry<>(value, System.currentTimeMillis() + ttl);
+
+        // refresh in place if it's already protected
+        if (protectedSegment.containsKey(id)) {
+            protectedSegment.put(id, e);
+            return;
+        }
+        probation.put(id, e);
+        evictOverflow();
+    }
+
+    // changes the size and entry lifetime of the cache while it's in use
+    // shrinking evicts the least recently used entries right away, a new ttl applies to entries cached from now on
+    public synchronized void resize(int capacity, long ttl) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        this.capacity = capacity;
+        this.protectedCapacity = (int) (capacity * PROTECTED_SHARE);
+        this.ttl = ttl;
+        demoteOverflow();
+    }
+
+    // empties the cache, keeping its statistics
+    public synchronized void clear() {
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    // moves the least recently used protected entries back to probation when the protected segment is full
+    private void demoteOverflow() {
+        Iterator<Map.Entry<String, Entry<V>>> iter = protectedSegment.entrySet().iterator();
+        while (protectedSegment.size() > protectedCapacity && iter.hasNext()) {
+            Map.Entry<String, Entry<V>> eldest = iter.next();
+            iter.remove();
+            probation.put(eldest.getKey(), eldest.getValue());
+        }
+        evictOverflow();
+    }
+
+    // evicts the least recently used probation entries while the cache is over capacity
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry<V>>> iter = probation.entrySet().iterator();
+        while (probation.size() + protectedSegment.size() > capacity && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+            evictions++;
+        }
+    }
+
+    // name
+    public String getName() {
+        return this.name;
+    }
+
+    // capacity
+    public synchronized int getCapacity() {
+        return this.capacity;
+    }
+
+    // returns the number of entries cached
+    public synchronized int size() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    // hits
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    // misses
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // returns the share of lookups that were hits, 0 if there were none
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    // evictions
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    // expirations
+    public synchronized long getExpirations() {
+        return expirations;
+    }
+
+    // returns a rough estimate of the memory held by the cached values, in bytes
+    public synchronized long getEstimatedBytes() {
+        return (long) size() * estimatedEntryBytes;
+    }
+
+}
@@ -0,0 +1,217 @@
+package wenjalan.groupify.service.util;
+
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// batches catalog lookups from every caller on this node into shared calls of up to 50 ids
+// a batch is sent as soon as it's full, or once the batch window has passed since its first id arrived
+// at most CatalogBuffer's parallelism batches are in flight at once, the rest wait their turn in order
+public class CatalogLoader<T> {
+
+    // the most ids Spotify accepts in one call
+    public static final int MAX_BATCH = CatalogBuffer.CHUNK_SIZE;
+
+    // the default time a batch waits to fill up, in millis
+    public static final long DEFAULT_WINDOW = 5;
+
+    // fetches a batch of up to MAX_BATCH objects from Spotify, in the order of the ids given
+    public interface BatchFetcher<T> {
+        T[] fetch(String idsQuery) throws SpotifyWebApiException, IOException;
+    }
+
+    // the timer thread shared by every loader
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(GroupifyExecutors.daemonThreads("groupify-loader"));
+
+    // the name of this loader
+    private final String name;
+
+    // makes the actual calls
+    private final BatchFetcher<T> fetcher;
+
+    // how long a batch waits to fill up, in millis
+    private volatile long window;
+
+    // the ids waiting for the next batch, guarded by this
+    private Map<String, CompletableFuture<T>> pending = new LinkedHashMap<>();
+
+    // the ids in batches that have been sent but not answered, guarded by this
+    private final Map<String, CompletableFuture<T>> inFlight = new HashMap<>();
+
+    // the timer that will send the pending batch, guarded by this
+    private ScheduledFuture<?> timer = null;
+
+    // the batches waiting for one in flight to finish, guarded by this
+    private final Queue<Map<String, CompletableFuture<T>>> queued = new ArrayDeque<>();
+
+    // the number of batches being fetched, guarded by this
+    private int sending = 0;
+
+    // statistics
+    private final AtomicLong requested = new AtomicLong(0);
+    private final AtomicLong batches = new AtomicLong(0);
+    private final AtomicLong batchedIds = new AtomicLong(0);
+
+    // constructor
+    // name: the name of the loader, for statistics
+    // fetcher: makes the actual calls
+    // window: how long a batch waits to fill up, in millis
+    public CatalogLoader(String name, BatchFetcher<T> fetcher, long window) {
+        this.name = name;
+        this.fetcher = fetcher;
+        this.window = window;
+    }
+
+    // changes how long batches wait to fill up, from the next batch on
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    // returns a future for the object with an id, joining the pending batch
+    // ids already pending or in flight share the same future
+    public CompletableFuture<T> load(String id) {
+        requested.incrementAndGet();
+        Map<String, CompletableFuture<T>> full = null;
+        CompletableFuture<T> future;
+        synchronized (this) {
+            future = inFlight.get(id);
+            if (future == null) {
+                future = pending.get(id);
+            }
+            if (future != null) {
+                return future;
+            }
+
+            future = new CompletableFuture<>();
+            pending.put(id, future);
+            if (pending.size() >= MAX_BATCH) {
+                full = admit(takePending());
+            }
+            else if (timer == null) {
+                timer = TIMER.schedule(this::sendPending, window, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return future;
+    }
+
+    // returns futures for several ids, in the order given
+    public List<CompletableFuture<T>> loadAll(Collection<String> ids) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            futures.add(load(id));
+        }
+        return futures;
+    }
+
+    // sends whatever is pending, called by the timer
+    private void sendPending() {
+        Map<String, CompletableFuture<T>> batch;
+        synchronized (this) {
+            batch = takePending();
+            batch = batch.isEmpty() ? null : admit(batch);
+        }
+        if (batch != null) {
+            send(batch);
+        }
+    }
+
+    // returns a batch if it can be sent now, or queues it behind the ones in flight and returns null, must hold the lock
+    private Map<String, CompletableFuture<T>> admit(Map<String, CompletableFuture<T>> batch) {
+        if (sending >= CatalogBuffer.getParallelism()) {
+            queued.add(batch);
+            return null;
+        }
+        sending++;
+        return batch;
+    }
+
+    // takes the pending batch, moving it in flight, must hold the lock
+    private Map<String, CompletableFuture<T>> takePending() {
+        Map<String, CompletableFuture<T>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        inFlight.putAll(batch);
+        return batch;
+    }
+
+    // sends a batch on the io pool, completing its futures when it's answered, then sends the next queued one
+    private void send(Map<String, CompletableFuture<T>> batch) {
+        batches.incrementAndGet();
+        batchedIds.addAndGet(batch.size());
+        GroupifyExecutors.io().execute(() -> {
+            List<String> ids = new ArrayList<>(batch.keySet());
+            try {
+                T[] retrieved = CallerContext.call(CallerContext.CATALOG_LOADER, () -> fetcher.fetch(String.join(",", ids)));
+                for (int i = 0; i < ids.size(); i++) {
+                    batch.get(ids.get(i)).complete(i < retrieved.length ? retrieved[i] : null);
+                }
+            } catch (Exception e) {
+                for (CompletableFuture<T> f : batch.values()) {
+                    f.completeExceptionally(e);
+                }
+            } finally {
+                Map<String, CompletableFuture<T>> next;
+                synchronized (this) {
+                    for (String id : ids) {
+                        inFlight.remove(id, batch.get(id));
+                    }
+                    sending--;
+                    next = queued.poll();
+                    if (next != null) {
+                        sending++;
+                    }
+                }
+                if (next != null) {
+                    send(next);
+                }
+            }
+        });
+    }
+
+    // name
+    public String getName() {
+        return this.name;
+    }
+
+    // returns the number of ids asked for
+    public long getRequested() {
+        return requested.get();
+    }
+
+    // returns the number of calls made to Spotify
+    public long getBatches() {
+        return batches.get();
+    }
+
+    // returns the number of batches waiting for one in flight to finish
+    public synchronized int getQueued() {
+        return queued.size();
+    }
+
+    // returns the average number of ids per call made
+    public double getAverageBatchSize() {
+        long b = batches.get();
+        return b == 0 ? 0 : (double) batchedIds.get() / b;
+    }
+
+}
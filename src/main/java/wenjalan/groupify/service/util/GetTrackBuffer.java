@@ -4,67 +4,55 @@ import com.wrapper.spotify.SpotifyApi;
 import com.wrapper.spotify.exceptions.SpotifyWebApiException;
 import com.wrapper.spotify.model_objects.specification.Track;
 import com.wrapper.spotify.model_objects.specification.TrackSimplified;
-import wenjalan.groupify.service.GroupifyConfiguration;
-import wenjalan.groupify.service.GroupifyService;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 // aids in the retrieval of several tracks
-public class GetTrackBuffer {
+public class GetTrackBuffer extends CatalogBuffer<Track> {
 
-    // the list of IDs to retrieve
-    private List<String> ids;
-
-    // the Spotify API instance to use
-    private SpotifyApi spotify;
+    // the node-wide loader tracks are batched through, null to fetch them per buffer
+    private static volatile CatalogLoader<Track> loader = null;
 
     // constructor
     public GetTrackBuffer(SpotifyApi spotify) {
-        this.ids = new ArrayList<>();
-        this.spotify = spotify;
+        super(spotify, CatalogCache.TRACKS);
     }
 
     // flushes the buffer, returning a List of Tracks
+    @Override
     public List<Track> flush() throws SpotifyWebApiException, IOException {
         // if ids is empty, complain
         if (ids.isEmpty()) {
             throw new IllegalStateException("no ids have been added to the buffer");
         }
+        return super.flush();
+    }
 
-        // tracks to return
-        List<Track> tracks = new ArrayList<>();
-
-        // get 50 at a time (the max allowed by Spotify)
-        for (int i = 0; i < ids.size(); i += 50) {
-            // get a sublist of ids
-            List<String> sublist = ids.subList(i, Math.min(i + 50, ids.size()));
-
-            // create the String of ids
-            String idsQuery = String.join(",", sublist);
-
-            // retrive the tracks
-            Track[] retrieved = spotify.getSeveralTracks(idsQuery).build().execute();
+    // retrieves a chunk of tracks
+    @Override
+    protected Track[] fetch(String idsQuery) throws SpotifyWebApiException, IOException {
+        return spotify.getSeveralTracks(idsQuery).build().execute();
+    }
 
-            // add them to the running list
-            tracks.addAll(Arrays.asList(retrieved));
-        }
+    // sets the node-wide loader tracks are batched through, null to fetch them per buffer
+    public static void setLoader(CatalogLoader<Track> catalogLoader) {
+        loader = catalogLoader;
+    }
 
-        // return the tracks
-        return tracks;
+    // returns the node-wide loader, or null if batching is off
+    public static CatalogLoader<Track> getLoader() {
+        return loader;
     }
 
-    // clears the buffer
-    public void clear() {
-        this.ids.clear();
+    @Override
+    protected CatalogLoader<Track> loader() {
+        return loader;
     }
 
-    // add a track id to the buffer
-    public void add(String id) {
-        ids.add(id);
+    @Override
+    protected String caller() {
+        return CallerContext.TRACK_BUFFER;
     }
 
     // add a TrackSimplified to the buffer
@@ -72,11 +60,6 @@ public class GetTrackBuffer {
         add(trackSimplified.getId());
     }
 
-    // remove an id from the buffer
-    public void remove(String id) {
-        ids.remove(id);
-    }
-
     // addAll
     public void addAll(TrackSimplified[] trackSimplifieds) {
         for (TrackSimplified ts : trackSimplifieds) {
@@ -89,30 +72,9 @@ public class GetTrackBuffer {
         remove(trackSimplified.getId());
     }
 
-    // returns whether the buffer contains an id
-    public boolean contains(String id) {
-        return ids.contains(id);
-    }
-
     // returns whether the buffer contains a TrackSimplified
     public boolean contains(TrackSimplified trackSimplified) {
         return contains(trackSimplified.getId());
     }
 
-    // returns the size of the buffer
-    public int size() {
-        return ids.size();
-    }
-
-    // returns the contents of the buffer
-    public List<String> getIds() {
-        return new ArrayList<>(ids);
-    }
-
-    // toString
-    @Override
-    public String toString() {
-        return ids.toString();
-    }
-
 }
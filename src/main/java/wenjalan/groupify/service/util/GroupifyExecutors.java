@@ -0,0 +1,150 @@
+package wenjalan.groupify.service.util;
+
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// holds the shared thread pools used to run blocking Spotify calls off the request thread
+public class GroupifyExecutors {
+
+    // the pool used for blocking Spotify I/O
+    private static volatile ExecutorService io = new CallerExecutor(Executors.newCachedThreadPool(daemonThreads("groupify-io")));
+
+    // whether io runs its tasks on virtual threads
+    private static volatile boolean virtual = false;
+
+    // returns the pool used for blocking Spotify I/O
+    public static ExecutorService io() {
+        return io;
+    }
+
+    // switches the io pool to one virtual thread per task, if this JVM has them (Java 21+)
+    // should be called at startup, before anything is submitted; tasks already on the old pool run to completion
+    // returns whether virtual threads are now in use
+    public static synchronized boolean useVirtualThreads() {
+        if (virtual) {
+            return true;
+        }
+        try {
+            // looked up reflectively so the build can keep targeting Java 8
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService old = io;
+            io = new CallerExecutor((ExecutorService) factory.invoke(null));
+            virtual = true;
+            old.shutdown();
+            return true;
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    // returns whether the io pool runs its tasks on virtual threads
+    public static boolean isVirtual() {
+        return virtual;
+    }
+
+    // returns a ThreadFactory that creates named daemon threads
+    // prefix: the prefix of each thread's name
+    public static ThreadFactory daemonThreads(String prefix) {
+        final AtomicInteger count = new AtomicInteger(0);
+        return (runnable) -> {
+            Thread t = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // waits for a Spotify call submitted to io, passing through the exceptions it threw
+    public static <T> T await(Future<T> future) throws SpotifyWebApiException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting on Spotify", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    // rethrows a task's failure as one of the checked exceptions Spotify calls declare
+    static IOException unwrap(Throwable cause) throws SpotifyWebApiException {
+        if (cause instanceof SpotifyWebApiException) {
+            throw (SpotifyWebApiException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException(cause);
+    }
+
+    // runs tasks on another pool under the CallerContext of whoever submitted them
+    private static class CallerExecutor extends AbstractExecutorService {
+
+        // the pool tasks actually run on
+        private final ExecutorService delegate;
+
+        // constructor
+        private CallerExecutor(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(CallerContext.inherit(command));
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+
+    }
+
+    // no instances
+    private GroupifyExecutors() {
+
+    }
+
+}
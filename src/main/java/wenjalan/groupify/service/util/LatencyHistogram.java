@@ -0,0 +1,88 @@
+package wenjalan.groupify.service.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// counts latencies into fixed buckets, cheap enough to record every call and safe to share between threads
+public class LatencyHistogram {
+
+    // the upper bounds of the buckets in millis, the last bucket catches everything above them
+    public static final long[] BOUNDS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    // the count in each bucket, one more than there are bounds
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+
+    // the number of latencies recorded
+    private final AtomicLong count = new AtomicLong();
+
+    // the sum of every latency recorded, in millis
+    private final AtomicLong sum = new AtomicLong();
+
+    // the largest latency recorded, in millis
+    private final AtomicLong max = new AtomicLong();
+
+    // records a latency
+    public void record(long millis) {
+        int i = 0;
+        while (i < BOUNDS.length && millis > BOUNDS[i]) {
+            i++;
+        }
+        buckets.incrementAndGet(i);
+        count.incrementAndGet();
+        sum.addAndGet(millis);
+        max.accumulateAndGet(millis, Math::max);
+    }
+
+    // returns the number of latencies recorded
+    public long getCount() {
+        return count.get();
+    }
+
+    // returns the sum of every latency recorded, in millis
+    public long getSum() {
+        return sum.get();
+    }
+
+    // returns the largest latency recorded, in millis
+    public long getMax() {
+        return max.get();
+    }
+
+    // returns the average latency, in millis
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    // returns the count in each bucket, the last one being everything above the last bound
+    public long[] getBuckets() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    // returns the upper bound of the bucket a quantile falls in, in millis, never more than the max
+    // quantile: between 0 and 1, e.g. 0.95
+    public long getQuantile(double quantile) {
+        long[] counts = getBuckets();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(BOUNDS[i], max.get());
+            }
+        }
+        return max.get();
+    }
+
+}
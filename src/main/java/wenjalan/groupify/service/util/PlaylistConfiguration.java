@@ -3,6 +3,12 @@ package wenjalan.groupify.service.util;
 // specifies certain properties on how a playlist is created
 public class PlaylistConfiguration {
 
+    // the default most time a client may give a generation, in millis
+    public static final long DEFAULT_MAX_TIME_BUDGET = 60000;
+
+    // the most time a client may give a generation, in millis
+    private static volatile long maxTimeBudget = DEFAULT_MAX_TIME_BUDGET;
+
     // builder
     public static class Builder {
 
@@ -10,6 +16,7 @@ public class PlaylistConfiguration {
         private int playlistMaxSize = 80;
         private boolean recommendations = true;
         private int strictness = 2;
+        private long timeBudget = 20000;
 
         // constructor
         public Builder() {
@@ -31,23 +38,53 @@ public class PlaylistConfiguration {
             this.strictness = strictness;
         }
 
+        // timeBudget, in millis, 0 or less for no limit
+        public void timeBudget(long millis) {
+            this.timeBudget = millis;
+        }
+
         // build
         public PlaylistConfiguration build() {
-            return new PlaylistConfiguration(playlistMaxSize, recommendations, strictness);
+            return new PlaylistConfiguration(playlistMaxSize, recommendations, strictness, timeBudget);
+        }
+
+    }
+
+    // sets the most time a client may give a generation, in millis
+    public static void setMaxTimeBudget(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("max time budget must be positive");
         }
+        maxTimeBudget = millis;
+    }
 
+    // returns the most time a client may give a generation, in millis
+    public static long getMaxTimeBudget() {
+        return maxTimeBudget;
+    }
+
+    // returns the budget a client asked for, cut down to the most one may have
+    // a client can't ask for no limit, since a generation holds one of the few generation slots for as long as it runs
+    // throws IllegalArgumentException if the budget is 0 or less
+    public static long clientTimeBudget(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("timeBudget must be positive, got " + millis);
+        }
+        return Math.min(millis, maxTimeBudget);
     }
 
     // properties
     public final int playlistSize; // the maximum size of the playlist
     public final boolean doRecommendations; // whether or not to add recommendations to the playlist
     public final int strictness; // the threshold of sharing used by the generator
+    public final long timeBudget; // the time in millis the generator has to finish, 0 or less for no limit
 
     // constructor
-    private PlaylistConfiguration(int playlistSize, boolean doRecommendations, int strictness) {
+    private PlaylistConfiguration(int playlistSize, boolean doRecommendations, int strictness, long timeBudget) {
         this.playlistSize = playlistSize;
         this.doRecommendations = doRecommendations;
         this.strictness = strictness;
+        this.timeBudget = timeBudget;
     }
 
 }
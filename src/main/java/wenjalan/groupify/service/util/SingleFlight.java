@@ -0,0 +1,71 @@
+package wenjalan.groupify.service.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// makes sure only one call per key is in flight at a time
+// callers arriving while a call for their key is running wait for its result instead of making their own
+public class SingleFlight<K, V> {
+
+    // the calls currently in flight
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    // the number of calls actually made
+    private final AtomicLong executed = new AtomicLong(0);
+
+    // the number of calls that attached to one already in flight
+    private final AtomicLong coalesced = new AtomicLong(0);
+
+    // runs a call, or waits on the identical call already in flight
+    // key: the key identifying identical calls
+    // call: the call to make if none is in flight
+    // throws whatever the call threw, unwrapped
+    public V execute(K key, Callable<V> call) throws Exception {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+
+        // someone else is making this call, wait on theirs
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            try {
+                return existing.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+            }
+        }
+
+        // we're the first, make the call
+        executed.incrementAndGet();
+        try {
+            V value = call.call();
+            mine.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // returns the number of calls currently in flight
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    // returns the number of calls actually made
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    // returns the number of calls that attached to one already in flight
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+}
@@ -0,0 +1,142 @@
+package wenjalan.groupify.service.util;
+
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// tracks how much time a playlist generation has left, and which stages were skipped to stay within it
+public class TimeBudget {
+
+    // the total budget in millis, 0 or less if unlimited
+    private final long budgetMillis;
+
+    // the System.nanoTime() at which the budget runs out
+    private final long deadline;
+
+    // the names of the stages skipped to stay within budget, in order
+    private final List<String> skippedStages = new ArrayList<>();
+
+    // constructor
+    // budgetMillis: the amount of time allowed, 0 or less for no limit
+    public TimeBudget(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(budgetMillis, 0));
+    }
+
+    // returns whether this budget has a limit at all
+    public boolean isLimited() {
+        return budgetMillis > 0;
+    }
+
+    // returns the millis left before the deadline, or Long.MAX_VALUE if unlimited
+    public long remaining() {
+        if (!isLimited()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    // returns whether at least <millis> remain
+    public boolean allows(long millis) {
+        return remaining() >= millis;
+    }
+
+    // records a stage as skipped
+    public void skip(String stage) {
+        skippedStages.add(stage);
+    }
+
+    // returns the stages skipped so far
+    public List<String> getSkippedStages() {
+        return Collections.unmodifiableList(skippedStages);
+    }
+
+    // runs a blocking call, giving up once the deadline is reached
+    // task: the call to run
+    // throws TimeoutException if the call did not finish in time
+    public <T> T call(Callable<T> task) throws SpotifyWebApiException, IOException, TimeoutException {
+        return call(task, 0);
+    }
+
+    // runs a blocking call, giving up <reserveMillis> before the deadline is reached
+    // task: the call to run
+    // reserveMillis: the time to keep in hand for the stages after this one
+    // throws TimeoutException if the call did not finish in time
+    public <T> T call(Callable<T> task, long reserveMillis) throws SpotifyWebApiException, IOException, TimeoutException {
+        // if there's no limit, just run it here
+        if (!isLimited()) {
+            return runDirectly(task);
+        }
+
+        // if there's no time left, don't bother starting
+        long wait = remaining() - reserveMillis;
+        if (wait <= 0) {
+            throw new TimeoutException("no time left in budget");
+        }
+
+        // run the call on the io pool and wait for as long as we can afford
+        Future<T> future = GroupifyExecutors.io().submit(task);
+        try {
+            return future.get(wait, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw e;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting on Spotify", e);
+        } catch (ExecutionException e) {
+            throw GroupifyExecutors.unwrap(e.getCause());
+        }
+    }
+
+    // runs a write to Spotify if there's time left to start it, waiting on it no longer than the budget allows
+    // a write can't be taken back once sent, so one still running at the deadline is left to finish rather than cancelled
+    // this covers the rate limiter and bulkhead waits, retries and read timeouts of the write too
+    // task: the write to run
+    // throws TimeoutException if there was no time left to start the write
+    // throws UnfinishedWriteException if the write was still running when the budget ran out
+    public <T> T write(Callable<T> task) throws SpotifyWebApiException, IOException, TimeoutException {
+        // if there's no limit, just run it here
+        if (!isLimited()) {
+            return runDirectly(task);
+        }
+
+        // if there's no time left, don't start it
+        long wait = remaining();
+        if (wait <= 0) {
+            throw new TimeoutException("no time left in budget");
+        }
+
+        // run the write on the io pool and wait for as long as we can afford, leaving it running after that
+        Future<T> future = GroupifyExecutors.io().submit(task);
+        try {
+            return future.get(wait, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new UnfinishedWriteException("write still running when the budget ran out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting on Spotify", e);
+        } catch (ExecutionException e) {
+            throw GroupifyExecutors.unwrap(e.getCause());
+        }
+    }
+
+    // runs a task on the current thread, passing through the Spotify exceptions
+    private static <T> T runDirectly(Callable<T> task) throws SpotifyWebApiException, IOException {
+        try {
+            return task.call();
+        } catch (Exception e) {
+            throw GroupifyExecutors.unwrap(e);
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package wenjalan.groupify.service.util;
+
+import java.util.concurrent.TimeUnit;
+
+// a token bucket that never blocks: callers either get a token right away or learn how long until one is due
+public class TokenBucket {
+
+    // tokens added per second
+    private final double permitsPerSecond;
+
+    // the most tokens the bucket can hold
+    private final int maxTokens;
+
+    // the tokens currently in the bucket, guarded by this
+    private double tokens;
+
+    // the System.nanoTime() the bucket was last refilled at, guarded by this
+    private long lastRefill;
+
+    // constructor, starts full
+    public TokenBucket(double permitsPerSecond, int maxTokens) {
+        if (permitsPerSecond <= 0 || maxTokens < 1) {
+            throw new IllegalArgumentException("rate must be positive and burst at least 1");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+        this.lastRefill = System.nanoTime();
+    }
+
+    // takes a token if there is one
+    // returns 0 if a token was taken, otherwise the millis until one will be available
+    public synchronized long tryTake() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / permitsPerSecond * 1000));
+    }
+
+    // returns whether the bucket is full, meaning it's no different from a new one
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= maxTokens;
+    }
+
+    // adds the tokens earned since the last refill
+    private void refill() {
+        long now = System.nanoTime();
+        double earned = (now - lastRefill) / (double) TimeUnit.SECONDS.toNanos(1) * permitsPerSecond;
+        tokens = Math.min(maxTokens, tokens + earned);
+        lastRefill = now;
+    }
+
+}
@@ -0,0 +1,18 @@
+package wenjalan.groupify.service.util;
+
+import java.util.concurrent.TimeoutException;
+
+// thrown when a write to Spotify was still running as its time budget ran out
+// the write isn't cancelled, so it may still land after this is thrown
+// it's a TimeoutException so existing handling of running out of time covers it
+public class UnfinishedWriteException extends TimeoutException {
+
+    // serialVersionUID
+    private static final long serialVersionUID = 1L;
+
+    // constructor
+    public UnfinishedWriteException(String message) {
+        super(message);
+    }
+
+}